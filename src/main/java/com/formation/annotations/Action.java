@@ -16,7 +16,10 @@ public @interface Action
 {
     /**
      * Paramètre de l'annotation indiquant l'url-pattern qui déclenchera
-     * l'action annotée.
+     * l'action annotée. C'est une expression régulière, ou un modèle à
+     * variables tel que /order/{id}/edit.do dont les parties fixes sont
+     * littérales et dont chaque variable est copiée dans l'attribut de même
+     * nom de l'ActionForm.
      * @return
      */
     public String urlPattern();
@@ -26,4 +29,12 @@ public @interface Action
      * @return
      */
     public String formName();
+
+    /**
+     * Paramètre de l'annotation indiquant la portée de l'action annotée : une
+     * instance partagée par l'application, une par session ou une par
+     * requête.
+     * @return
+     */
+    public ActionScope scope() default ActionScope.SESSION;
 }
@@ -19,4 +19,11 @@ public @interface ActionForm
      * @return
      */
     public String name();
+
+    /**
+     * Portée de l'ActionForm : en session (par défaut) ou limitée à la
+     * requête.
+     * @return La portée.
+     */
+    public FormScope scope() default FormScope.SESSION;
 }
@@ -0,0 +1,24 @@
+package com.formation.annotations;
+
+/**
+ * Portée d'une Action, donnée par l'annotation @Action ou par l'élément
+ * &lt;scope&gt; du fichier de configuration old-style.
+ * @author filippo
+ */
+public enum ActionScope
+{
+    /**
+     * Une seule instance de l'Action, créée à la construction du registre et
+     * partagée sans verrou par toutes les requêtes : l'Action ne doit pas
+     * garder d'état entre deux appels de execute.
+     */
+    APPLICATION,
+    /**
+     * Une instance de l'Action par utilisateur, gardée en session.
+     */
+    SESSION,
+    /**
+     * Une nouvelle instance de l'Action à chaque requête.
+     */
+    REQUEST
+}
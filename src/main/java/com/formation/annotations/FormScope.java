@@ -0,0 +1,20 @@
+package com.formation.annotations;
+
+/**
+ * Portée d'un ActionForm, donnée par l'annotation @ActionForm.
+ * @author filippo
+ */
+public enum FormScope
+{
+    /**
+     * L'ActionForm est gardé en session et réutilisé par les requêtes
+     * suivantes du même utilisateur.
+     */
+    SESSION,
+    /**
+     * L'ActionForm ne sert qu'à une requête. Il n'est pas mis en session et,
+     * si la propriété formPoolSize est activée, il est rendu à la Factory une
+     * fois la page cible affichée puis réutilisé par une autre requête.
+     */
+    REQUEST
+}
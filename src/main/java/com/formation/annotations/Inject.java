@@ -0,0 +1,23 @@
+package com.formation.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Cette annotation @Inject désigne les dépendances d'une Action ou d'un
+ * ActionForm envers les services enregistrés auprès de la Factory par
+ * Factory.registerService : soit le constructeur public dont chaque paramètre
+ * reçoit le service de son type, soit un attribut qui reçoit le service de
+ * son type après la construction.
+ * @author filippo
+ */
+@Target(
+{
+    ElementType.CONSTRUCTOR, ElementType.FIELD
+})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Inject
+{
+}
@@ -0,0 +1,363 @@
+package com.formation.annotations.processing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Index des classes annotées @Action et @ActionForm, écrit à la compilation
+ * par AnnotationIndexProcessor et lu au démarrage par ConfigurationReader.
+ * <p>
+ * C'est un fichier texte en UTF-8, une entrée par ligne, champs séparés par
+ * des tabulations :
+ * </p>
+ * <ul>
+ * <li>package &lt;nom&gt; : un package compilé, dont l'index fait foi ;</li>
+ * <li>action &lt;classe&gt; &lt;url-pattern&gt; &lt;formName&gt; &lt;scope&gt; ;
+ * la portée est absente des index écrits par les versions précédentes, elle
+ * vaut alors SESSION ;</li>
+ * <li>form &lt;classe&gt; &lt;name&gt;.</li>
+ * </ul>
+ * Les lignes vides, les commentaires (#) et les types d'entrée inconnus sont
+ * ignorés.
+ * @author filippo
+ */
+public final class AnnotationIndex
+{
+    /**
+     * Chemin de l'index dans le classpath.
+     */
+    public static final String RESOURCE_NAME = "META-INF/easyweb/annotations.index";
+    /**
+     * Encodage de l'index.
+     */
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+    /**
+     * Séparateur des champs d'une entrée.
+     */
+    private static final char SEPARATOR = '\t';
+    /**
+     * Début d'une ligne de commentaire.
+     */
+    private static final String COMMENT = "#";
+    /**
+     * Type d'entrée d'un package compilé.
+     */
+    private static final String PACKAGE_ENTRY = "package";
+    /**
+     * Type d'entrée d'une Action.
+     */
+    private static final String ACTION_ENTRY = "action";
+    /**
+     * Type d'entrée d'un ActionForm.
+     */
+    private static final String FORM_ENTRY = "form";
+    /**
+     * Nombre de champs d'une entrée package.
+     */
+    private static final int PACKAGE_FIELDS = 2;
+    /**
+     * Nombre de champs d'une entrée action.
+     */
+    private static final int ACTION_FIELDS = 5;
+    /**
+     * Nombre de champs d'une entrée action sans portée.
+     */
+    private static final int ACTION_FIELDS_WITHOUT_SCOPE = 4;
+    /**
+     * Portée d'une Action dont l'entrée n'en indique pas.
+     */
+    private static final String DEFAULT_SCOPE = "SESSION";
+    /**
+     * Nombre de champs d'une entrée form.
+     */
+    private static final int FORM_FIELDS = 3;
+    /**
+     * Packages dont les classes ont été compilées avec le processeur.
+     */
+    private final Set<String> packages = new TreeSet<String>();
+    /**
+     * Les Actions : nom canonique de la classe associé au triplet
+     * url-pattern, nom du formulaire et portée.
+     */
+    private final Map<String, String[]> actions = new TreeMap<String, String[]>();
+    /**
+     * Les ActionForms : nom canonique de la classe associé au nom du
+     * formulaire.
+     */
+    private final Map<String, String> forms = new TreeMap<String, String>();
+
+    /**
+     * Charge et réunit tous les index présents dans le classpath.
+     * @param classLoader
+     *        Le ClassLoader de l'application hôte.
+     * @return L'index ou null si aucun index n'a été trouvé.
+     * @throws IOException
+     *         Si un index ne peut être lu ou est mal formé.
+     */
+    public static AnnotationIndex load(ClassLoader classLoader) throws IOException
+    {
+        Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+        if (!resources.hasMoreElements())
+        {
+            return null;
+        }
+        AnnotationIndex index = new AnnotationIndex();
+        while (resources.hasMoreElements())
+        {
+            InputStream iS = resources.nextElement().openStream();
+            try
+            {
+                index.read(new InputStreamReader(iS, ENCODING));
+            }
+            finally
+            {
+                iS.close();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Ajoute les entrées d'un index.
+     * @param reader
+     *        L'index à lire.
+     * @throws IOException
+     *         Si l'index ne peut être lu ou est mal formé.
+     */
+    public void read(Reader reader) throws IOException
+    {
+        BufferedReader lines = new BufferedReader(reader);
+        String line = lines.readLine();
+        while (line != null)
+        {
+            if (!line.isEmpty() && !line.startsWith(COMMENT))
+            {
+                readEntry(line.split(String.valueOf(SEPARATOR), -1));
+            }
+            line = lines.readLine();
+        }
+    }
+
+    /**
+     * Ajoute une entrée lue dans un index.
+     * @param fields
+     *        Les champs de l'entrée.
+     * @throws IOException
+     *         Si l'entrée n'a pas le nombre de champs attendu.
+     */
+    private void readEntry(String[] fields) throws IOException
+    {
+        if (PACKAGE_ENTRY.equals(fields[0]))
+        {
+            checkFieldCount(fields, PACKAGE_FIELDS);
+            addPackage(fields[1]);
+        }
+        else if (ACTION_ENTRY.equals(fields[0]))
+        {
+            if (fields.length == ACTION_FIELDS_WITHOUT_SCOPE)
+            {
+                addAction(fields[1], fields[2], fields[ACTION_FIELDS_WITHOUT_SCOPE - 1], DEFAULT_SCOPE);
+            }
+            else
+            {
+                checkFieldCount(fields, ACTION_FIELDS);
+                addAction(fields[1], fields[2], fields[ACTION_FIELDS_WITHOUT_SCOPE - 1], fields[ACTION_FIELDS - 1]);
+            }
+        }
+        else if (FORM_ENTRY.equals(fields[0]))
+        {
+            checkFieldCount(fields, FORM_FIELDS);
+            addForm(fields[1], fields[2]);
+        }
+    }
+
+    /**
+     * Vérifie le nombre de champs d'une entrée.
+     * @param fields
+     *        Les champs de l'entrée.
+     * @param expected
+     *        Le nombre de champs attendu.
+     * @throws IOException
+     *         Si l'entrée n'a pas le nombre de champs attendu.
+     */
+    private static void checkFieldCount(String[] fields, int expected) throws IOException
+    {
+        if (fields.length != expected)
+        {
+            throw new IOException("Malformed " + fields[0] + " entry in " + RESOURCE_NAME + ": " + expected + " tab separated fields expected, " + fields.length + " found.");
+        }
+    }
+
+    /**
+     * Écrit l'index.
+     * @param writer
+     *        La destination.
+     * @throws IOException
+     *         Si l'écriture échoue.
+     */
+    public void write(Writer writer) throws IOException
+    {
+        writer.write(COMMENT + " Generated by the EasyWeb annotation processor, do not edit.\n");
+        for (String packageName : packages)
+        {
+            writeEntry(writer, PACKAGE_ENTRY, packageName);
+        }
+        for (Entry<String, String[]> action : actions.entrySet())
+        {
+            writeEntry(writer, ACTION_ENTRY, action.getKey(), action.getValue()[0], action.getValue()[1], action.getValue()[2]);
+        }
+        for (Entry<String, String> form : forms.entrySet())
+        {
+            writeEntry(writer, FORM_ENTRY, form.getKey(), form.getValue());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Écrit une entrée.
+     * @param writer
+     *        La destination.
+     * @param fields
+     *        Les champs de l'entrée.
+     * @throws IOException
+     *         Si l'écriture échoue.
+     */
+    private static void writeEntry(Writer writer, String... fields) throws IOException
+    {
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (i > 0)
+            {
+                writer.write(SEPARATOR);
+            }
+            writer.write(fields[i]);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Indique si une valeur peut figurer dans un champ de l'index.
+     * @param value
+     *        La valeur.
+     * @return Faux si la valeur contient une tabulation ou un saut de ligne.
+     */
+    public static boolean isWritable(String value)
+    {
+        return value.indexOf(SEPARATOR) < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0;
+    }
+
+    /**
+     * Déclare un package compilé avec le processeur.
+     * @param packageName
+     *        Le nom du package.
+     */
+    public void addPackage(String packageName)
+    {
+        packages.add(packageName);
+    }
+
+    /**
+     * Ajoute une Action.
+     * @param className
+     *        Le nom canonique de la classe.
+     * @param urlPattern
+     *        Son url-pattern.
+     * @param formName
+     *        Le nom du formulaire associé.
+     * @param scope
+     *        Le nom de sa portée.
+     */
+    public void addAction(String className, String urlPattern, String formName, String scope)
+    {
+        actions.put(className, new String[]
+        {
+                urlPattern, formName, scope
+        });
+    }
+
+    /**
+     * Ajoute un ActionForm.
+     * @param className
+     *        Le nom canonique de la classe.
+     * @param name
+     *        Le nom du formulaire.
+     */
+    public void addForm(String className, String name)
+    {
+        forms.put(className, name);
+    }
+
+    /**
+     * Retire les entrées d'une classe, recompilée ou supprimée.
+     * @param className
+     *        Le nom canonique de la classe.
+     */
+    public void removeClass(String className)
+    {
+        actions.remove(className);
+        forms.remove(className);
+    }
+
+    /**
+     * Indique si l'index fait foi pour un package à scanner, c'est à dire si
+     * ce package ou l'un de ses sous-packages a été compilé avec le
+     * processeur.
+     * @param packageName
+     *        Le nom du package à scanner.
+     * @return Vrai si l'index couvre le package.
+     */
+    public boolean covers(String packageName)
+    {
+        for (String indexed : packages)
+        {
+            if (indexed.equals(packageName) || indexed.startsWith(packageName + "."))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Getter des packages compilés avec le processeur.
+     * @return Les noms des packages, triés.
+     */
+    public Set<String> getPackages()
+    {
+        return Collections.unmodifiableSet(packages);
+    }
+
+    /**
+     * Getter des Actions.
+     * @return Une map avec pour clef le nom canonique de la classe et pour
+     *         valeur le triplet url-pattern, nom du formulaire et portée, triée
+     *         par nom de classe.
+     */
+    public Map<String, String[]> getActions()
+    {
+        return Collections.unmodifiableMap(actions);
+    }
+
+    /**
+     * Getter des ActionForms.
+     * @return Une map avec pour clef le nom canonique de la classe et pour
+     *         valeur le nom du formulaire, triée par nom de classe.
+     */
+    public Map<String, String> getForms()
+    {
+        return Collections.unmodifiableMap(forms);
+    }
+}
@@ -0,0 +1,311 @@
+package com.formation.annotations.processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.formation.annotations.Action;
+import com.formation.annotations.ActionForm;
+
+/**
+ * Processeur d'annotations qui écrit, à la compilation de l'application hôte,
+ * l'index des classes annotées @Action et @ActionForm (voir AnnotationIndex).
+ * Il est déclaré dans META-INF/services : il suffit que le jar du framework
+ * soit dans le classpath de compilation.
+ * <p>
+ * Les classes sont retenues selon les mêmes règles que le scan des packages :
+ * une Action doit implémenter directement l'interface Action, un ActionForm
+ * doit hériter de la classe abstraite ActionForm. Le processeur voit toutes
+ * les classes compilées, annotées ou non, pour que l'index reste juste lors
+ * d'une compilation incrémentale : l'index précédent est relu, les classes
+ * recompilées y sont remplacées et celles qui n'existent plus en sont
+ * retirées.
+ * </p>
+ * <p>
+ * Pour chaque ActionForm retenu, il génère aussi son binder (voir
+ * FormBinderWriter), sauf si l'option -Aeasyweb.binders=false est passée à
+ * javac.
+ * </p>
+ * @author filippo
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(AnnotationIndexProcessor.BINDERS_OPTION)
+public class AnnotationIndexProcessor extends AbstractProcessor
+{
+    /**
+     * Option de javac qui désactive la génération des binders.
+     */
+    static final String BINDERS_OPTION = "easyweb.binders";
+    /**
+     * Encodage de l'index.
+     */
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+    /**
+     * L'index en construction.
+     */
+    private final AnnotationIndex index = new AnnotationIndex();
+    /**
+     * Noms canoniques des classes vues par le processeur lors de cette
+     * compilation.
+     */
+    private final Set<String> compiledClasses = new HashSet<String>();
+    /**
+     * Le générateur des binders, ou null si l'option les désactive.
+     */
+    private FormBinderWriter binderWriter;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment pProcessingEnv)
+    {
+        super.init(pProcessingEnv);
+        if (!"false".equals(processingEnv.getOptions().get(BINDERS_OPTION)))
+        {
+            binderWriter = new FormBinderWriter(processingEnv);
+        }
+        try
+        {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", AnnotationIndex.RESOURCE_NAME);
+            InputStream iS = previous.openInputStream();
+            try
+            {
+                index.read(new InputStreamReader(iS, ENCODING));
+            }
+            finally
+            {
+                iS.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // pas d'index précédent : compilation complète
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements()))
+        {
+            forgetCompiledType(type);
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(Action.class)))
+        {
+            addActionIfCompliant(type);
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(ActionForm.class)))
+        {
+            addFormIfCompliant(type);
+        }
+        if (roundEnv.processingOver())
+        {
+            removeVanishedClasses();
+            writeIndex();
+        }
+        // les annotations ne sont pas réclamées : d'autres processeurs peuvent
+        // les traiter
+        return false;
+    }
+
+    /**
+     * Retire de l'index une classe compilée et ses classes imbriquées, qui y
+     * seront ajoutées de nouveau si elles sont toujours annotées.
+     * @param type
+     *        La classe compilée.
+     */
+    private void forgetCompiledType(TypeElement type)
+    {
+        String className = type.getQualifiedName().toString();
+        compiledClasses.add(className);
+        index.removeClass(className);
+        index.addPackage(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString());
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements()))
+        {
+            forgetCompiledType(nested);
+        }
+    }
+
+    /**
+     * Ajoute une classe annotée @Action à l'index si elle implémente
+     * l'interface Action.
+     * @param type
+     *        La classe annotée.
+     */
+    private void addActionIfCompliant(TypeElement type)
+    {
+        if (!implementsDirectly(type, com.formation.archetypes.Action.class.getCanonicalName()))
+        {
+            warn(type, "is annotated @Action but does not implement " + com.formation.archetypes.Action.class.getCanonicalName() + ", it is ignored.");
+            return;
+        }
+        Action annotation = type.getAnnotation(Action.class);
+        if (isWritable(type, annotation.urlPattern()) && isWritable(type, annotation.formName()))
+        {
+            index.addAction(type.getQualifiedName().toString(), annotation.urlPattern(), annotation.formName(), annotation.scope().name());
+        }
+    }
+
+    /**
+     * Ajoute une classe annotée @ActionForm à l'index et génère son binder si
+     * elle hérite de la classe abstraite ActionForm.
+     * @param type
+     *        La classe annotée.
+     */
+    private void addFormIfCompliant(TypeElement type)
+    {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror actionForm = typeOf(com.formation.archetypes.ActionForm.class.getCanonicalName());
+        if (!types.isSubtype(types.erasure(type.asType()), actionForm))
+        {
+            warn(type, "is annotated @ActionForm but does not extend " + com.formation.archetypes.ActionForm.class.getCanonicalName() + ", it is ignored.");
+            return;
+        }
+        ActionForm annotation = type.getAnnotation(ActionForm.class);
+        if (isWritable(type, annotation.name()))
+        {
+            index.addForm(type.getQualifiedName().toString(), annotation.name());
+        }
+        if (binderWriter != null)
+        {
+            binderWriter.write(type);
+        }
+    }
+
+    /**
+     * Vérifie que la classe donnée implémente directement l'interface donnée,
+     * comme le fait le scan des packages.
+     * @param type
+     *        La classe.
+     * @param interfaceName
+     *        Le nom canonique de l'interface.
+     * @return Vrai si l'interface figure parmi celles déclarées par la classe.
+     */
+    private boolean implementsDirectly(TypeElement type, String interfaceName)
+    {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror anInterface = typeOf(interfaceName);
+        for (TypeMirror implemented : type.getInterfaces())
+        {
+            if (types.isSameType(types.erasure(implemented), anInterface))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Type brut d'une classe du framework.
+     * @param canonicalName
+     *        Le nom canonique de la classe.
+     * @return Son type, effacé de ses paramètres.
+     */
+    private TypeMirror typeOf(String canonicalName)
+    {
+        Types types = processingEnv.getTypeUtils();
+        return types.erasure(processingEnv.getElementUtils().getTypeElement(canonicalName).asType());
+    }
+
+    /**
+     * Vérifie qu'une valeur d'annotation peut être écrite dans l'index.
+     * @param type
+     *        La classe annotée.
+     * @param value
+     *        La valeur.
+     * @return Vrai si la valeur peut être écrite, sinon une erreur de
+     *         compilation est signalée.
+     */
+    private boolean isWritable(TypeElement type, String value)
+    {
+        if (AnnotationIndex.isWritable(value))
+        {
+            return true;
+        }
+        processingEnv.getMessager().printMessage(Kind.ERROR, "EasyWeb annotation values cannot contain tabs or line breaks.", type);
+        return false;
+    }
+
+    /**
+     * Retire de l'index précédent les classes qui n'ont pas été recompilées et
+     * qui n'existent plus.
+     */
+    private void removeVanishedClasses()
+    {
+        Elements elements = processingEnv.getElementUtils();
+        List<String> indexed = new ArrayList<String>(index.getActions().keySet());
+        indexed.addAll(index.getForms().keySet());
+        for (String className : indexed)
+        {
+            if (!compiledClasses.contains(className) && elements.getTypeElement(className) == null)
+            {
+                index.removeClass(className);
+            }
+        }
+    }
+
+    /**
+     * Écrit l'index dans le dossier des classes compilées.
+     */
+    private void writeIndex()
+    {
+        try
+        {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", AnnotationIndex.RESOURCE_NAME);
+            OutputStream oS = resource.openOutputStream();
+            try
+            {
+                Writer writer = new OutputStreamWriter(oS, ENCODING);
+                index.write(writer);
+            }
+            finally
+            {
+                oS.close();
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Kind.ERROR, "Cannot write " + AnnotationIndex.RESOURCE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Signale une classe annotée que le framework ignorera.
+     * @param type
+     *        La classe.
+     * @param message
+     *        Le motif.
+     */
+    private void warn(Element type, String message)
+    {
+        processingEnv.getMessager().printMessage(Kind.WARNING, type + " " + message, type);
+    }
+}
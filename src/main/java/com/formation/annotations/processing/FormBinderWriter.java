@@ -0,0 +1,169 @@
+package com.formation.annotations.processing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+import com.formation.populate.FormBinder;
+
+/**
+ * Génère le binder d'une classe d'ActionForm (voir FormBinder) : une classe
+ * du même package dont la méthode bind aiguille le nom du paramètre par un
+ * switch vers l'appel direct du setter. Seuls les attributs déclarés par la
+ * classe dont le setter public accepte une String y figurent ; les autres
+ * sont laissés au plan par réflexion, qui les convertit (voir Converters) et
+ * signale les erreurs.
+ * @author filippo
+ */
+final class FormBinderWriter
+{
+    /**
+     * L'environnement du processeur.
+     */
+    private final ProcessingEnvironment processingEnv;
+
+    /**
+     * Constructeur.
+     * @param pProcessingEnv
+     *        L'environnement du processeur.
+     */
+    FormBinderWriter(ProcessingEnvironment pProcessingEnv)
+    {
+        this.processingEnv = pProcessingEnv;
+    }
+
+    /**
+     * Génère le binder d'une classe, si c'est une classe publique de premier
+     * niveau.
+     * @param type
+     *        La classe d'ActionForm.
+     */
+    void write(TypeElement type)
+    {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL || !type.getModifiers().contains(Modifier.PUBLIC))
+        {
+            return;
+        }
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String formName = type.getSimpleName().toString();
+        String binderName = formName + FormBinder.GENERATED_SUFFIX;
+        String qualifiedBinderName = binderName;
+        if (!packageName.isEmpty())
+        {
+            qualifiedBinderName = packageName + "." + binderName;
+        }
+        try
+        {
+            JavaFileObject source = processingEnv.getFiler().createSourceFile(qualifiedBinderName, type);
+            Writer writer = source.openWriter();
+            try
+            {
+                writeSource(writer, packageName, formName, binderName, bindableFields(type));
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Kind.WARNING, "Cannot generate " + qualifiedBinderName + ", " + type + " will be populated by reflection: " + e.getMessage(), type);
+        }
+    }
+
+    /**
+     * Les attributs déclarés par la classe dont le setter public accepte une
+     * String.
+     * @param type
+     *        La classe d'ActionForm.
+     * @return Les noms des attributs.
+     */
+    private List<String> bindableFields(TypeElement type)
+    {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror string = types.erasure(processingEnv.getElementUtils().getTypeElement(String.class.getCanonicalName()).asType());
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        List<String> fields = new ArrayList<String>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+        {
+            String name = field.getSimpleName().toString();
+            String setterName = "set" + name.substring(0, 1).toUpperCase() + name.substring(1, name.length());
+            if (types.isSameType(types.erasure(field.asType()), string) && hasStringSetter(methods, setterName, string))
+            {
+                fields.add(name);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Indique si la classe a un setter public d'instance qui accepte une
+     * String.
+     * @param methods
+     *        Les méthodes de la classe, héritées comprises.
+     * @param setterName
+     *        Le nom du setter.
+     * @param string
+     *        Le type String.
+     * @return Vrai si le setter existe.
+     */
+    private boolean hasStringSetter(List<ExecutableElement> methods, String setterName, TypeMirror string)
+    {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement method : methods)
+        {
+            if (method.getSimpleName().contentEquals(setterName) && method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC) && method.getParameters().size() == 1 && types.isSameType(types.erasure(method.getParameters().get(0).asType()), string))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Écrit la source du binder.
+     * @param writer
+     *        La destination.
+     * @param packageName
+     *        Le package de la classe d'ActionForm.
+     * @param formName
+     *        Le nom simple de la classe d'ActionForm.
+     * @param binderName
+     *        Le nom simple du binder.
+     * @param fields
+     *        Les attributs à peupler.
+     * @throws IOException
+     *         Si l'écriture échoue.
+     */
+    private static void writeSource(Writer writer, String packageName, String formName, String binderName, List<String> fields) throws IOException
+    {
+        if (!packageName.isEmpty())
+        {
+            writer.write("package " + packageName + ";\n\n");
+        }
+        writer.write("/**\n * Binder of " + formName + ", generated by the EasyWeb annotation processor, do not edit.\n */\n");
+        writer.write("public final class " + binderName + " implements " + FormBinder.class.getCanonicalName() + "\n{\n");
+        writer.write("    @Override\n    public boolean bind(Object actionForm, String name, String value)\n    {\n");
+        writer.write("        " + formName + " form = (" + formName + ") actionForm;\n");
+        writer.write("        switch (name)\n        {\n");
+        for (String field : fields)
+        {
+            String setterName = "set" + field.substring(0, 1).toUpperCase() + field.substring(1, field.length());
+            writer.write("            case \"" + field + "\":\n                form." + setterName + "(value);\n                return true;\n");
+        }
+        writer.write("            default:\n                return false;\n        }\n    }\n}\n");
+    }
+}
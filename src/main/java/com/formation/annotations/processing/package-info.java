@@ -0,0 +1,4 @@
+/**
+ * Ce package contient le processeur d'annotations qui relève, à la compilation de l'application hôte, les classes annotées @Action et @ActionForm dans un index que le framework lit au démarrage au lieu de scanner les packages.
+ */
+package com.formation.annotations.processing;
@@ -0,0 +1,314 @@
+package com.formation.configreader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.formation.annotations.ActionScope;
+import com.formation.exceptions.runtime.XMLParsingException;
+
+/**
+ * Lecteur en flux des fichiers de configuration XML. Le fichier est lu en une
+ * seule passe sans en construire l'arbre en mémoire : seules les entrées
+ * relevées sont gardées. Les erreurs indiquent la ligne et la colonne où elles
+ * ont été rencontrées.
+ * @author filippo
+ */
+final class ConfigurationFileParser
+{
+    /**
+     * Élément d'une Action dans le fichier de configuration old-style.
+     */
+    private static final String ACTION = "action";
+    /**
+     * Élément d'un ActionForm dans le fichier de configuration old-style.
+     */
+    private static final String FORM = "form";
+    /**
+     * Élément de l'url-pattern d'une Action.
+     */
+    private static final String URL_PATTERN = "url-pattern";
+    /**
+     * Élément de la classe d'une Action.
+     */
+    private static final String ACTION_CLASS = "action-class";
+    /**
+     * Élément du nom du formulaire, dans une Action comme dans un ActionForm.
+     */
+    private static final String FORM_NAME = "form-name";
+    /**
+     * Élément de la classe d'un ActionForm.
+     */
+    private static final String FORM_CLASS = "form-class";
+    /**
+     * Élément facultatif de la portée d'une Action.
+     */
+    private static final String SCOPE = "scope";
+    /**
+     * Fabrique des lecteurs, configurée une fois pour toutes : les entités
+     * externes ne sont pas résolues.
+     */
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * Constructeur privé, classe utilitaire.
+     */
+    private ConfigurationFileParser()
+    {
+    }
+
+    /**
+     * Crée la fabrique des lecteurs.
+     * @return La fabrique.
+     */
+    private static XMLInputFactory createFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Lit les packages à scanner : le texte de chaque élément fils de la
+     * racine.
+     * @param iS
+     *        Le fichier de configuration, fermé après lecture.
+     * @param fileName
+     *        Le nom du fichier, pour les messages d'erreur.
+     * @return Les noms des packages dans l'ordre du fichier.
+     */
+    static List<String> readPackagesToScan(InputStream iS, String fileName)
+    {
+        List<String> packagesToScan = new ArrayList<String>();
+        XMLStreamReader reader = open(iS, fileName);
+        try
+        {
+            reader.nextTag();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+                packagesToScan.add(reader.getElementText().trim());
+            }
+            return packagesToScan;
+        }
+        catch (XMLStreamException e)
+        {
+            throw parsingException(fileName, e);
+        }
+        finally
+        {
+            close(reader, iS);
+        }
+    }
+
+    /**
+     * Lit les Actions et les ActionForms du fichier de configuration
+     * old-style.
+     * @param iS
+     *        Le fichier de configuration, fermé après lecture.
+     * @param fileName
+     *        Le nom du fichier, pour les messages d'erreur.
+     * @param actionMap
+     *        Reçoit les Actions : en clef le petit nom de l'ActionForm
+     *        associé, en valeur le nom canonique de la classe,
+     *        l'url-pattern et la portée.
+     * @param formMap
+     *        Reçoit les ActionForms : en clef leur petit nom, en valeur le nom
+     *        canonique de la classe.
+     */
+    static void readActionsAndForms(InputStream iS, String fileName, Map<String, String[]> actionMap, Map<String, String> formMap)
+    {
+        XMLStreamReader reader = open(iS, fileName);
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT)
+                {
+                    readEntry(reader, fileName, actionMap, formMap);
+                }
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw parsingException(fileName, e);
+        }
+        finally
+        {
+            close(reader, iS);
+        }
+    }
+
+    /**
+     * Lit une Action ou un ActionForm si le lecteur est positionné sur l'un
+     * d'eux.
+     * @param reader
+     *        Le lecteur, positionné sur le début d'un élément.
+     * @param fileName
+     *        Le nom du fichier, pour les messages d'erreur.
+     * @param actionMap
+     *        Reçoit les Actions.
+     * @param formMap
+     *        Reçoit les ActionForms.
+     * @throws XMLStreamException
+     *         Si le fichier est mal formé.
+     */
+    private static void readEntry(XMLStreamReader reader, String fileName, Map<String, String[]> actionMap, Map<String, String> formMap) throws XMLStreamException
+    {
+        String name = reader.getLocalName();
+        if (ACTION.equals(name))
+        {
+            Location location = reader.getLocation();
+            Map<String, String> properties = readProperties(reader);
+            actionMap.put(required(properties, FORM_NAME, fileName, location), new String[]
+            {
+                    required(properties, ACTION_CLASS, fileName, location), required(properties, URL_PATTERN, fileName, location), scope(properties, fileName, location)
+            });
+        }
+        else if (FORM.equals(name))
+        {
+            Location location = reader.getLocation();
+            Map<String, String> properties = readProperties(reader);
+            formMap.put(required(properties, FORM_NAME, fileName, location), required(properties, FORM_CLASS, fileName, location));
+        }
+    }
+
+    /**
+     * Lit les éléments fils d'une Action ou d'un ActionForm.
+     * @param reader
+     *        Le lecteur, positionné sur le début de l'Action ou de
+     *        l'ActionForm, puis sur sa fin au retour.
+     * @return Le texte de chaque élément fils, par nom d'élément.
+     * @throws XMLStreamException
+     *         Si le fichier est mal formé ou si un élément fils contient
+     *         lui-même des éléments.
+     */
+    private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException
+    {
+        Map<String, String> properties = new HashMap<String, String>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            String name = reader.getLocalName();
+            properties.put(name, reader.getElementText());
+        }
+        return properties;
+    }
+
+    /**
+     * Valeur d'un élément fils obligatoire.
+     * @param properties
+     *        Les éléments fils lus.
+     * @param name
+     *        Le nom de l'élément obligatoire.
+     * @param fileName
+     *        Le nom du fichier, pour le message d'erreur.
+     * @param location
+     *        La position de l'élément parent.
+     * @return Le texte de l'élément.
+     */
+    private static String required(Map<String, String> properties, String name, String fileName, Location location)
+    {
+        String value = properties.get(name);
+        if (value == null)
+        {
+            throw new XMLParsingException("The element <" + name + "> is missing in " + fileName + ". Please check its structure.", location.getLineNumber(), location.getColumnNumber());
+        }
+        return value;
+    }
+
+    /**
+     * Portée d'une Action, SESSION si l'élément &lt;scope&gt; est absent.
+     * @param properties
+     *        Les éléments fils lus.
+     * @param fileName
+     *        Le nom du fichier, pour le message d'erreur.
+     * @param location
+     *        La position de l'Action.
+     * @return Le nom de la portée.
+     */
+    private static String scope(Map<String, String> properties, String fileName, Location location)
+    {
+        String value = properties.get(SCOPE);
+        if (value == null)
+        {
+            return ActionScope.SESSION.name();
+        }
+        for (ActionScope scope : ActionScope.values())
+        {
+            if (scope.name().equalsIgnoreCase(value.trim()))
+            {
+                return scope.name();
+            }
+        }
+        throw new XMLParsingException("The scope " + value + " in " + fileName + " is unknown, expected one of " + Arrays.toString(ActionScope.values()) + ".", location.getLineNumber(), location.getColumnNumber());
+    }
+
+    /**
+     * Ouvre un lecteur.
+     * @param iS
+     *        Le fichier de configuration.
+     * @param fileName
+     *        Le nom du fichier, pour les messages d'erreur.
+     * @return Le lecteur.
+     */
+    private static XMLStreamReader open(InputStream iS, String fileName)
+    {
+        try
+        {
+            return FACTORY.createXMLStreamReader(iS);
+        }
+        catch (XMLStreamException e)
+        {
+            throw parsingException(fileName, e);
+        }
+    }
+
+    /**
+     * Ferme le lecteur et le fichier.
+     * @param reader
+     *        Le lecteur.
+     * @param iS
+     *        Le fichier.
+     */
+    private static void close(XMLStreamReader reader, InputStream iS)
+    {
+        try
+        {
+            reader.close();
+            iS.close();
+        }
+        catch (XMLStreamException | IOException e)
+        {
+            // le fichier a été lu, une erreur à la fermeture est sans effet
+        }
+    }
+
+    /**
+     * Exception signalant un fichier mal formé, avec sa position.
+     * @param fileName
+     *        Le nom du fichier.
+     * @param e
+     *        L'erreur du lecteur.
+     * @return L'exception à lever.
+     */
+    private static XMLParsingException parsingException(String fileName, XMLStreamException e)
+    {
+        String message = "The framework xml configuration file is not properly formed and cannot be parsed. Please check its structure. Its name is " + fileName + " and is placed in your src/main/resources folder." + "\n" + e.getMessage();
+        Location location = e.getLocation();
+        if (location == null)
+        {
+            return new XMLParsingException(message);
+        }
+        return new XMLParsingException(message, location.getLineNumber(), location.getColumnNumber());
+    }
+}
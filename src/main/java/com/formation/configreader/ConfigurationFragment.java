@@ -0,0 +1,180 @@
+package com.formation.configreader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.formation.exceptions.runtime.DuplicateUrlPatternException;
+import com.formation.exceptions.runtime.XMLParsingException;
+
+/**
+ * Fragment de configuration livré par un jar de l'application hôte dans
+ * META-INF/easyweb-fragment.xml. Il déclare des Actions et des ActionForms
+ * comme le fichier de configuration old-style ; le formulaire d'une Action est
+ * cherché dans le même fragment. Les fragments de tous les jars sont lus en
+ * parallèle.
+ * @author filippo
+ */
+final class ConfigurationFragment
+{
+    /**
+     * Nom de la ressource d'un fragment dans un jar.
+     */
+    static final String RESOURCE_NAME = "META-INF/easyweb-fragment.xml";
+    /**
+     * L'url du fragment.
+     */
+    private final URL url;
+    /**
+     * Les Actions et ActionForms du fragment : en clef l'url-pattern, en
+     * valeur les noms canoniques de l'Action et de l'ActionForm et la portée
+     * de l'Action.
+     */
+    private final Map<String, String[]> actionsAndFormsMap;
+
+    /**
+     * Constructeur.
+     * @param pUrl
+     *        L'url du fragment.
+     * @param pActionsAndFormsMap
+     *        Ses Actions et ActionForms.
+     */
+    private ConfigurationFragment(URL pUrl, Map<String, String[]> pActionsAndFormsMap)
+    {
+        this.url = pUrl;
+        this.actionsAndFormsMap = pActionsAndFormsMap;
+    }
+
+    /**
+     * Cherche les fragments visibles d'un ClassLoader, sans doublon.
+     * @param classLoader
+     *        Le ClassLoader de l'application hôte.
+     * @return Leurs urls, dans l'ordre du classpath.
+     */
+    static List<URL> find(ClassLoader classLoader)
+    {
+        Set<URL> urls = new LinkedHashSet<URL>();
+        try
+        {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+            while (resources.hasMoreElements())
+            {
+                urls.add(resources.nextElement());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new XMLParsingException("The configuration fragments " + RESOURCE_NAME + " cannot be listed." + "\n" + e.getMessage());
+        }
+        return new ArrayList<URL>(urls);
+    }
+
+    /**
+     * Lit des fragments, en parallèle s'il y en a plusieurs.
+     * @param urls
+     *        Les urls des fragments.
+     * @return Les fragments, dans l'ordre des urls.
+     */
+    static List<ConfigurationFragment> readAll(List<URL> urls)
+    {
+        if (urls.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        List<ConfigurationFragment> fragments = new ArrayList<ConfigurationFragment>(urls.size());
+        if (urls.size() == 1)
+        {
+            fragments.add(read(urls.get(0)));
+            return fragments;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(urls.size(), Runtime.getRuntime().availableProcessors()));
+        try
+        {
+            List<ForkJoinTask<ConfigurationFragment>> tasks = new ArrayList<ForkJoinTask<ConfigurationFragment>>(urls.size());
+            for (final URL fragmentUrl : urls)
+            {
+                tasks.add(pool.submit(new Callable<ConfigurationFragment>()
+                {
+                    @Override
+                    public ConfigurationFragment call()
+                    {
+                        return read(fragmentUrl);
+                    }
+                }));
+            }
+            for (ForkJoinTask<ConfigurationFragment> task : tasks)
+            {
+                fragments.add(task.join());
+            }
+            return fragments;
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lit un fragment.
+     * @param fragmentUrl
+     *        Son url.
+     * @return Le fragment.
+     */
+    private static ConfigurationFragment read(URL fragmentUrl)
+    {
+        Map<String, String[]> actionMap = new LinkedHashMap<String, String[]>();
+        Map<String, String> formMap = new LinkedHashMap<String, String>();
+        try
+        {
+            ConfigurationFileParser.readActionsAndForms(fragmentUrl.openStream(), fragmentUrl.toString(), actionMap, formMap);
+        }
+        catch (IOException e)
+        {
+            throw new XMLParsingException("The configuration fragment " + fragmentUrl + " cannot be read." + "\n" + e.getMessage());
+        }
+        Map<String, String[]> actionsAndFormsMap = new LinkedHashMap<String, String[]>();
+        for (Entry<String, String[]> action : actionMap.entrySet())
+        {
+            String urlPattern = action.getValue()[1];
+            if (actionsAndFormsMap.containsKey(urlPattern))
+            {
+                throw new DuplicateUrlPatternException("The url-pattern " + urlPattern + " is declared twice in the configuration fragment " + fragmentUrl + ".");
+            }
+            actionsAndFormsMap.put(urlPattern, new String[]
+            {
+                    action.getValue()[0], formMap.get(action.getKey()), action.getValue()[2]
+            });
+        }
+        return new ConfigurationFragment(fragmentUrl, actionsAndFormsMap);
+    }
+
+    /**
+     * Getter de l'url du fragment.
+     * @return L'url.
+     */
+    URL getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * Getter des Actions et ActionForms du fragment.
+     * @return En clef l'url-pattern, en valeur les noms canoniques de l'Action
+     *         et de l'ActionForm, dans l'ordre du fragment.
+     */
+    Map<String, String[]> getActionsAndFormsMap()
+    {
+        return actionsAndFormsMap;
+    }
+}
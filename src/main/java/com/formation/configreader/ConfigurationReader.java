@@ -3,35 +3,41 @@ package com.formation.configreader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.log4j.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.formation.annotations.Action;
 import com.formation.annotations.ActionForm;
+import com.formation.annotations.processing.AnnotationIndex;
+import com.formation.exceptions.runtime.DuplicateUrlPatternException;
 import com.formation.exceptions.runtime.FileNotFoundException;
 import com.formation.exceptions.runtime.NoConfigurationProvidedException;
 import com.formation.exceptions.runtime.OldConfigurationFileFoundWhileUsingAnnotationsException;
 import com.formation.exceptions.runtime.WrongPackageNamesInPackagesToScanException;
-import com.formation.exceptions.runtime.XMLParsingException;
+import com.formation.profiling.StartupReport;
+import com.formation.registry.Registry;
+import com.formation.routing.AutomatonRouter;
+import com.formation.routing.Route;
+import com.formation.routing.RouteCache;
+import com.formation.routing.RouteTable;
+import com.formation.routing.Router;
+import com.formation.scanning.ClasspathScanner;
+import com.formation.scanning.ScanCache;
 
 /**
  * Classe dont le rôle est d'identifier les Action et ActionForm déclarés par
@@ -41,10 +47,33 @@ import com.formation.exceptions.runtime.XMLParsingException;
 public final class ConfigurationReader
 {
     /**
-     * L'extension des fichiers class qui vont être lus à la recherche
-     * d'annotations.
+     * Valeur de la propriété router pour une table de routage où les
+     * url-pattern littéraux sont trouvés par hachage.
+     */
+    private static final String ROUTER_TABLE = "table";
+    /**
+     * Valeur de la propriété router pour une table de routage où tous les
+     * url-pattern sont réunis dans un seul automate.
+     */
+    private static final String ROUTER_AUTOMATON = "automaton";
+    /**
+     * Origine des url-pattern de la configuration principale dans les
+     * messages de doublons.
+     */
+    private static final String MAIN_CONFIGURATION = "the main configuration";
+    /**
+     * Nom du fichier des paramètres du framework.
      */
-    private final String classFileExtension = ".class";
+    private static final String PROPERTIES_FILE_NAME = "configurationFiles.properties";
+    /**
+     * Nom du fichier de l'instantané de la configuration dans le dossier de
+     * travail.
+     */
+    private static final String SNAPSHOT_FILE_NAME = "easyweb-configuration.snapshot";
+    /**
+     * Nom du fichier du cache du scanner dans le dossier de travail.
+     */
+    private static final String SCAN_CACHE_FILE_NAME = "easyweb-scan.cache";
     /**
      * Name of the xml configuration file where you have to specify each Action
      * and ActionForm individually.
@@ -56,6 +85,78 @@ public final class ConfigurationReader
      * annotations.
      */
     private String newConfigurationFileName;
+    /**
+     * Type de table de routage demandé dans configurationFiles.properties :
+     * "table" (par défaut) ou "automaton".
+     */
+    private String routerMode;
+    /**
+     * Nombre maximal d'urls dont la route est mémorisée, 0 pour ne pas
+     * utiliser de cache de routage.
+     */
+    private int routeCacheSize;
+    /**
+     * Indique si les résultats du scanner sont gardés dans le dossier de
+     * travail pour le démarrage suivant.
+     */
+    private boolean scanCacheEnabled;
+    /**
+     * Indique si la configuration est rechargée quand ses fichiers ou les
+     * classes scannées changent.
+     */
+    private boolean reloadEnabled;
+    /**
+     * Indique si la lecture de la configuration au démarrage fait l'objet d'un
+     * rapport.
+     */
+    private boolean startupReportEnabled;
+    /**
+     * Indique si la configuration résolue est gardée dans un instantané
+     * binaire relu aux démarrages suivants.
+     */
+    private boolean snapshotEnabled;
+    /**
+     * Chemin de l'instantané donné par la propriété snapshotFile, ou null
+     * pour le garder dans le dossier de travail.
+     */
+    private String snapshotFilePath;
+    /**
+     * Nombre maximal d'ActionForms de portée requête gardés en réserve par
+     * classe, 0 pour ne pas en garder.
+     */
+    private int formPoolSize;
+    /**
+     * Vrai si les paramètres qui ne correspondent à aucun attribut de
+     * l'ActionForm sont ignorés plutôt que refusés.
+     */
+    private boolean lenientBinding;
+    /**
+     * Vrai si le corps des formulaires urlencoded est lu en streaming.
+     */
+    private boolean streamingBinding;
+    /**
+     * Nombre maximal de paramètres d'un corps lu en streaming, et de cases
+     * ajoutées par les chemins indexés d'une requête.
+     */
+    private int maxFormParameters;
+    /**
+     * Nombre maximal d'octets d'un nom ou d'une valeur d'un corps lu en
+     * streaming.
+     */
+    private int maxFormValueLength;
+    /**
+     * Dossier de travail de l'application hôte, ou null s'il n'est pas connu.
+     */
+    private File workDirectory;
+    /**
+     * Rapport du démarrage en cours, null en dehors de buildRegistry ou si la
+     * propriété startupReport n'est pas activée.
+     */
+    private StartupReport currentReport;
+    /**
+     * Rapport du dernier démarrage, ou null.
+     */
+    private StartupReport startupReport;
     /**
      * Instance de la classe initialisée dès le chargement de la classe et
      * renvoyée par la classe à chaque demande d'instanciation pour assurer son
@@ -74,7 +175,7 @@ public final class ConfigurationReader
      */
     private ConfigurationReader()
     {
-        InputStream iS = Thread.currentThread().getContextClassLoader().getResourceAsStream("configurationFiles.properties");
+        InputStream iS = Thread.currentThread().getContextClassLoader().getResourceAsStream(PROPERTIES_FILE_NAME);
         Properties properties = new Properties();
         try
         {
@@ -86,6 +187,18 @@ public final class ConfigurationReader
         }
         oldConfigurationFileName = properties.getProperty("old");
         newConfigurationFileName = properties.getProperty("new");
+        routerMode = properties.getProperty("router", ROUTER_TABLE);
+        routeCacheSize = Integer.parseInt(properties.getProperty("routeCacheSize", "0").trim());
+        scanCacheEnabled = Boolean.parseBoolean(properties.getProperty("scanCache", "true").trim());
+        reloadEnabled = Boolean.parseBoolean(properties.getProperty("reload", "false").trim());
+        startupReportEnabled = Boolean.parseBoolean(properties.getProperty("startupReport", "false").trim());
+        snapshotEnabled = Boolean.parseBoolean(properties.getProperty("snapshot", "false").trim());
+        snapshotFilePath = properties.getProperty("snapshotFile");
+        formPoolSize = Integer.parseInt(properties.getProperty("formPoolSize", "0").trim());
+        lenientBinding = Boolean.parseBoolean(properties.getProperty("lenientBinding", "false").trim());
+        streamingBinding = Boolean.parseBoolean(properties.getProperty("streamingBinding", "false").trim());
+        maxFormParameters = Integer.parseInt(properties.getProperty("maxFormParameters", "10000").trim());
+        maxFormValueLength = Integer.parseInt(properties.getProperty("maxFormValueLength", "1048576").trim());
     }
 
     /**
@@ -98,6 +211,150 @@ public final class ConfigurationReader
         return readerInstance;
     }
 
+    /**
+     * Setter du dossier de travail où est gardé le cache du scanner. Sans
+     * dossier de travail les packages sont scannés à chaque démarrage.
+     * @param pWorkDirectory
+     *        Le dossier de travail de l'application hôte, ou null.
+     */
+    public void setWorkDirectory(File pWorkDirectory)
+    {
+        this.workDirectory = pWorkDirectory;
+    }
+
+    /**
+     * Indique si la configuration doit être rechargée quand elle change.
+     * @return La valeur de la propriété reload.
+     */
+    public boolean isReloadEnabled()
+    {
+        return reloadEnabled;
+    }
+
+    /**
+     * Getter de la taille de la réserve des ActionForms de portée requête.
+     * @return Le nombre maximal d'instances libres par classe, 0 si la
+     *         réserve n'est pas activée.
+     */
+    public int getFormPoolSize()
+    {
+        return formPoolSize;
+    }
+
+    /**
+     * Indique si les paramètres qui ne correspondent à aucun attribut de
+     * l'ActionForm sont ignorés.
+     * @return Vrai si la propriété lenientBinding est activée.
+     */
+    public boolean isLenientBinding()
+    {
+        return lenientBinding;
+    }
+
+    /**
+     * Indique si le corps des formulaires urlencoded est lu en streaming.
+     * @return Vrai si la propriété streamingBinding est activée.
+     */
+    public boolean isStreamingBinding()
+    {
+        return streamingBinding;
+    }
+
+    /**
+     * Getter du nombre maximal de paramètres d'un corps lu en streaming, qui
+     * borne aussi les cases ajoutées par les chemins indexés d'une requête.
+     * @return Le nombre de paramètres.
+     */
+    public int getMaxFormParameters()
+    {
+        return maxFormParameters;
+    }
+
+    /**
+     * Getter du nombre maximal d'octets d'un nom ou d'une valeur d'un corps
+     * lu en streaming.
+     * @return Le nombre d'octets.
+     */
+    public int getMaxFormValueLength()
+    {
+        return maxFormValueLength;
+    }
+
+    /**
+     * Getter du rapport du dernier démarrage.
+     * @return Le rapport, ou null si la propriété startupReport n'est pas
+     *         activée.
+     */
+    public StartupReport getStartupReport()
+    {
+        return startupReport;
+    }
+
+    /**
+     * Renvoie les dossiers à surveiller pour recharger la configuration : ceux
+     * des fichiers de configuration et ceux des packages à scanner. Les
+     * packages qui se trouvent dans des jars ne sont pas surveillés.
+     * @return Les dossiers, sans doublon.
+     */
+    public List<File> getWatchedDirectories()
+    {
+        Set<File> directories = new LinkedHashSet<File>();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        addDirectory(directories, classLoader.getResource("/" + oldConfigurationFileName), true);
+        addDirectory(directories, classLoader.getResource("/" + newConfigurationFileName), true);
+        for (URL fragment : ConfigurationFragment.find(classLoader))
+        {
+            addDirectory(directories, fragment, true);
+        }
+        for (String packageName : packagesToScan())
+        {
+            try
+            {
+                Enumeration<URL> resources = classLoader.getResources(packageName.replace('.', '/'));
+                while (resources.hasMoreElements())
+                {
+                    addDirectory(directories, resources.nextElement(), false);
+                }
+            }
+            catch (IOException e)
+            {
+                logger.warn("The package " + packageName + " cannot be watched." + "\n" + e.getMessage());
+            }
+        }
+        return new ArrayList<File>(directories);
+    }
+
+    /**
+     * Ajoute un dossier à surveiller s'il se trouve sur le disque.
+     * @param directories
+     *        Les dossiers à surveiller.
+     * @param resource
+     *        L'url d'un fichier ou d'un dossier, ou null.
+     * @param parent
+     *        Vrai pour surveiller le dossier qui contient la ressource plutôt
+     *        que la ressource elle-même.
+     */
+    private void addDirectory(Set<File> directories, URL resource, boolean parent)
+    {
+        if (resource == null || !"file".equals(resource.getProtocol()))
+        {
+            return;
+        }
+        try
+        {
+            File file = new File(resource.toURI());
+            if (parent)
+            {
+                file = file.getParentFile();
+            }
+            directories.add(file);
+        }
+        catch (URISyntaxException e)
+        {
+            logger.warn("The directory " + resource + " cannot be watched." + "\n" + e.getMessage());
+        }
+    }
+
     /**
      * Renvoie les noms canoniques de l'Action et ActionForm dont l'url-pattern
      * correspond à l'url demandée.
@@ -123,15 +380,353 @@ public final class ConfigurationReader
         return null;
     }
 
+    /**
+     * Renvoie les noms canoniques de l'Action et ActionForm dont l'url-pattern
+     * correspond à l'url demandée en s'appuyant sur une table de routage
+     * construite une fois pour toutes.
+     * @param router
+     *        La table de routage construite à partir de la map des actions et
+     *        forms par buildRouter.
+     * @param urlPathInfo
+     *        La terminaison d'url demandée correspodant à l'action demandée.
+     * @return Les noms canoniques de l'Action et ActionForm demandés sous forme
+     *         de String[]
+     */
+    public String[] getActionAndFormCanonicalNamesByAction(Router router, String urlPathInfo)
+    {
+        Route route = router.resolve(urlPathInfo);
+        if (route == null)
+        {
+            return null;
+        }
+        return route.getCanonicalNames();
+    }
+
+    /**
+     * Construit la table de routage immuable correspondant à la map des
+     * actions et forms. Les url-pattern y sont analysés et compilés une seule
+     * fois au lieu de l'être à chaque requête. La propriété router du fichier
+     * configurationFiles.properties choisit entre :
+     * <ul>
+     * <li>table : les url-pattern littéraux sont trouvés par hachage, les
+     * autres sont testés un à un.</li>
+     * <li>automaton : tous les url-pattern sont réunis dans un seul automate
+     * qui lit l'url une seule fois. Conseillé quand de nombreux url-pattern
+     * sont de vraies expressions régulières.</li>
+     * </ul>
+     * Si la propriété routeCacheSize est strictement positive la table est
+     * précédée d'un cache borné des routes trouvées pour chaque url.
+     * @param actionsAndFormsMap
+     *        Une map qui contient en clef les url-pattern et en valeur les
+     *        couple Action et ActionForm associés
+     * @return La table de routage.
+     */
+    public Router buildRouter(Map<String, String[]> actionsAndFormsMap)
+    {
+        return buildRouter(Route.declaredIn(actionsAndFormsMap));
+    }
+
+    /**
+     * Construit la table de routage demandée par la propriété router à partir
+     * de routes déjà créées, éventuellement conservées d'un registre
+     * précédent.
+     * @param routes
+     *        Les routes, dans l'ordre de déclaration.
+     * @return La table de routage.
+     */
+    public Router buildRouter(List<Route> routes)
+    {
+        Router router;
+        if (ROUTER_AUTOMATON.equals(routerMode))
+        {
+            router = AutomatonRouter.build(routes);
+        }
+        else
+        {
+            router = RouteTable.build(routes);
+        }
+        if (routeCacheSize > 0)
+        {
+            router = new RouteCache(router, routeCacheSize);
+        }
+        return router;
+    }
+
+    /**
+     * Lit la configuration de l'application hôte et construit le registre
+     * immuable de ses Actions et ActionForms. Si la propriété startupReport
+     * est activée, le temps passé dans chaque phase est relevé puis tracé.
+     * @return Le registre.
+     */
+    public Registry buildRegistry()
+    {
+        long start = System.nanoTime();
+        if (startupReportEnabled)
+        {
+            currentReport = new StartupReport();
+        }
+        try
+        {
+            Map<String, String[]> actionsAndFormsMap = buildActionsAndFormsMap();
+            long routingStart = System.nanoTime();
+            List<Route> routes = Route.declaredIn(actionsAndFormsMap);
+            Registry registry = new Registry(actionsAndFormsMap, routes, buildRouter(routes));
+            endPhase(StartupReport.PHASE_ROUTING, routingStart);
+            publishReport(start);
+            return registry;
+        }
+        finally
+        {
+            currentReport = null;
+        }
+    }
+
+    /**
+     * Termine et trace le rapport du démarrage en cours, s'il y en a un.
+     * @param start
+     *        Début de la lecture de la configuration, en nanosecondes.
+     */
+    private void publishReport(long start)
+    {
+        if (currentReport != null)
+        {
+            currentReport.setWallNanos(System.nanoTime() - start);
+            startupReport = currentReport;
+            logger.info(startupReport.getReport());
+        }
+    }
+
+    /**
+     * Relève la durée d'une phase dans le rapport du démarrage en cours, s'il
+     * y en a un.
+     * @param phase
+     *        Le nom de la phase.
+     * @param start
+     *        Début de la phase, en nanosecondes.
+     */
+    private void endPhase(String phase, long start)
+    {
+        if (currentReport != null)
+        {
+            currentReport.addPhase(phase, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Construit une map qui contient en clef les url-pattern et en valeur les
-     * couple Action et ActionForm associés. On cherche d'abord les annotations
-     * pour construire la configuration puis si celles-ci ne sont pas trouvées
-     * on se rabat sur le fichier de configuration où les classes sont déclarées
-     * individuellement.
+     * couple Action et ActionForm associés. Si la propriété snapshot est
+     * activée et que l'instantané de la configuration est à jour, la map est
+     * lue dans l'instantané ; sinon elle est construite puis l'instantané est
+     * écrit.
      * @return la susdite map.
      */
     public Map<String, String[]> buildActionsAndFormsMap()
+    {
+        File snapshotFile = snapshotFile();
+        if (snapshotFile == null)
+        {
+            return readActionsAndFormsMap();
+        }
+        long start = System.nanoTime();
+        Map<String, String[]> actionsAndFormsMap = loadSnapshot(snapshotFile);
+        endPhase(StartupReport.PHASE_SNAPSHOT, start);
+        if (actionsAndFormsMap != null)
+        {
+            return actionsAndFormsMap;
+        }
+        return readActionsAndFormsMapAndSnapshot(snapshotFile);
+    }
+
+    /**
+     * Renvoie le fichier de l'instantané de la configuration.
+     * @return Le fichier donné par la propriété snapshotFile, à défaut celui
+     *         du dossier de travail, ou null si la propriété snapshot n'est
+     *         pas activée ou que le dossier de travail n'est pas connu.
+     */
+    private File snapshotFile()
+    {
+        if (!snapshotEnabled)
+        {
+            return null;
+        }
+        if (snapshotFilePath != null && !snapshotFilePath.trim().isEmpty())
+        {
+            return new File(snapshotFilePath.trim());
+        }
+        if (workDirectory != null)
+        {
+            return new File(workDirectory, SNAPSHOT_FILE_NAME);
+        }
+        return null;
+    }
+
+    /**
+     * Lit l'instantané de la configuration s'il est à jour.
+     * @param snapshotFile
+     *        Le fichier de l'instantané.
+     * @return La configuration, ou null si l'instantané est absent, illisible
+     *         ou si l'une de ses sources a changé.
+     */
+    private Map<String, String[]> loadSnapshot(File snapshotFile)
+    {
+        try
+        {
+            ConfigurationSnapshot snapshot = ConfigurationSnapshot.read(snapshotFile);
+            if (snapshot == null)
+            {
+                return null;
+            }
+            if (!snapshot.isUpToDate(snapshotInputs(snapshot.getPackagesToScan())))
+            {
+                logger.info("The configuration snapshot " + snapshotFile + " is out of date, the configuration is read again.");
+                return null;
+            }
+            logger.info("Configuration loaded from the snapshot " + snapshotFile + ".");
+            return snapshot.getActionsAndFormsMap();
+        }
+        catch (IOException e)
+        {
+            logger.warn("The configuration snapshot " + snapshotFile + " cannot be read, the configuration is read again." + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Construit la configuration et en écrit l'instantané. Les empreintes des
+     * sources sont calculées avant la lecture : une source modifiée pendant
+     * la lecture rendra l'instantané périmé au démarrage suivant.
+     * @param snapshotFile
+     *        Le fichier de l'instantané.
+     * @return La configuration.
+     */
+    private Map<String, String[]> readActionsAndFormsMapAndSnapshot(File snapshotFile)
+    {
+        List<String> packageNames = packagesToScan();
+        List<String> inputs = null;
+        try
+        {
+            inputs = snapshotInputs(packageNames);
+        }
+        catch (IOException e)
+        {
+            logger.warn("The sources of the configuration cannot be fingerprinted, no snapshot will be written." + "\n" + e.getMessage());
+        }
+        Map<String, String[]> actionsAndFormsMap = readActionsAndFormsMap();
+        if (inputs != null)
+        {
+            try
+            {
+                new ConfigurationSnapshot(packageNames, inputs, actionsAndFormsMap).write(snapshotFile);
+            }
+            catch (IOException e)
+            {
+                logger.warn("The configuration snapshot " + snapshotFile + " cannot be written." + "\n" + e.getMessage());
+            }
+        }
+        return actionsAndFormsMap;
+    }
+
+    /**
+     * Calcule les empreintes des sources de la configuration : fichier des
+     * paramètres, fichiers de configuration, index des classes annotées,
+     * fragments et emplacements des packages à scanner.
+     * @param packageNames
+     *        Les packages à scanner.
+     * @return Les empreintes, dans un ordre stable.
+     * @throws IOException
+     *         Si une source ne peut être lue.
+     */
+    private List<String> snapshotInputs(List<String> packageNames) throws IOException
+    {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<String> inputs = new ArrayList<String>();
+        inputs.add(ConfigurationSnapshot.fingerprint("properties", classLoader.getResource(PROPERTIES_FILE_NAME)));
+        inputs.add(ConfigurationSnapshot.fingerprint("old", classLoader.getResource("/" + oldConfigurationFileName)));
+        inputs.add(ConfigurationSnapshot.fingerprint("new", classLoader.getResource("/" + newConfigurationFileName)));
+        Enumeration<URL> indexes = classLoader.getResources(AnnotationIndex.RESOURCE_NAME);
+        while (indexes.hasMoreElements())
+        {
+            inputs.add(ConfigurationSnapshot.fingerprint("index", indexes.nextElement()));
+        }
+        for (URL fragment : ConfigurationFragment.find(classLoader))
+        {
+            inputs.add(ConfigurationSnapshot.fingerprint("fragment", fragment));
+        }
+        inputs.addAll(newScanner(classLoader).fingerprints(packageNames));
+        return inputs;
+    }
+
+    /**
+     * Construit la map des url-pattern en lisant la configuration principale,
+     * complétée par les fragments META-INF/easyweb-fragment.xml des jars de
+     * l'application hôte, lus en parallèle.
+     * @return la susdite map.
+     */
+    private Map<String, String[]> readActionsAndFormsMap()
+    {
+        long start = System.nanoTime();
+        List<ConfigurationFragment> fragments = ConfigurationFragment.readAll(ConfigurationFragment.find(Thread.currentThread().getContextClassLoader()));
+        endPhase(StartupReport.PHASE_FRAGMENTS, start);
+        return mergeFragments(buildMainActionsAndFormsMap(!fragments.isEmpty()), fragments);
+    }
+
+    /**
+     * Ajoute à la configuration principale les Actions et ActionForms des
+     * fragments. Un url-pattern ne peut être déclaré qu'une fois : tous les
+     * doublons sont signalés ensemble.
+     * @param actionsAndFormsMap
+     *        La configuration principale.
+     * @param fragments
+     *        Les fragments, dans l'ordre du classpath.
+     * @return La configuration complète.
+     */
+    private Map<String, String[]> mergeFragments(Map<String, String[]> actionsAndFormsMap, List<ConfigurationFragment> fragments)
+    {
+        if (fragments.isEmpty())
+        {
+            return actionsAndFormsMap;
+        }
+        Map<String, String[]> merged = new LinkedHashMap<String, String[]>(actionsAndFormsMap);
+        Map<String, String> sources = new HashMap<String, String>();
+        for (String urlPattern : actionsAndFormsMap.keySet())
+        {
+            sources.put(urlPattern, MAIN_CONFIGURATION);
+        }
+        StringBuilder conflicts = new StringBuilder();
+        for (ConfigurationFragment fragment : fragments)
+        {
+            for (Entry<String, String[]> e : fragment.getActionsAndFormsMap().entrySet())
+            {
+                String previous = sources.get(e.getKey());
+                if (previous == null)
+                {
+                    sources.put(e.getKey(), fragment.getUrl().toString());
+                    merged.put(e.getKey(), e.getValue());
+                }
+                else
+                {
+                    conflicts.append("\n").append("The url-pattern ").append(e.getKey()).append(" is declared in ").append(previous).append(" and in ").append(fragment.getUrl()).append(".");
+                }
+            }
+        }
+        if (conflicts.length() > 0)
+        {
+            throw new DuplicateUrlPatternException("Each url-pattern must be declared once, by the main configuration or by a single configuration fragment." + conflicts);
+        }
+        return merged;
+    }
+
+    /**
+     * Construit la map de la configuration principale. On cherche d'abord les
+     * annotations pour construire la configuration puis si celles-ci ne sont
+     * pas trouvées on se rabat sur le fichier de configuration où les classes
+     * sont déclarées individuellement.
+     * @param fragmentsFound
+     *        Vrai si des fragments de configuration ont été trouvés, auquel
+     *        cas la configuration principale peut être vide.
+     * @return la susdite map.
+     */
+    private Map<String, String[]> buildMainActionsAndFormsMap(boolean fragmentsFound)
     {
         // si présence d'annotations tout doit être fait en annotations et le
         // fichier ne doit pas exister
@@ -157,6 +752,10 @@ public final class ConfigurationReader
             {
                 return buildActionsAndFormsMapFromFile();
             }
+            else if (fragmentsFound)
+            {
+                return buildActionsAndFormsMapFromAnnotations;
+            }
             else
             {
                 throw new NoConfigurationProvidedException("For the framework to know your Actions and ActionForms you have whether to annotate them whit the @Action @ActionForm annotation and to declare their package in the new-fashioned configuration file or to declare them individually in the old-fashioned configuration file. Neither has been found.");
@@ -166,7 +765,8 @@ public final class ConfigurationReader
 
     /**
      * Méthode qui va chercher dans l'application hôte les classes Action et
-     * ActionForm et les mettre dans une map.
+     * ActionForm et les mettre dans une map. Les packages couverts par l'index
+     * écrit à la compilation sont lus dans l'index, les autres sont scannés.
      * @return Une Map<String, String[]> avec :
      *         <ul>
      *         <li>Pour clef : l'url-pattern associé à l'action</li>
@@ -179,28 +779,122 @@ public final class ConfigurationReader
         Map<String, String[]> actionsMap = new LinkedHashMap<String, String[]>();
         Map<String, String> formsMap = new LinkedHashMap<String, String>();
 
+        long start = System.nanoTime();
         ArrayList<String> packagesToScan = packagesToScan();
+        endPhase(StartupReport.PHASE_PACKAGES_TO_SCAN, start);
+        start = System.nanoTime();
+        AnnotationIndex index = loadAnnotationIndex();
+        List<String> packagesNotIndexed = new ArrayList<String>();
         for (String packageName : packagesToScan)
         {
-            Iterable<Class<?>> classesHote;
-            try
+            if (index != null && index.covers(packageName))
             {
-                classesHote = getClasses(packageName);
+                addIndexedClasses(index, packageName, actionsMap, formsMap);
             }
-            catch (ClassNotFoundException | IOException e)
+            else
             {
-                // usage exceptionnel d'exceptions groupées A|B car les deux
-                // types d'exceptions viennent d'un même problème : mauvais nom
-                // de package
-                throw new WrongPackageNamesInPackagesToScanException("At least one package to scan for @Action or @ActionForm annotations does not exist. Please check your " + newConfigurationFileName + " configuration file." + "\n" + e.getMessage());
+                packagesNotIndexed.add(packageName);
             }
-            for (Class<?> aClass : classesHote)
+        }
+        endPhase(StartupReport.PHASE_ANNOTATION_INDEX, start);
+        if (!packagesNotIndexed.isEmpty())
+        {
+            scanPackages(packagesNotIndexed, actionsMap, formsMap);
+        }
+        return mergeMaps(actionsMap, formsMap);
+    }
+
+    /**
+     * Charge l'index des classes annotées écrit à la compilation par
+     * AnnotationIndexProcessor.
+     * @return L'index ou null s'il est absent ou illisible, auquel cas les
+     *         packages sont scannés.
+     */
+    private AnnotationIndex loadAnnotationIndex()
+    {
+        try
+        {
+            return AnnotationIndex.load(Thread.currentThread().getContextClassLoader());
+        }
+        catch (IOException e)
+        {
+            logger.warn("The annotation index cannot be read, packages will be scanned." + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ajoute aux maps des Actions et des ActionForms les classes de l'index
+     * qui appartiennent à un package à scanner ou à l'un de ses sous-packages.
+     * L'index ne contient que des classes conformes.
+     * @param index
+     *        L'index des classes annotées.
+     * @param packageName
+     *        Le nom du package à scanner.
+     * @param actionsMap
+     *        La map des Actions relevées dans l'application hôte.
+     * @param formsMap
+     *        La map des ActionForms relevés dans l'application hôte.
+     */
+    private void addIndexedClasses(AnnotationIndex index, String packageName, Map<String, String[]> actionsMap, Map<String, String> formsMap)
+    {
+        long start = System.nanoTime();
+        int classesMatched = 0;
+        String prefix = packageName + ".";
+        for (Entry<String, String[]> action : index.getActions().entrySet())
+        {
+            if (action.getKey().startsWith(prefix))
             {
-                actionsMap = addClassToActionsMapIfCompliant(aClass, actionsMap);
-                formsMap = addClassToActionFormsMapIfCompliant(aClass, formsMap);
+                actionsMap.put(action.getValue()[1], new String[]
+                {
+                        action.getKey(), action.getValue()[0], action.getValue()[2]
+                });
+                classesMatched++;
             }
         }
-        return mergeMaps(actionsMap, formsMap);
+        for (Entry<String, String> form : index.getForms().entrySet())
+        {
+            if (form.getKey().startsWith(prefix))
+            {
+                formsMap.put(form.getValue(), form.getKey());
+                classesMatched++;
+            }
+        }
+        if (currentReport != null)
+        {
+            currentReport.addIndexedPackage(packageName, classesMatched, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Scanne des packages et leurs sous-packages et ajoute les classes
+     * conformes aux maps des Actions et des ActionForms.
+     * @param packageNames
+     *        Les noms des packages à scanner.
+     * @param actionsMap
+     *        La map des Actions relevées dans l'application hôte.
+     * @param formsMap
+     *        La map des ActionForms relevés dans l'application hôte.
+     */
+    private void scanPackages(List<String> packageNames, Map<String, String[]> actionsMap, Map<String, String> formsMap)
+    {
+        Iterable<Class<?>> classesHote;
+        try
+        {
+            classesHote = getAnnotatedClasses(packageNames);
+        }
+        catch (ClassNotFoundException | IOException e)
+        {
+            // usage exceptionnel d'exceptions groupées A|B car les deux
+            // types d'exceptions viennent d'un même problème : mauvais nom
+            // de package
+            throw new WrongPackageNamesInPackagesToScanException("At least one package to scan for @Action or @ActionForm annotations does not exist. Please check your " + newConfigurationFileName + " configuration file." + "\n" + e.getMessage());
+        }
+        for (Class<?> aClass : classesHote)
+        {
+            addClassToActionsMapIfCompliant(aClass, actionsMap);
+            addClassToActionFormsMapIfCompliant(aClass, formsMap);
+        }
     }
 
     /**
@@ -212,7 +906,7 @@ public final class ConfigurationReader
      * pouvoir obtenir directement la valeur sur un getKey à un match de pattern
      * près.</li>
      * <li>Pour valeur : les canonical names de Action et de l'ActionForm
-     * associé.</li>
+     * associé, puis la portée de l'Action.</li>
      * </ul>
      * @param actionsMap
      *        La map contenant les informations relevées sur les actions
@@ -229,7 +923,8 @@ public final class ConfigurationReader
             actionsAndFormsMap.put(actionsMapEntry.getValue()[1], new String[]
             {
                     actionsMapEntry.getValue()[0],
-                    formsMap.get(actionsMapEntry.getKey())
+                    formsMap.get(actionsMapEntry.getKey()),
+                    actionsMapEntry.getValue()[2]
             });
         }
         return actionsAndFormsMap;
@@ -246,8 +941,8 @@ public final class ConfigurationReader
      * @return Une map Map<String, String[]> avec :
      *         <ul>
      *         <li>pour clef : le nom du formulaire associé</li>
-     *         <li>pour valeur : un couple constitué du nom canonique de la
-     *         classe Action et de son url-pattern</li>
+     *         <li>pour valeur : un triplet constitué du nom canonique de la
+     *         classe Action, de son url-pattern et de sa portée</li>
      *         </ul>
      */
     private Map<String, String[]> addClassToActionsMapIfCompliant(Class<?> aClass, Map<String, String[]> actionsMap)
@@ -257,7 +952,7 @@ public final class ConfigurationReader
             Action actionAnnotation = (Action) aClass.getAnnotation(Action.class);
             actionsMap.put(actionAnnotation.formName(), new String[]
             {
-                    aClass.getCanonicalName(), actionAnnotation.urlPattern()
+                    aClass.getCanonicalName(), actionAnnotation.urlPattern(), actionAnnotation.scope().name()
             });
         }
         return actionsMap;
@@ -305,138 +1000,88 @@ public final class ConfigurationReader
     /**
      * Renvoie la liste des packages à scanner spécifiés dans le fichier de
      * configuration.
-     * @return ArrayList des packages à scanner.
+     * @return ArrayList des packages à scanner, vide si le fichier n'existe
+     *         pas.
      */
     private ArrayList<String> packagesToScan()
     {
-        ArrayList<String> packagesToScan = new ArrayList<String>();
-        DocumentBuilderFactory dBF = DocumentBuilderFactory.newInstance();
-        try
-        {
-            DocumentBuilder dB = dBF.newDocumentBuilder();
-            InputStream iS = Thread.currentThread().getContextClassLoader().getResourceAsStream("/" + newConfigurationFileName);
-            Document document = dB.parse(iS);
-            packagesToScan = getPackagesToScanInDocument(document);
-        }
-        catch (SAXException e)
-        {
-            throw new XMLParsingException("The framework xml configuration file is not properly formed and cannot be parsed. Please check its structure. It name is " + oldConfigurationFileName + " and is placed in your src/main/resources folder" + "\n" + e.getMessage());
-        }
-        catch (IOException e)
+        if (Thread.currentThread().getContextClassLoader().getResource("/" + newConfigurationFileName) == null)
         {
-            throw new FileNotFoundException("The configuration file hasn't been found. It must be named " + oldConfigurationFileName + " and be placed in your src/main/resources folder." + "\n" + e.getMessage());
+            return new ArrayList<String>();
         }
-        catch (ParserConfigurationException e)
-        {
-            logger.error(e.getMessage());
-        }
-        return packagesToScan;
+        InputStream iS = openConfigurationFile(newConfigurationFileName);
+        return new ArrayList<String>(ConfigurationFileParser.readPackagesToScan(iS, newConfigurationFileName));
     }
 
     /**
-     * Crée la liste des packages à scanner spécifiés dans le fichier de
-     * configuration à partir dun document XML chargé en mémoire.
-     * @param document
-     *        Document XML chargé en mémoire correspondant au fichier de
-     *        configuration des packages à scanner pour trouver Action et
-     *        ActionForm.
-     * @return Une ArrayList<String> contenant tous les packages à scanner.
+     * Ouvre un fichier de configuration XML.
+     * @param fileName
+     *        Le nom du fichier.
+     * @return Le contenu du fichier.
      */
-    private ArrayList<String> getPackagesToScanInDocument(Document document)
+    private InputStream openConfigurationFile(String fileName)
     {
-        ArrayList<String> packagesToScan = new ArrayList<String>();
-        Element rootElement = document.getDocumentElement();
-        NodeList packagesToScanElements = rootElement.getChildNodes();
-        for (int i = 0; i < packagesToScanElements.getLength(); i++)
+        InputStream iS = Thread.currentThread().getContextClassLoader().getResourceAsStream("/" + fileName);
+        if (iS == null)
         {
-            if (packagesToScanElements.item(i).getNodeType() == Node.ELEMENT_NODE)
-            {
-                String packageName = packagesToScanElements.item(i).getTextContent();
-                packagesToScan.add(packageName);
-            }
+            throw new FileNotFoundException("The configuration file hasn't been found. It must be named " + fileName + " and be placed in your src/main/resources folder.");
         }
-        return packagesToScan;
+        return iS;
     }
 
     /**
-     * Renvoie toutes les classes d'un package donné grâce à sa méthode appelée
-     * findClasses.
-     * @param packageName
-     *        Le nom du package donné.
-     * @return L'ensemble des classes trouvées dans un package donné, en
-     *         cherchant dans les sous packages.
+     * Renvoie les classes annotées @Action ou @ActionForm de packages donnés
+     * et de leurs sous-packages. Les fichiers class sont lus sans charger les
+     * classes : seules les classes annotées sont chargées, sans être
+     * initialisées. Si un dossier de travail est connu, les dossiers et jars
+     * inchangés depuis le démarrage précédent ne sont pas relus.
+     * @param packageNames
+     *        Les noms des packages.
+     * @return Les classes annotées.
      * @throws IOException
-     *         Renvoyée si le chemin correspondant au package n'est pas trouvé.
+     *         Renvoyée si le classpath ne peut être parcouru.
      * @throws ClassNotFoundException
      *         Renvoyée si les classes trouvées ne peuvent être chargées en
      *         mémoire.
      */
-    private Iterable<Class<?>> getClasses(String packageName) throws IOException, ClassNotFoundException
+    private Iterable<Class<?>> getAnnotatedClasses(List<String> packageNames) throws IOException, ClassNotFoundException
     {
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        String path = packageName.replace('.', '/');
-        Enumeration<URL> resources = classLoader.getResources(path);
-        List<File> dirs = new ArrayList<File>();
-        while (resources.hasMoreElements())
+        ClasspathScanner scanner = newScanner(classLoader);
+        scanner.setListener(currentReport);
+        long start = System.nanoTime();
+        if (scanCacheEnabled && workDirectory != null)
         {
-            URL resource = resources.nextElement();
-            dirs.add(new File(resource.getFile()));
+            scanner.setCache(ScanCache.load(new File(workDirectory, SCAN_CACHE_FILE_NAME)));
         }
+        List<String> classNames = scanner.findAnnotatedClasses(packageNames);
+        endPhase(StartupReport.PHASE_SCAN, start);
+        start = System.nanoTime();
         List<Class<?>> classes = new ArrayList<Class<?>>();
-        for (File directory : dirs)
+        for (String className : classNames)
         {
-            classes.addAll(findClasses(directory, packageName));
+            classes.add(Class.forName(className, false, classLoader));
         }
-        return classes;
-    }
-
-    /**
-     * Renvoie toutes les classes d'un package donné.
-     * @param directory
-     *        Le dossier associé au package
-     * @param packageName
-     *        Le nom du package
-     * @return La liste des classes du package.
-     * @throws ClassNotFoundException
-     *         Quand la classe trouvée ne peut être chargée en mémoire.
-     */
-    private List<Class<?>> findClasses(File directory, String packageName) throws ClassNotFoundException
-    {
-        List<Class<?>> classes = new ArrayList<Class<?>>();
-        if (!directory.exists())
+        endPhase(StartupReport.PHASE_CLASS_LOADING, start);
+        if (currentReport != null)
         {
-            return classes;
+            currentReport.addClassesLoaded(classes.size());
         }
-        File[] files = directory.listFiles();
-        return classesInFiles(files, packageName);
+        return classes;
     }
 
     /**
-     * Renvoie l'ensemble des classes contenues dans un ensemble de dossiers et
-     * fichiers.
-     * @param files
-     *        Un tableau de dossiers et fichiers.
-     * @param packageName
-     *        Le nom du package qui les contient.
-     * @return Une List<Class> des classes trouvées.
-     * @throws ClassNotFoundException
-     *         Quand la classe trouvée ne peut être chargée en mémoire.
+     * Crée un scanner des classes annotées @Action ou @ActionForm.
+     * @param classLoader
+     *        Le ClassLoader dont le classpath est parcouru.
+     * @return Le scanner.
      */
-    private List<Class<?>> classesInFiles(File[] files, String packageName) throws ClassNotFoundException
+    private ClasspathScanner newScanner(ClassLoader classLoader)
     {
-        List<Class<?>> classes = new ArrayList<Class<?>>();
-        for (File file : files)
-        {
-            if (file.isDirectory())
-            {
-                classes.addAll(findClasses(file, packageName + "." + file.getName()));
-            }
-            else if (file.getName().endsWith(".class"))
-            {
-                classes.add(Class.forName(packageName + '.' + file.getName().substring(0, file.getName().length() - classFileExtension.length())));
-            }
-        }
-        return classes;
+        List<Class<? extends Annotation>> annotations = new ArrayList<Class<? extends Annotation>>();
+        annotations.add(Action.class);
+        annotations.add(ActionForm.class);
+        return new ClasspathScanner(classLoader, annotations);
     }
 
     /**
@@ -447,198 +1092,13 @@ public final class ConfigurationReader
      */
     private Map<String, String[]> buildActionsAndFormsMapFromFile()
     {
-        DocumentBuilderFactory dBF = DocumentBuilderFactory.newInstance();
         Map<String, String[]> actionMap = new LinkedHashMap<String, String[]>();
         Map<String, String> formMap = new LinkedHashMap<String, String>();
-        try
-        {
-            DocumentBuilder dB = dBF.newDocumentBuilder();
-            InputStream iS = Thread.currentThread().getContextClassLoader().getResourceAsStream("/" + oldConfigurationFileName);
-
-            Document document = dB.parse(iS);
-            actionMap = getActionMapFromDocument(document);
-            formMap = getActionFormMapFromDocument(document);
-        }
-        catch (SAXException e)
-        {
-            throw new XMLParsingException("The framework configuration file is not properly formed. Please check its structure. It name is " + oldConfigurationFileName + " and is placed in your src/main/resources folder" + "\n" + e.getMessage());
-        }
-        catch (IOException e)
-        {
-            throw new FileNotFoundException("The configuration file hasn't been found. It must be named " + oldConfigurationFileName + " and be placed in your src/main/resources folder." + "\n" + e.getMessage());
-        }
-        catch (ParserConfigurationException e)
-        {
-            logger.error(e.getMessage());
-        }
-
+        long start = System.nanoTime();
+        InputStream iS = openConfigurationFile(oldConfigurationFileName);
+        ConfigurationFileParser.readActionsAndForms(iS, oldConfigurationFileName, actionMap, formMap);
+        endPhase(StartupReport.PHASE_ACTIONS_AND_FORMS_FILE, start);
         return mergeMaps(actionMap, formMap);
-
-    }
-
-    /**
-     * Renvoie la map des Action trouvées dans le document XML chargé en mémoire
-     * passé en argument.
-     * @param document
-     *        Le fichier XML de configuration chargé en mémoire.
-     * @return Une Map<String, String[]> avec :
-     *         <ul>
-     *         <li>en clef : le petit nom de l'ActionForm associé à l'Action</li>
-     *         <li>en valeur : un tableau de deux chaînes avec :
-     *         <ul>
-     *         <li>le nom canonique de la classe</li>
-     *         <li>l'url-pattern de l'action</li>
-     *         </ul>
-     *         </li>
-     *         </ul>
-     */
-    private Map<String, String[]> getActionMapFromDocument(Document document)
-    {
-        Map<String, String[]> actionMap = new LinkedHashMap<String, String[]>();
-
-        Element rootElement = document.getDocumentElement();
-        Node actionsElement = rootElement.getElementsByTagName("actions").item(0);
-        NodeList actionElements = actionsElement.getChildNodes();
-        // je parcours les noeuds action
-        for (int i = 0; i < actionElements.getLength(); i++)
-        {
-            if (actionElements.item(i).getNodeType() == Node.ELEMENT_NODE)
-            {
-                Node currentActionElement = actionElements.item(i);
-                String[] actionNodeProperties = getActionNodeProperties(currentActionElement);
-                actionMap.put(actionNodeProperties[2], new String[]
-                {
-                        actionNodeProperties[1], actionNodeProperties[0]
-                });
-            }
-        }
-        return actionMap;
-    }
-
-    /**
-     * Renvoie la map des ActionForm trouvés dans le document XML chargé en
-     * mémoire passé en argument.
-     * @param document
-     *        Le fichier XML de configuration chargé en mémoire.
-     * @return Une Map<String, String[]> avec :
-     *         <ul>
-     *         <li>en clef : le petit nom de l'ActionForm associé à l'Action</li>
-     *         <li>en valeur : le nom canonique de la classe de l'ActionForm</li>
-     *         </ul>
-     */
-    private Map<String, String> getActionFormMapFromDocument(Document document)
-    {
-        Map<String, String> formMap = new LinkedHashMap<String, String>();
-        Element rootElement = document.getDocumentElement();
-        Node formsElement = rootElement.getElementsByTagName("forms").item(0);
-        NodeList formElements = formsElement.getChildNodes();
-        // je parcours les noeuds form
-        for (int i = 0; i < formElements.getLength(); i++)
-        {
-            if (formElements.item(i).getNodeType() == Node.ELEMENT_NODE)
-            {
-                Node currentFormElement = formElements.item(i);
-                String[] formNodeProperties = getFormNodeProperties(currentFormElement);
-                formMap.put(formNodeProperties[0], formNodeProperties[1]);
-            }
-        }
-        return formMap;
-    }
-
-    /**
-     * Récupère dans un noeud action du fichier de configuration les détails de
-     * ce noeud.
-     * @param actionNode
-     *        Le noeud action dont on doit extraire les informations.
-     * @return Un tableau de 3 chaînes avec :
-     *         <ul>
-     *         <li>l'url-pattern de l'action</li>
-     *         <li>le nom canonique de la classe</li>
-     *         <li>le petit nom de l'ActionForm associé</li>
-     *         </ul>
-     */
-    private String[] getActionNodeProperties(Node actionNode)
-    {
-        NodeList currentActionElementChildren = actionNode.getChildNodes();
-        Node actionURLPattern = null;
-        Node actionClassPath = null;
-        Node formName = null;
-        // je parcours le propriétés des noeuds action
-        for (int j = 0; j < currentActionElementChildren.getLength(); j++)
-        {
-            Node currentActionPropertyNode = currentActionElementChildren.item(j);
-            short nodeType = currentActionPropertyNode.getNodeType();
-            String nodeName = currentActionPropertyNode.getNodeName();
-            if (nodeType == Node.ELEMENT_NODE)
-            {
-                if (nodeName.equals("url-pattern"))
-                {
-                    actionURLPattern = currentActionPropertyNode;
-                }
-                else if (nodeName.equals("action-class"))
-                {
-                    actionClassPath = currentActionPropertyNode;
-                }
-                else if (nodeName.equals("form-name"))
-                {
-                    formName = currentActionPropertyNode;
-                }
-                else
-                {
-                    logger.debug("this case should never happen if your xml configuration file respects the appropriate schema");
-                }
-            }
-        }
-        return new String[]
-        {
-                actionURLPattern.getTextContent(),
-                actionClassPath.getTextContent(),
-                formName.getTextContent()
-        };
-    }
-
-    /**
-     * Récupère dans un noeud action du fichier de configuration les détails de
-     * ce noeud.
-     * @param formNode
-     *        Le noeud action dont on doit extraire les informations.
-     * @return Un tableau de 2 chaînes avec :
-     *         <ul>
-     *         <li>le petit nom de l'ActionForm</li>
-     *         <li>le nom canonique de la classe de l'ActionForm</li>
-     *         </ul>
-     */
-    private String[] getFormNodeProperties(Node formNode)
-    {
-        NodeList currentFormElementChildren = formNode.getChildNodes();
-        Node formName = null;
-        Node formClassPath = null;
-        // je parcours les propriétés des noeuds form
-        for (int j = 0; j < currentFormElementChildren.getLength(); j++)
-        {
-            Node currentNode = currentFormElementChildren.item(j);
-            short nodeType = currentNode.getNodeType();
-            String nodeName = currentNode.getNodeName();
-            if (nodeType == Node.ELEMENT_NODE)
-            {
-                if (nodeName.equals("form-name"))
-                {
-                    formName = currentNode;
-                }
-                else if (nodeName.equals("form-class"))
-                {
-                    formClassPath = currentNode;
-                }
-                else
-                {
-                    logger.debug("this case should never happen if your xml configuration file respects the appropriate schema");
-                }
-            }
-        }
-        return new String[]
-        {
-                formName.getTextContent(), formClassPath.getTextContent()
-        };
     }
 
     /**
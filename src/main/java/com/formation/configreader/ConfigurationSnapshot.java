@@ -0,0 +1,291 @@
+package com.formation.configreader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+/**
+ * Instantané binaire de la configuration résolue : les url-pattern et les noms
+ * des Actions et ActionForms associés, dans l'ordre de déclaration. Il garde
+ * aussi l'empreinte de tout ce dont la configuration a été tirée (fichiers de
+ * configuration, index, fragments, dossiers et jars des packages à scanner) :
+ * tant qu'elle n'a pas changé, l'instantané remplace la lecture des fichiers
+ * XML, le scan et le chargement des classes.
+ * <p>
+ * Le fichier, de quelques kilo-octets, est lu d'un seul bloc puis décodé en
+ * mémoire. Il est écrit à côté puis renommé pour qu'un arrêt brutal ne le
+ * laisse pas tronqué. Un fichier illisible ou d'une autre version est ignoré.
+ * </p>
+ * @author filippo
+ */
+final class ConfigurationSnapshot
+{
+    /**
+     * Version du format du fichier, à changer à chaque évolution du format ou
+     * des règles de lecture de la configuration.
+     */
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Taille du tampon de lecture des ressources.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Taille minimale d'une chaîne écrite par writeUTF : sa longueur.
+     */
+    private static final int MIN_STRING_BYTES = 2;
+    /**
+     * Taille minimale d'un url-pattern écrit : trois chaînes et l'indicateur
+     * d'ActionForm.
+     */
+    private static final int MIN_ENTRY_BYTES = 3 * MIN_STRING_BYTES + 1;
+    /**
+     * Les packages à scanner de la configuration, dont les emplacements
+     * entrent dans les empreintes.
+     */
+    private final List<String> packagesToScan;
+    /**
+     * Les empreintes des sources de la configuration.
+     */
+    private final List<String> inputs;
+    /**
+     * La configuration : en clef l'url-pattern, en valeur les noms canoniques
+     * de l'Action et de l'ActionForm et la portée de l'Action.
+     */
+    private final Map<String, String[]> actionsAndFormsMap;
+
+    /**
+     * Constructeur.
+     * @param pPackagesToScan
+     *        Les packages à scanner de la configuration.
+     * @param pInputs
+     *        Les empreintes des sources de la configuration.
+     * @param pActionsAndFormsMap
+     *        La configuration.
+     */
+    ConfigurationSnapshot(List<String> pPackagesToScan, List<String> pInputs, Map<String, String[]> pActionsAndFormsMap)
+    {
+        this.packagesToScan = Collections.unmodifiableList(new ArrayList<String>(pPackagesToScan));
+        this.inputs = Collections.unmodifiableList(new ArrayList<String>(pInputs));
+        this.actionsAndFormsMap = pActionsAndFormsMap;
+    }
+
+    /**
+     * Lit un instantané.
+     * @param file
+     *        Le fichier de l'instantané.
+     * @return L'instantané, ou null si le fichier n'existe pas ou est d'une
+     *         autre version.
+     * @throws IOException
+     *         Si le fichier ne peut être lu, ou s'il est tronqué ou corrompu.
+     */
+    static ConfigurationSnapshot read(File file) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+        if (in.readInt() != FORMAT_VERSION)
+        {
+            return null;
+        }
+        List<String> packages = readStrings(in);
+        List<String> sources = readStrings(in);
+        int count = readCount(in, MIN_ENTRY_BYTES);
+        Map<String, String[]> map = new LinkedHashMap<String, String[]>();
+        for (int i = 0; i < count; i++)
+        {
+            String urlPattern = in.readUTF();
+            String actionName = in.readUTF();
+            String formName = null;
+            if (in.readBoolean())
+            {
+                formName = in.readUTF();
+            }
+            map.put(urlPattern, new String[]
+            {
+                    actionName, formName, in.readUTF()
+            });
+        }
+        return new ConfigurationSnapshot(packages, sources, map);
+    }
+
+    /**
+     * Lit une liste de chaînes.
+     * @param in
+     *        Le contenu du fichier.
+     * @return Les chaînes.
+     * @throws IOException
+     *         Si le fichier est tronqué ou corrompu.
+     */
+    private static List<String> readStrings(DataInputStream in) throws IOException
+    {
+        int count = readCount(in, MIN_STRING_BYTES);
+        List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    /**
+     * Lit un nombre d'éléments, vérifié contre les octets qui restent à lire :
+     * un fichier corrompu ne doit pas faire allouer une liste démesurée.
+     * @param in
+     *        Le contenu du fichier, lu en mémoire.
+     * @param minBytes
+     *        La taille minimale d'un élément.
+     * @return Le nombre d'éléments.
+     * @throws IOException
+     *         Si le nombre est négatif ou ne tient pas dans le reste du
+     *         fichier.
+     */
+    private static int readCount(DataInputStream in, int minBytes) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0 || count > in.available() / minBytes)
+        {
+            throw new IOException("Corrupt snapshot: " + count + " elements announced.");
+        }
+        return count;
+    }
+
+    /**
+     * Écrit l'instantané.
+     * @param file
+     *        Le fichier de l'instantané.
+     * @throws IOException
+     *         Si le fichier ne peut être écrit.
+     */
+    void write(File file) throws IOException
+    {
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try
+        {
+            out.writeInt(FORMAT_VERSION);
+            writeStrings(out, packagesToScan);
+            writeStrings(out, inputs);
+            out.writeInt(actionsAndFormsMap.size());
+            for (Entry<String, String[]> e : actionsAndFormsMap.entrySet())
+            {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue()[0]);
+                out.writeBoolean(e.getValue()[1] != null);
+                if (e.getValue()[1] != null)
+                {
+                    out.writeUTF(e.getValue()[1]);
+                }
+                out.writeUTF(e.getValue()[2]);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Écrit une liste de chaînes.
+     * @param out
+     *        Le fichier.
+     * @param strings
+     *        Les chaînes.
+     * @throws IOException
+     *         Si le fichier ne peut être écrit.
+     */
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException
+    {
+        out.writeInt(strings.size());
+        for (String string : strings)
+        {
+            out.writeUTF(string);
+        }
+    }
+
+    /**
+     * Empreinte d'une ressource : son url, sa taille et la somme de contrôle
+     * de son contenu.
+     * @param kind
+     *        Le rôle de la ressource dans la configuration.
+     * @param resource
+     *        L'url de la ressource, ou null si elle est absente.
+     * @return L'empreinte.
+     * @throws IOException
+     *         Si la ressource ne peut être lue.
+     */
+    static String fingerprint(String kind, URL resource) throws IOException
+    {
+        if (resource == null)
+        {
+            return kind + " absent";
+        }
+        CRC32 crc = new CRC32();
+        long length = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream iS = resource.openStream();
+        try
+        {
+            int n = iS.read(buffer);
+            while (n >= 0)
+            {
+                crc.update(buffer, 0, n);
+                length += n;
+                n = iS.read(buffer);
+            }
+        }
+        finally
+        {
+            iS.close();
+        }
+        return kind + " " + resource + " " + length + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Indique si l'instantané a été tiré des mêmes sources.
+     * @param currentInputs
+     *        Les empreintes actuelles des sources, calculées pour les
+     *        packages de l'instantané.
+     * @return Vrai si aucune source n'a changé.
+     */
+    boolean isUpToDate(List<String> currentInputs)
+    {
+        return inputs.equals(currentInputs);
+    }
+
+    /**
+     * Getter des packages à scanner de la configuration.
+     * @return Les noms des packages.
+     */
+    List<String> getPackagesToScan()
+    {
+        return packagesToScan;
+    }
+
+    /**
+     * Getter de la configuration.
+     * @return En clef l'url-pattern, en valeur les noms canoniques de l'Action
+     *         et de l'ActionForm, dans l'ordre de déclaration.
+     */
+    Map<String, String[]> getActionsAndFormsMap()
+    {
+        return actionsAndFormsMap;
+    }
+}
@@ -1,6 +1,15 @@
 package com.formation.controller;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.RequestDispatcher;
@@ -11,13 +20,19 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.apache.log4j.Logger;
+
+import com.formation.annotations.ActionScope;
+import com.formation.annotations.FormScope;
 import com.formation.archetypes.Action;
 import com.formation.archetypes.ActionForm;
 import com.formation.configreader.ConfigurationReader;
-import com.formation.exceptions.runtime.WrongActionCanonicalNameSpecifiedException;
-import com.formation.exceptions.runtime.WrongActionFormCanonicalNameSpecifiedException;
+import com.formation.exceptions.runtime.FormBodyTooLargeException;
 import com.formation.factory.Factory;
 import com.formation.populate.FormFiller;
+import com.formation.registry.Registry;
+import com.formation.routing.Route;
+import com.formation.routing.RouteCache;
 
 /**
  * Définition de l'url-pattern qui va être interceptée par la servlet.
@@ -34,31 +49,13 @@ public class ServletController extends HttpServlet
      */
     private static final long serialVersionUID = 1L;
     /**
-     * Map des actions et de leurs actionForm associés avec pour clef
-     * l'url-pattern leur étant associée.
+     * Type de contenu des formulaires lus en streaming.
      */
-    private Map<String, String[]> actionsAndFormsMap;
+    private static final String URLENCODED = "application/x-www-form-urlencoded";
     /**
-     * La session HTTP.
+     * Logger.
      */
-    private HttpSession httpSession;
-
-    /**
-     * Déclaration de la factory dont on va se servir pour instancier les Action
-     * et les ActionForm.
-     */
-    private Factory factory;
-    /**
-     * Déclaration du lecteur de configuration qui peut lire la configuration
-     * soit :
-     * <ul>
-     * <li>dans le fichier de configuration classique ou toute classe Action et
-     * ActionForm est déclarée individuellement.</li>
-     * <li>à l'aide d'annotations en scannant les packages indiqués dans un
-     * fichier de configuration simplifié</li>
-     * </ul>
-     */
-    private ConfigurationReader configurationReader;
+    private Logger logger = Logger.getLogger(this.getClass());
 
     /**
      * Charge la configuration à l'instanciation de la servlet pour ne pas
@@ -69,13 +66,28 @@ public class ServletController extends HttpServlet
     {
         // TODO Auto-generated method stub
         super.init();
-        factory = Factory.getFactory();
+        Factory.setFormPoolCapacity(ConfigurationReader.getReader().getFormPoolSize());
+        FormFiller.getFormFiller().setLenient(ConfigurationReader.getReader().isLenientBinding());
+        FormFiller.getFormFiller().setMaxPathElements(ConfigurationReader.getReader().getMaxFormParameters());
+        Registry.getRegistry(getServletContext());
+    }
 
-        configurationReader = ConfigurationReader.getReader();
-        if (actionsAndFormsMap == null)
+    /**
+     * Trace les statistiques du cache de routage et le nombre de paramètres
+     * de formulaire refusés, et arrête le rechargement de la configuration à
+     * l'arrêt de la servlet.
+     */
+    @Override
+    public void destroy()
+    {
+        Registry registry = Registry.getRegistry(getServletContext());
+        if (registry.getRouter() instanceof RouteCache)
         {
-            actionsAndFormsMap = configurationReader.buildActionsAndFormsMap();
+            logger.info(registry.getRouter());
         }
+        logger.info("Form parameters rejected or ignored: " + FormFiller.getFormFiller().getRejectedNameCount());
+        Registry.close(getServletContext());
+        super.destroy();
     }
 
     @Override
@@ -92,75 +104,30 @@ public class ServletController extends HttpServlet
         String[] refererParts = request.getHeader("referer").split("/");
         String refererPath = "/" + refererParts[refererParts.length - 1];
 
-        String[] actionAndFormFullNames = configurationReader.getActionAndFormCanonicalNamesByAction(actionsAndFormsMap, actionPath);
-        if (actionAndFormFullNames != null)
+        // le registre est lu une seule fois : un rechargement de la
+        // configuration n'affecte pas la requête en cours
+        Registry registry = Registry.getRegistry(getServletContext());
+        Route route = registry.resolve(actionPath);
+        if (route != null && route.getFormClass() != null)
         {
             // Si l'action renseignée par l'utilisateur a été trouvée dans son
-            // fichier de configuration
-
-            String actionClassFullName = actionAndFormFullNames[0];
-            String formClassFullName = actionAndFormFullNames[1];
-
-            boolean actionClassFound = doesActionClassExist(actionClassFullName);
-            boolean formClassFound = doesActionFormClassExist(formClassFullName);
-            // on vérifie que les classes Action et ActionForm requêtées
-            // existent sans les instancier
+            // fichier de configuration ; ses classes Action et ActionForm ont
+            // été chargées à la construction du registre ; la session
+            // n'est demandée que par une Action ou un ActionForm de portée
+            // session
 
-            if (actionClassFound && formClassFound)
+            // s'il n'y a pas d'instance en session on la crée
+            // et on la met en session pour la prochaine fois, sauf pour
+            // un form de portée requête qui est pris dans la réserve de
+            // la factory
+            ActionForm myForm = getFormInstanceByClassFullNameFromSesionOrFactory(request, route);
+            try
             {
-
-                httpSession = request.getSession();
-
-                FormFiller populator = FormFiller.getFormFiller();
-
-                // s'il n'y a pas d'instance en session on la crée
-                // et on la met en session pour la prochaine fois
-                // instanciation de l'action form
-                ActionForm myForm = getFormInstanceByClassFullNameFromSesionOrFactory(formClassFullName);
-
-                // on peuple l'ActionForm avec les donnée entrées dans le
-                // formulaire
-                populator.populateBean(myForm, request.getParameterMap());
-
-                // on met le formulaire en mémoire pour pouvoir y acéder depuis
-                // la page cible
-                request.setAttribute("monForm", myForm);
-
-                if (myForm.validate(request))
-                {
-                    // si les données entrées dans le formulaire sont valides
-                    // on execute l'action
-
-                    // instanciation de l'action
-                    Action myAction = getActionFormInstanceByClassFullNameFromSesionOrFactory(actionClassFullName);
-
-                    // on redirige vers la page spécifiée par l'utilisateur dans
-                    // son Action
-                    RequestDispatcher rD = request.getRequestDispatcher(myAction.execute(request, response));
-                    rD.forward(request, response);
-                }
-                else
-                {
-                    // si les données entrées dans le formulaire ne sont pas
-                    // valides
-                    String message = "Veuillez remplir tous les champs du formulaire";
-                    request.setAttribute("message", message);
-                    // on le redirige vers la page source avec un message le
-                    // notifiant
-                    RequestDispatcher rD = request.getRequestDispatcher(refererPath);
-                    rD.forward(request, response);
-                }
+                processForm(request, response, registry, route, myForm, refererPath);
             }
-            else
+            finally
             {
-                // si Action ou ActionForm n'est pas trouvée on redirige vers la
-                // page d'origine avec un message donant le détail des classes
-                // qui manquent
-                String message = setMessageDependingOnWhatsMissing(formClassFound, actionClassFound, actionClassFullName, formClassFullName);
-
-                request.setAttribute("message", message);
-                RequestDispatcher rD = request.getRequestDispatcher(refererPath);
-                rD.forward(request, response);
+                releaseIfRequestScoped(request, route, myForm);
             }
         }
         else
@@ -173,143 +140,231 @@ public class ServletController extends HttpServlet
     }
 
     /**
-     * Indique à l'utilisateur du framework si des Action ou ActionForm indiqués
-     * dans le fichier de config n'ont pas été trouvés.
-     * @param formClassFound
-     *        Vrai si la classe de l'ActionForm correspondant à l'action
-     *        demandée n'est pas trouvé.
-     * @param actionClassFound
-     *        Vrai si la classe de l'Action correspondant à l'action demandée
-     *        n'est pas trouvée.
-     * @param actionClassFullName
-     *        Nom complet de la classe Action correspondant à l'action demandée
-     *        tel qu'il a été indiqué dans le fichier de configuration.
-     * @param formClassFullName
-     *        Nom complet de la classe ActionForm correspondant à l'action
-     *        demandée tel qu'il a été indiqué dans le fichier de configuration.
-     * @return Le message approprié à ce qui n'a pas été trouvé.
+     * Peuple l'ActionForm, le valide puis exécute l'Action et affiche la page
+     * qu'elle désigne, ou renvoie vers la page d'origine si le formulaire
+     * n'est pas valide.
+     * @param request
+     *        La requête HTTP reçue.
+     * @param response
+     *        La réponse HTTP.
+     * @param registry
+     *        Le registre lu par la requête.
+     * @param route
+     *        La route de l'url demandée.
+     * @param myForm
+     *        L'ActionForm de l'Action demandée.
+     * @param refererPath
+     *        La page d'origine.
+     * @throws ServletException
+     *         Si la page cible lève une exception.
+     * @throws IOException
+     *         Si la page cible ne peut être écrite.
      */
-    private String setMessageDependingOnWhatsMissing(boolean formClassFound, boolean actionClassFound, String actionClassFullName, String formClassFullName)
+    private void processForm(HttpServletRequest request, HttpServletResponse response, Registry registry, Route route, ActionForm myForm, String refererPath) throws ServletException, IOException
     {
-        String message;
-        if (!formClassFound)
+        FormFiller populator = FormFiller.getFormFiller();
+
+        // le formulaire est remis dans son état initial avant d'être
+        // peuplé
+        myForm.reset(request);
+
+        // on peuple l'ActionForm avec les donnée entrées dans le
+        // formulaire
+        Map<String, String> fieldErrors;
+        try
         {
-            message = "La classe " + formClassFullName + " n'a pas été trouvée. Veuillez vérifier la correspondance entre votre fichier de configuration et vos classes";
+            fieldErrors = populate(request, populator, myForm);
         }
-        else if (!actionClassFound)
+        catch (FormBodyTooLargeException e)
         {
-            message = "La classe " + actionClassFullName + " n'a pas été trouvée. Veuillez vérifier la correspondance entre votre fichier de configuration et vos classes";
+            logger.warn(e.getMessage());
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        if (route.getTemplate() != null)
+        {
+            // les variables de l'url l'emportent sur les paramètres
+            Map<String, String> pathErrors = populator.populateBeanFromPath(myForm, route.getTemplate(), request.getServletPath());
+            if (!pathErrors.isEmpty())
+            {
+                Map<String, String> allErrors = new LinkedHashMap<String, String>(fieldErrors);
+                allErrors.putAll(pathErrors);
+                fieldErrors = allErrors;
+            }
+        }
+
+        // on met le formulaire en mémoire pour pouvoir y acéder depuis
+        // la page cible
+        request.setAttribute("monForm", myForm);
+
+        if (!fieldErrors.isEmpty())
+        {
+            // une valeur n'a pu être convertie vers le type de son
+            // attribut : le formulaire n'est pas validé, la page source
+            // reçoit les erreurs par champ
+            request.setAttribute("fieldErrors", fieldErrors);
+            request.setAttribute("message", "Certains champs du formulaire ne sont pas valides");
+            RequestDispatcher rD = request.getRequestDispatcher(refererPath);
+            rD.forward(request, response);
+        }
+        else if (myForm.validate(request))
+        {
+            // si les données entrées dans le formulaire sont valides
+            // on execute l'action
+
+            // instanciation de l'action, selon sa portée
+            Action myAction = getActionFormInstanceByClassFullNameFromSesionOrFactory(request, registry, route);
+
+            // on redirige vers la page spécifiée par l'utilisateur dans
+            // son Action
+            RequestDispatcher rD = request.getRequestDispatcher(myAction.execute(request, response));
+            rD.forward(request, response);
         }
         else
         {
-            message = "Les classes " + actionClassFullName + " et " + formClassFullName + " n'ont pas été trouvées. Veuillez vérifier la correspondance entre votre fichier de configuration et vos classes";
+            // si les données entrées dans le formulaire ne sont pas
+            // valides
+            String message = "Veuillez remplir tous les champs du formulaire";
+            request.setAttribute("message", message);
+            // on le redirige vers la page source avec un message le
+            // notifiant
+            RequestDispatcher rD = request.getRequestDispatcher(refererPath);
+            rD.forward(request, response);
         }
-        return message;
     }
 
     /**
-     * Récupère une instance de l'ActionForm demandé soit depuis la session, si
-     * celui-ci a déjà été instancié, soit de la Factory.
-     * @param formClassFullName
-     *        Nom complet de la classe ActionForm.
-     * @return Une instance de l'ActionForm correspondant à l'action demandée.
+     * Peuple l'ActionForm avec les paramètres de la requête. Si la propriété
+     * streamingBinding est activée, le corps d'un POST urlencoded est lu au
+     * fil du flux, précédé de la query string, sans que le conteneur ne
+     * construise la map des paramètres ; request.getParameter ne voit alors
+     * plus les paramètres du corps. Un jeu de caractères inconnu est remplacé
+     * par ISO-8859-1.
+     * @param request
+     *        La requête HTTP reçue.
+     * @param populator
+     *        Le FormFiller.
+     * @param myForm
+     *        L'ActionForm à peupler.
+     * @return Les erreurs de champ.
+     * @throws IOException
+     *         Si le corps ne peut être lu.
      */
-    private ActionForm getFormInstanceByClassFullNameFromSesionOrFactory(String formClassFullName)
+    private Map<String, String> populate(HttpServletRequest request, FormFiller populator, ActionForm myForm) throws IOException
     {
-        ActionForm myForm = null;
-        if (httpSession.getAttribute(formClassFullName) == null)
+        ConfigurationReader reader = ConfigurationReader.getReader();
+        String contentType = request.getContentType();
+        if (!reader.isStreamingBinding() || !"POST".equals(request.getMethod()) || contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith(URLENCODED))
+        {
+            return populator.populateBean(myForm, request.getParameterMap());
+        }
+        Charset charset = StandardCharsets.ISO_8859_1;
+        String encoding = request.getCharacterEncoding();
+        if (encoding != null)
         {
             try
             {
-                myForm = factory.getInstance(formClassFullName);
-                httpSession.setAttribute(formClassFullName, myForm);
+                charset = Charset.forName(encoding);
             }
-            catch (ClassNotFoundException e)
+            catch (IllegalCharsetNameException | UnsupportedCharsetException e)
             {
-                throw new WrongActionFormCanonicalNameSpecifiedException("Whether the ActionForm class full name " + formClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
+                // comme le conteneur, un jeu de caractères inconnu est lu en
+                // ISO-8859-1
+                logger.warn("Unknown request charset " + encoding + ", the form body is read as ISO-8859-1.");
             }
         }
-        else
+        InputStream body = request.getInputStream();
+        String queryString = request.getQueryString();
+        if (queryString != null)
         {
-            myForm = (ActionForm) httpSession.getAttribute(formClassFullName);
+            body = new SequenceInputStream(new ByteArrayInputStream((queryString + "&").getBytes(StandardCharsets.ISO_8859_1)), body);
         }
-        return myForm;
+        return populator.populateBeanFromBody(myForm, body, charset, reader.getMaxFormParameters(), reader.getMaxFormValueLength());
     }
 
     /**
-     * Récupère une instance de l'Action demandée soit depuis la session, si
-     * celle-ci a déjà été instanciée, soit de la Factory.
-     * @param actionClassFullName
-     *        Nom complet de la classe Action.
-     * @return Une instance de l'Action correspondant à l'action demandée.
+     * Récupère une instance de l'ActionForm demandé : pour un ActionForm de
+     * portée requête, une instance de la réserve de la Factory ; sinon depuis
+     * la session, si celui-ci a déjà été instancié, ou de la Factory.
+     * @param request
+     *        La requête HTTP reçue.
+     * @param route
+     *        La route de l'url demandée.
+     * @return Une instance de l'ActionForm correspondant à l'action demandée.
      */
-    private Action getActionFormInstanceByClassFullNameFromSesionOrFactory(String actionClassFullName)
+    private ActionForm getFormInstanceByClassFullNameFromSesionOrFactory(HttpServletRequest request, Route route)
     {
-        Action myAction;
-        if (httpSession.getAttribute(actionClassFullName) == null)
+        Class<? extends ActionForm> formClass = route.getFormClass();
+        // la clef de session est celle que lisent les tags
+        String formClassFullName = formClass.getCanonicalName();
+        if (route.getFormScope() == FormScope.REQUEST)
         {
-            // s'il n'y a pas d'instance pour l'action
-            try
-            {
-                // on la crée
-                myAction = factory.getInstance(actionClassFullName);
-                // et on la mémorise en session pour la prochaine
-                // fois
-                httpSession.setAttribute(actionClassFullName, myAction);
-            }
-            catch (ClassNotFoundException e)
-            {
-                throw new WrongActionCanonicalNameSpecifiedException("The Action class full name " + actionClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
-            }
+            return Factory.acquireForm(formClass);
         }
-        else
+        HttpSession httpSession = request.getSession();
+        ActionForm myForm = (ActionForm) httpSession.getAttribute(formClassFullName);
+        if (myForm == null)
         {
-            myAction = (Action) httpSession.getAttribute(actionClassFullName);
+            myForm = Factory.getInstance(formClass);
+            httpSession.setAttribute(formClassFullName, myForm);
         }
-        return myAction;
+        return myForm;
     }
 
     /**
-     * Vérifie si la classe Action correspondant à l'action demandée existe.
-     * @param actionClassFullName
-     *        Nom complet de la classe de l'Action correspondant à l'action
-     *        demandée.
-     * @return Vrai si la classe Action existe, faux autrement.
+     * Rend à la réserve de la Factory un ActionForm de portée requête, une
+     * fois la page cible affichée.
+     * @param request
+     *        La requête HTTP traitée.
+     * @param route
+     *        La route de l'url demandée.
+     * @param myForm
+     *        L'ActionForm de la requête.
      */
-    private boolean doesActionClassExist(String actionClassFullName)
+    private void releaseIfRequestScoped(HttpServletRequest request, Route route, ActionForm myForm)
     {
-        boolean actionClassFound = false;
-        try
-        {
-            Class.forName(actionClassFullName);
-            actionClassFound = true;
-        }
-        catch (ClassNotFoundException e)
+        if (route.getFormScope() == FormScope.REQUEST)
         {
-            throw new WrongActionCanonicalNameSpecifiedException("The Action class full name " + actionClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
+            request.removeAttribute("monForm");
+            Factory.releaseForm(myForm);
         }
-        return actionClassFound;
     }
 
     /**
-     * Vérifie si la classe ActionForm correspondant à l'action demandée existe.
-     * @param formClassFullName
-     *        Nom complet de la classe de l'ActionForm correspondant à l'action
-     *        demandée.
-     * @return Vrai si la classe ActionForm existe, faux autrement.
+     * Récupère une instance de l'Action demandée selon sa portée : l'instance
+     * partagée du registre pour une Action de portée application, une
+     * nouvelle instance de la Factory pour une Action de portée requête ;
+     * sinon depuis la session, si celle-ci a déjà été instanciée, ou de la
+     * Factory.
+     * @param request
+     *        La requête HTTP reçue.
+     * @param registry
+     *        Le registre lu par la requête.
+     * @param route
+     *        La route de l'url demandée.
+     * @return Une instance de l'Action correspondant à l'action demandée.
      */
-    private boolean doesActionFormClassExist(String formClassFullName)
+    private Action getActionFormInstanceByClassFullNameFromSesionOrFactory(HttpServletRequest request, Registry registry, Route route)
     {
-        boolean formClassFound = false;
-        try
+        Class<? extends Action> actionClass = route.getActionClass();
+        if (route.getActionScope() == ActionScope.APPLICATION)
+        {
+            return registry.getApplicationAction(actionClass);
+        }
+        if (route.getActionScope() == ActionScope.REQUEST)
         {
-            Class.forName(formClassFullName);
-            formClassFound = true;
+            return Factory.getInstance(actionClass);
         }
-        catch (ClassNotFoundException e)
+        HttpSession httpSession = request.getSession();
+        String actionClassFullName = actionClass.getCanonicalName();
+        Action myAction = (Action) httpSession.getAttribute(actionClassFullName);
+        if (myAction == null)
         {
-            throw new WrongActionFormCanonicalNameSpecifiedException("Whether the ActionForm class full name " + formClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
+            // s'il n'y a pas d'instance pour l'action on la crée et on la
+            // mémorise en session pour la prochaine fois
+            myAction = Factory.getInstance(actionClass);
+            httpSession.setAttribute(actionClassFullName, myAction);
         }
-        return formClassFound;
+        return myAction;
     }
 }
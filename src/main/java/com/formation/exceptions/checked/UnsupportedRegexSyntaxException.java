@@ -0,0 +1,70 @@
+package com.formation.exceptions.checked;
+
+/**
+ * Exception lancée quand un url-pattern utilise une syntaxe d'expression
+ * régulière que l'automate de routage ne sait pas compiler. La route doit alors
+ * être testée avec java.util.regex.
+ * @author filippo
+ */
+public class UnsupportedRegexSyntaxException extends Exception
+{
+    /**
+     * Le message de l'exception.
+     */
+    private String message;
+
+    /**
+     * Constructeur le plus simple.
+     * @param pMessage
+     *        Le message de l'exception.
+     */
+    public UnsupportedRegexSyntaxException(String pMessage)
+    {
+        super();
+        this.message = pMessage;
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public UnsupportedRegexSyntaxException(String pMessage, Throwable throwable)
+    {
+        super();
+        this.message = pMessage + "\nCaused by :" + throwable.getMessage();
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public UnsupportedRegexSyntaxException(Throwable throwable)
+    {
+        super();
+        this.message = throwable.getMessage();
+    }
+
+    /**
+     * Getter du message.
+     * @return Le message de l'Exception
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter du message.
+     * @param pMessage
+     *        Le message de l'Exception
+     */
+    public void setMessage(String pMessage)
+    {
+        this.message = pMessage;
+    }
+
+}
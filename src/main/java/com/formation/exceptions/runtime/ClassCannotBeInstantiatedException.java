@@ -0,0 +1,70 @@
+package com.formation.exceptions.runtime;
+
+/**
+ * Exception levée quand la Factory ne peut instancier une classe : classe
+ * abstraite ou interface, absence de constructeur public sans argument, classe
+ * non publique ou constructeur qui lève une exception.
+ * @author filippo
+ */
+public class ClassCannotBeInstantiatedException extends RuntimeException
+{
+    /**
+     * Le message de l'exception.
+     */
+    private String message;
+
+    /**
+     * Constructeur le plus simple.
+     * @param pMessage
+     *        Le message de l'exception.
+     */
+    public ClassCannotBeInstantiatedException(String pMessage)
+    {
+        super();
+        this.message = pMessage;
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public ClassCannotBeInstantiatedException(String pMessage, Throwable throwable)
+    {
+        super();
+        this.message = pMessage + "\nCaused by :" + throwable.getMessage();
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public ClassCannotBeInstantiatedException(Throwable throwable)
+    {
+        super();
+        this.message = throwable.getMessage();
+    }
+
+    /**
+     * Getter du message.
+     * @return Le message de l'Exception
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter du message.
+     * @param pMessage
+     *        Le message de l'Exception
+     */
+    public void setMessage(String pMessage)
+    {
+        this.message = pMessage;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.formation.exceptions.runtime;
+
+/**
+ * Exception levée quand un même url-pattern est déclaré par plusieurs fragments
+ * de configuration, ou par un fragment et la configuration principale.
+ * @author filippo
+ */
+public class DuplicateUrlPatternException extends RuntimeException
+{
+    /**
+     * Le message de l'exception.
+     */
+    private String message;
+
+    /**
+     * Constructeur le plus simple.
+     * @param pMessage
+     *        Le message de l'exception.
+     */
+    public DuplicateUrlPatternException(String pMessage)
+    {
+        super();
+        this.message = pMessage;
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public DuplicateUrlPatternException(String pMessage, Throwable throwable)
+    {
+        super();
+        this.message = pMessage + "\nCaused by :" + throwable.getMessage();
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public DuplicateUrlPatternException(Throwable throwable)
+    {
+        super();
+        this.message = throwable.getMessage();
+    }
+
+    /**
+     * Getter du message.
+     * @return Le message de l'Exception
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter du message.
+     * @param pMessage
+     *        Le message de l'Exception
+     */
+    public void setMessage(String pMessage)
+    {
+        this.message = pMessage;
+    }
+
+}
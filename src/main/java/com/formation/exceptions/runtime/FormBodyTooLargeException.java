@@ -0,0 +1,72 @@
+package com.formation.exceptions.runtime;
+
+/**
+ * Exception levée quand le corps d'un formulaire lu en streaming dépasse le
+ * nombre de paramètres ou la taille de valeur configurés (propriétés
+ * maxFormParameters et maxFormValueLength), ou quand les chemins indexés
+ * d'une requête ajouteraient plus de maxFormParameters cases aux List et aux
+ * tableaux. Le contrôleur y répond par le statut 413.
+ * @author filippo
+ */
+public class FormBodyTooLargeException extends RuntimeException
+{
+    /**
+     * Le message de l'exception.
+     */
+    private String message;
+
+    /**
+     * Constructeur le plus simple.
+     * @param pMessage
+     *        Le message de l'exception.
+     */
+    public FormBodyTooLargeException(String pMessage)
+    {
+        super();
+        this.message = pMessage;
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public FormBodyTooLargeException(String pMessage, Throwable throwable)
+    {
+        super();
+        this.message = pMessage + "\nCaused by :" + throwable.getMessage();
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public FormBodyTooLargeException(Throwable throwable)
+    {
+        super();
+        this.message = throwable.getMessage();
+    }
+
+    /**
+     * Getter du message.
+     * @return Le message de l'Exception
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter du message.
+     * @param pMessage
+     *        Le message de l'Exception
+     */
+    public void setMessage(String pMessage)
+    {
+        this.message = pMessage;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.formation.exceptions.runtime;
+
+/**
+ * Exception levée quand une Action ou un ActionForm demande par @Inject un
+ * service dont le type n'a pas été enregistré auprès de la Factory.
+ * @author filippo
+ */
+public class NoServiceRegisteredForInjectedTypeException extends RuntimeException
+{
+    /**
+     * Le message de l'exception.
+     */
+    private String message;
+
+    /**
+     * Constructeur le plus simple.
+     * @param pMessage
+     *        Le message de l'exception.
+     */
+    public NoServiceRegisteredForInjectedTypeException(String pMessage)
+    {
+        super();
+        this.message = pMessage;
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public NoServiceRegisteredForInjectedTypeException(String pMessage, Throwable throwable)
+    {
+        super();
+        this.message = pMessage + "\nCaused by :" + throwable.getMessage();
+    }
+
+    /**
+     * Pour pouvoir chaîner les Exceptions.
+     * @param throwable
+     *        Exception Reprise.
+     */
+    public NoServiceRegisteredForInjectedTypeException(Throwable throwable)
+    {
+        super();
+        this.message = throwable.getMessage();
+    }
+
+    /**
+     * Getter du message.
+     * @return Le message de l'Exception
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter du message.
+     * @param pMessage
+     *        Le message de l'Exception
+     */
+    public void setMessage(String pMessage)
+    {
+        this.message = pMessage;
+    }
+
+}
@@ -10,6 +10,16 @@ public class XMLParsingException extends RuntimeException
      * Le message de l'exception.
      */
     private String message;
+    /**
+     * Ligne du fichier où l'erreur a été rencontrée, -1 si elle n'est pas
+     * connue.
+     */
+    private int lineNumber = -1;
+    /**
+     * Colonne du fichier où l'erreur a été rencontrée, -1 si elle n'est pas
+     * connue.
+     */
+    private int columnNumber = -1;
 
     /**
      * Constructeur le plus simple.
@@ -22,6 +32,23 @@ public class XMLParsingException extends RuntimeException
         this.message = pMessage;
     }
 
+    /**
+     * Constructeur qui indique la position de l'erreur dans le fichier.
+     * @param pMessage
+     *        Le message de l'exception.
+     * @param pLineNumber
+     *        La ligne où l'erreur a été rencontrée.
+     * @param pColumnNumber
+     *        La colonne où l'erreur a été rencontrée.
+     */
+    public XMLParsingException(String pMessage, int pLineNumber, int pColumnNumber)
+    {
+        super();
+        this.message = pMessage + "\nAt line " + pLineNumber + ", column " + pColumnNumber + ".";
+        this.lineNumber = pLineNumber;
+        this.columnNumber = pColumnNumber;
+    }
+
     /**
      * Pour pouvoir chaîner les Exceptions.
      * @param pMessage
@@ -65,4 +92,23 @@ public class XMLParsingException extends RuntimeException
         this.message = pMessage;
     }
 
+    /**
+     * Getter de la ligne de l'erreur.
+     * @return La ligne du fichier où l'erreur a été rencontrée, -1 si elle
+     *         n'est pas connue.
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Getter de la colonne de l'erreur.
+     * @return La colonne du fichier où l'erreur a été rencontrée, -1 si elle
+     *         n'est pas connue.
+     */
+    public int getColumnNumber()
+    {
+        return columnNumber;
+    }
 }
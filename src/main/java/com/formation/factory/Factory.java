@@ -1,25 +1,57 @@
 package com.formation.factory;
 
-import org.apache.log4j.Logger;
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.formation.annotations.FormScope;
+import com.formation.archetypes.ActionForm;
+import com.formation.exceptions.runtime.ClassCannotBeInstantiatedException;
 
 /**
  * Classe où sont regroupées toutes les instanciations d'Action et ActionForm.
  * En général la factory permet de centraliser l'instanciation d'objets pour
  * éviter que des new trainent un peu partout. Des news qui trainent par ci par
  * là sont autant de dépendances à changer si l'on change d'implémentation.
+ * <p>
+ * Les services partagés (DAO, caches...) sont enregistrés par
+ * registerService, typiquement par un ServletContextListener de l'application
+ * hôte, avant la lecture de la configuration. Ils sont injectés dans le
+ * constructeur ou les attributs annotés @Inject des classes instanciées.
+ * </p>
  * @author filippo
  */
 public final class Factory
 {
-    /**
-     * Logger.
-     */
-    private static Logger logger = Logger.getLogger(Factory.class);
     /**
      * La factory est créée en singleton et il s'agit là de l'instance délivrée
      * par getFactory.
      */
     private static Factory factoryInstance = new Factory();
+    /**
+     * Les services injectables, par type.
+     */
+    private static final Map<Class<?>, Object> SERVICES = new ConcurrentHashMap<Class<?>, Object>();
+    /**
+     * Plan d'instanciation de chaque classe déjà préparée : son constructeur
+     * et ses injections, voir InjectionPlan. Un ClassValue est attaché à la
+     * classe elle-même : il ne l'empêche pas d'être déchargée avec
+     * l'application hôte.
+     */
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>()
+    {
+        @Override
+        protected MethodHandle computeValue(Class<?> type)
+        {
+            return InjectionPlan.build(type, SERVICES);
+        }
+    };
+
+    /**
+     * Réserve des ActionForms de portée requête, ou null si la propriété
+     * formPoolSize ne l'active pas.
+     */
+    private static volatile FormPool formPool;
 
     /**
      * Constructeur de la factory qui est private pour que l'instanciation ne
@@ -44,7 +76,68 @@ public final class Factory
     /**
      * C'est le coeur de la fabrique, là òu tous les petits Action et ActionForm
      * sont créés avec soin. Cette fabrique est d'ailleurs capable de créer
-     * absolument tout. ;)
+     * absolument tout. ;) Le plan d'instanciation de chaque classe est
+     * construit une seule fois puis gardé dans CONSTRUCTORS : l'instanciation
+     * se réduit ensuite à l'appel direct du constructeur et des injections.
+     * @param type
+     *        La classe de l'objet à instancier, qui doit être publique,
+     *        concrète et avoir un constructeur public sans argument ou un
+     *        constructeur public annoté @Inject.
+     * @param <T>
+     *        Le type de l'objet.
+     * @return Une nouvelle instance de la classe.
+     */
+    public static <T> T getInstance(Class<T> type)
+    {
+        MethodHandle constructor = CONSTRUCTORS.get(type);
+        try
+        {
+            return type.cast((Object) constructor.invokeExact());
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new ClassCannotBeInstantiatedException("The constructor of " + type.getName() + " has thrown a checked exception.", e);
+        }
+    }
+
+    /**
+     * Construit dès maintenant le plan d'instanciation d'une classe, pour que
+     * ses erreurs (constructeur manquant, service non enregistré...) soient
+     * signalées à la construction du registre plutôt qu'à la première
+     * requête.
+     * @param type
+     *        La classe.
+     */
+    public static void prepare(Class<?> type)
+    {
+        CONSTRUCTORS.get(type);
+    }
+
+    /**
+     * Enregistre un service, injecté dans les constructeurs et les attributs
+     * annotés @Inject de son type. Les plans d'instanciation lient les
+     * services qu'ils trouvent à leur construction : un service doit donc être
+     * enregistré avant la lecture de la configuration, et n'est pas remplacé
+     * dans les plans déjà construits.
+     * @param type
+     *        Le type sous lequel le service est injecté.
+     * @param service
+     *        Le service, partagé par toutes les instances qui le demandent.
+     * @param <T>
+     *        Le type du service.
+     */
+    public static <T> void registerService(Class<T> type, T service)
+    {
+        SERVICES.put(type, type.cast(service));
+    }
+
+    /**
+     * Instancie une classe désignée par son nom. La classe est chargée à
+     * chaque appel : quand la classe est connue, préférer getInstance(Class).
      * @param classPath
      *        Le nom canonique de la classe de l'objet à instancier.
      * @param <T>
@@ -58,18 +151,76 @@ public final class Factory
     @SuppressWarnings("unchecked")
     public static <T> T getInstance(String classPath) throws ClassNotFoundException
     {
-        Class type;
-        T result = null;
+        return (T) getInstance(Class.forName(classPath));
+    }
 
-        type = Class.forName(classPath);
-        try
+    /**
+     * Active ou désactive la réserve des ActionForms de portée requête.
+     * @param capacity
+     *        Nombre maximal d'instances libres gardées par classe, 0 pour
+     *        désactiver la réserve.
+     */
+    public static void setFormPoolCapacity(int capacity)
+    {
+        if (capacity > 0)
+        {
+            formPool = new FormPool(capacity);
+        }
+        else
+        {
+            formPool = null;
+        }
+    }
+
+    /**
+     * Portée d'un ActionForm, donnée par son annotation @ActionForm.
+     * @param type
+     *        La classe de l'ActionForm.
+     * @return La portée, SESSION si la classe n'est pas annotée.
+     */
+    public static FormScope getScope(Class<? extends ActionForm> type)
+    {
+        com.formation.annotations.ActionForm annotation = type.getAnnotation(com.formation.annotations.ActionForm.class);
+        if (annotation == null)
+        {
+            return FormScope.SESSION;
+        }
+        return annotation.scope();
+    }
+
+    /**
+     * Fournit un ActionForm de portée requête : une instance de la réserve si
+     * elle est activée et en contient une, sinon une nouvelle instance.
+     * L'appelant doit appeler reset avant de le peupler puis le rendre par
+     * releaseForm une fois la requête traitée.
+     * @param type
+     *        La classe de l'ActionForm.
+     * @param <T>
+     *        Le type de l'ActionForm.
+     * @return L'instance.
+     */
+    public static <T extends ActionForm> T acquireForm(Class<T> type)
+    {
+        FormPool pool = formPool;
+        if (pool == null)
         {
-            result = (T) type.newInstance();
+            return getInstance(type);
         }
-        catch (InstantiationException | IllegalAccessException e)
+        return pool.acquire(type);
+    }
+
+    /**
+     * Rend à la réserve un ActionForm de portée requête. Il ne doit plus être
+     * référencé après l'appel.
+     * @param form
+     *        L'ActionForm.
+     */
+    public static void releaseForm(ActionForm form)
+    {
+        FormPool pool = formPool;
+        if (pool != null)
         {
-            logger.error("For un unknown reason the specified class can't be accessed for instanciation");
+            pool.release(form);
         }
-        return result;
     }
 }
@@ -0,0 +1,165 @@
+package com.formation.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.log4j.Logger;
+
+import com.formation.archetypes.ActionForm;
+
+/**
+ * Réserve bornée d'ActionForms de portée requête. Chaque classe a ses listes
+ * d'instances libres, réparties en plusieurs files choisies selon le thread :
+ * les threads du conteneur prennent et rendent leurs formulaires sans se
+ * disputer un même verrou. Une file pleine refuse l'instance rendue, qui est
+ * laissée au ramasse-miettes ; une file vide fait créer une nouvelle instance.
+ * <p>
+ * Seules les classes qui redéfinissent ActionForm.reset sont mises en
+ * réserve : reset, appelé avant de peupler le formulaire, doit effacer tout
+ * ce qu'une requête précédente y a laissé.
+ * </p>
+ * @author filippo
+ */
+final class FormPool
+{
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(FormPool.class);
+    /**
+     * Nombre de files par classe.
+     */
+    private final int stripeCount;
+    /**
+     * Nombre maximal d'instances libres par file.
+     */
+    private final int stripeCapacity;
+    /**
+     * Les files de chaque classe, créées à la première demande.
+     */
+    private final ClassValue<PooledClass> pooledClasses = new ClassValue<PooledClass>()
+    {
+        @Override
+        protected PooledClass computeValue(Class<?> type)
+        {
+            return new PooledClass(type);
+        }
+    };
+
+    /**
+     * Constructeur.
+     * @param capacity
+     *        Nombre maximal d'instances libres par classe, strictement
+     *        positif.
+     */
+    FormPool(int capacity)
+    {
+        this.stripeCount = Math.min(capacity, Runtime.getRuntime().availableProcessors());
+        this.stripeCapacity = capacity / stripeCount;
+    }
+
+    /**
+     * Prend une instance libre ou, à défaut, en crée une.
+     * @param type
+     *        La classe de l'ActionForm.
+     * @param <T>
+     *        Le type de l'ActionForm.
+     * @return L'instance, à peupler après l'appel de reset.
+     */
+    <T extends ActionForm> T acquire(Class<T> type)
+    {
+        ArrayBlockingQueue<ActionForm> stripe = pooledClasses.get(type).stripe();
+        if (stripe != null)
+        {
+            ActionForm form = stripe.poll();
+            if (form != null)
+            {
+                return type.cast(form);
+            }
+        }
+        return Factory.getInstance(type);
+    }
+
+    /**
+     * Rend une instance qui n'est plus utilisée par sa requête.
+     * @param form
+     *        L'instance.
+     */
+    void release(ActionForm form)
+    {
+        ArrayBlockingQueue<ActionForm> stripe = pooledClasses.get(form.getClass()).stripe();
+        if (stripe != null)
+        {
+            stripe.offer(form);
+        }
+    }
+
+    /**
+     * Les files d'instances libres d'une classe.
+     * @author filippo
+     */
+    private final class PooledClass
+    {
+        /**
+         * Les files, ou null si la classe n'est pas mise en réserve.
+         */
+        private final List<ArrayBlockingQueue<ActionForm>> stripes;
+
+        /**
+         * Constructeur.
+         * @param type
+         *        La classe de l'ActionForm.
+         */
+        private PooledClass(Class<?> type)
+        {
+            if (overridesReset(type))
+            {
+                stripes = new ArrayList<ArrayBlockingQueue<ActionForm>>(stripeCount);
+                for (int i = 0; i < stripeCount; i++)
+                {
+                    stripes.add(new ArrayBlockingQueue<ActionForm>(stripeCapacity));
+                }
+            }
+            else
+            {
+                logger.warn("The request-scoped ActionForm " + type.getName() + " does not override reset(HttpServletRequest), it is not pooled.");
+                stripes = null;
+            }
+        }
+
+        /**
+         * La file du thread courant.
+         * @return La file, ou null si la classe n'est pas mise en réserve.
+         */
+        private ArrayBlockingQueue<ActionForm> stripe()
+        {
+            if (stripes == null)
+            {
+                return null;
+            }
+            return stripes.get((int) (Thread.currentThread().getId() % stripes.size()));
+        }
+
+        /**
+         * Indique si une classe redéfinit ActionForm.reset.
+         * @param type
+         *        La classe.
+         * @return Vrai si reset est redéfinie par la classe ou l'une de ses
+         *         superclasses autre qu'ActionForm.
+         */
+        private boolean overridesReset(Class<?> type)
+        {
+            try
+            {
+                return type.getMethod("reset", HttpServletRequest.class).getDeclaringClass() != ActionForm.class;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.formation.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+import com.formation.annotations.Inject;
+import com.formation.exceptions.runtime.ClassCannotBeInstantiatedException;
+import com.formation.exceptions.runtime.NoServiceRegisteredForInjectedTypeException;
+import com.formation.exceptions.runtime.SecurityManagerRuleForbidAccessToFieldException;
+
+/**
+ * Plan d'instanciation d'une classe : son constructeur, ses services injectés
+ * et les attributs @Inject qui les reçoivent, réunis en un seul MethodHandle
+ * de type ()Object. Le plan est construit une fois par classe ; les services
+ * y sont liés comme des constantes, si bien qu'une instanciation ne fait plus
+ * aucune recherche, ni par réflexion ni dans la table des services.
+ * @author filippo
+ */
+final class InjectionPlan
+{
+    /**
+     * Constructeur privé, classe utilitaire.
+     */
+    private InjectionPlan()
+    {
+    }
+
+    /**
+     * Construit le plan d'une classe.
+     * @param type
+     *        La classe, qui doit être publique et concrète.
+     * @param services
+     *        Les services enregistrés, par type.
+     * @return Le plan, de type ()Object.
+     */
+    static MethodHandle build(Class<?> type, Map<Class<?>, Object> services)
+    {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+        {
+            throw new ClassCannotBeInstantiatedException("The class " + type.getName() + " is abstract or is an interface and cannot be instantiated.");
+        }
+        MethodHandle plan = constructor(type, services);
+        Class<?> declaringClass = type;
+        while (declaringClass != null && declaringClass != Object.class)
+        {
+            for (Field field : declaringClass.getDeclaredFields())
+            {
+                if (field.isAnnotationPresent(Inject.class))
+                {
+                    plan = MethodHandles.filterReturnValue(plan, fieldInjector(field, services));
+                }
+            }
+            declaringClass = declaringClass.getSuperclass();
+        }
+        return plan;
+    }
+
+    /**
+     * Le constructeur de la classe : son constructeur @Inject dont les
+     * paramètres sont liés aux services, ou à défaut son constructeur public
+     * sans argument.
+     * @param type
+     *        La classe.
+     * @param services
+     *        Les services enregistrés, par type.
+     * @return Le constructeur, de type ()Object.
+     */
+    private static MethodHandle constructor(Class<?> type, Map<Class<?>, Object> services)
+    {
+        Constructor<?> injected = null;
+        for (Constructor<?> candidate : type.getDeclaredConstructors())
+        {
+            if (candidate.isAnnotationPresent(Inject.class))
+            {
+                if (injected != null)
+                {
+                    throw new ClassCannotBeInstantiatedException("The class " + type.getName() + " has more than one constructor annotated @Inject.");
+                }
+                injected = candidate;
+            }
+        }
+        try
+        {
+            if (injected == null)
+            {
+                return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+            }
+            Class<?>[] parameterTypes = injected.getParameterTypes();
+            Object[] arguments = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++)
+            {
+                arguments[i] = service(parameterTypes[i], type, services);
+            }
+            MethodHandle handle = MethodHandles.publicLookup().unreflectConstructor(injected);
+            return MethodHandles.insertArguments(handle, 0, arguments).asType(MethodType.methodType(Object.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new ClassCannotBeInstantiatedException("The class " + type.getName() + " must be public and have a public constructor without arguments or a public constructor annotated @Inject.", e);
+        }
+    }
+
+    /**
+     * L'injection d'un attribut @Inject : elle affecte le service à
+     * l'instance qu'elle reçoit puis la renvoie.
+     * @param field
+     *        L'attribut.
+     * @param services
+     *        Les services enregistrés, par type.
+     * @return L'injection, de type (Object)Object.
+     */
+    private static MethodHandle fieldInjector(Field field, Map<Class<?>, Object> services)
+    {
+        if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+        {
+            throw new ClassCannotBeInstantiatedException("The field " + field.getName() + " of " + field.getDeclaringClass().getName() + " is annotated @Inject but is static or final.");
+        }
+        Object service = service(field.getType(), field.getDeclaringClass(), services);
+        MethodHandle setter;
+        try
+        {
+            field.setAccessible(true);
+            setter = MethodHandles.lookup().unreflectSetter(field);
+        }
+        catch (SecurityException | IllegalAccessException e)
+        {
+            throw new SecurityManagerRuleForbidAccessToFieldException("A rule set with the Security Manager forbid access to the " + field.getName() + " field in the " + field.getDeclaringClass().getName() + " class." + "\n" + e.getMessage());
+        }
+        MethodHandle bound = MethodHandles.insertArguments(setter, 1, service).asType(MethodType.methodType(void.class, Object.class));
+        return MethodHandles.foldArguments(MethodHandles.identity(Object.class), bound);
+    }
+
+    /**
+     * Le service d'un type.
+     * @param serviceType
+     *        Le type demandé.
+     * @param requester
+     *        La classe qui le demande, pour le message d'erreur.
+     * @param services
+     *        Les services enregistrés, par type.
+     * @return Le service.
+     */
+    private static Object service(Class<?> serviceType, Class<?> requester, Map<Class<?>, Object> services)
+    {
+        Object service = services.get(serviceType);
+        if (service == null)
+        {
+            throw new NoServiceRegisteredForInjectedTypeException("No service is registered for the type " + serviceType.getName() + " injected in " + requester.getName() + ". Please register it with Factory.registerService before the configuration is read.");
+        }
+        return service;
+    }
+}
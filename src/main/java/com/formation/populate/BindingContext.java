@@ -0,0 +1,215 @@
+package com.formation.populate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.formation.exceptions.runtime.FormBodyTooLargeException;
+
+/**
+ * État d'un peuplement d'ActionForm, créé pour une requête : le nombre de
+ * cases que ses chemins de propriété indexés ont ajoutées aux List et aux
+ * tableaux, et les tableaux qu'ils ont agrandis.
+ * <p>
+ * Les cases ajoutées sont bornées pour toute la requête : sans cette borne, N
+ * paramètres lines[i].items[9999].x feraient créer N fois 10 000 cases. Un
+ * dépassement lève une FormBodyTooLargeException. Les objets intermédiaires,
+ * au plus un par segment de chaque paramètre, sont déjà bornés par le nombre
+ * de paramètres.
+ * </p>
+ * <p>
+ * Un tableau est agrandi au moins du double de sa taille, pour que des indices
+ * croissants a[0]..a[n] ne le recopient pas à chaque paramètre. Sa longueur
+ * utile, le plus grand indice affecté plus un, est gardée ici ; finish le
+ * ramène à cette longueur à la fin du peuplement.
+ * </p>
+ * @author filippo
+ */
+final class BindingContext
+{
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(BindingContext.class);
+    /**
+     * Nombre maximal de cases ajoutées.
+     */
+    private final int maxElements;
+    /**
+     * Nombre de cases ajoutées.
+     */
+    private int elements;
+    /**
+     * Les tableaux agrandis, créés au premier besoin.
+     */
+    private Map<Object, GrownArray> grownArrays;
+
+    /**
+     * Constructeur.
+     * @param pMaxElements
+     *        Nombre maximal de cases ajoutées par les chemins de propriété.
+     */
+    BindingContext(int pMaxElements)
+    {
+        this.maxElements = pMaxElements;
+    }
+
+    /**
+     * Compte des cases ajoutées à une List ou à un tableau.
+     * @param count
+     *        Le nombre de cases.
+     */
+    void allocate(int count)
+    {
+        elements += count;
+        if (elements > maxElements)
+        {
+            throw new FormBodyTooLargeException("The indexed properties of the form would add more than " + maxElements + " elements to its lists and arrays.");
+        }
+    }
+
+    /**
+     * La longueur utile d'un tableau.
+     * @param array
+     *        Le tableau.
+     * @return Sa longueur utile s'il a été agrandi pendant ce peuplement,
+     *         sinon sa longueur.
+     */
+    int lengthOf(Object array)
+    {
+        GrownArray grown = null;
+        if (grownArrays != null)
+        {
+            grown = grownArrays.get(array);
+        }
+        if (grown == null)
+        {
+            return Array.getLength(array);
+        }
+        return grown.length;
+    }
+
+    /**
+     * Enregistre un tableau agrandi, qui remplace le précédent.
+     * @param previous
+     *        Le tableau remplacé, ou null.
+     * @param array
+     *        Le nouveau tableau.
+     * @param owner
+     *        L'objet qui porte le tableau.
+     * @param setter
+     *        Le setter du tableau, de type (Object,Object)void.
+     * @param length
+     *        La longueur utile du nouveau tableau.
+     */
+    void grown(Object previous, Object array, Object owner, MethodHandle setter, int length)
+    {
+        if (grownArrays == null)
+        {
+            grownArrays = new IdentityHashMap<Object, GrownArray>();
+        }
+        if (previous != null)
+        {
+            grownArrays.remove(previous);
+        }
+        grownArrays.put(array, new GrownArray(owner, setter, length));
+    }
+
+    /**
+     * Allonge la longueur utile d'un tableau agrandi jusqu'à un indice
+     * affecté.
+     * @param array
+     *        Le tableau.
+     * @param index
+     *        L'indice.
+     */
+    void touch(Object array, int index)
+    {
+        if (grownArrays == null)
+        {
+            return;
+        }
+        GrownArray grown = grownArrays.get(array);
+        if (grown != null && index >= grown.length)
+        {
+            grown.length = index + 1;
+        }
+    }
+
+    /**
+     * Ramène les tableaux agrandis à leur longueur utile.
+     */
+    void finish()
+    {
+        if (grownArrays == null)
+        {
+            return;
+        }
+        for (Map.Entry<Object, GrownArray> entry : grownArrays.entrySet())
+        {
+            Object array = entry.getKey();
+            GrownArray grown = entry.getValue();
+            if (Array.getLength(array) == grown.length)
+            {
+                continue;
+            }
+            Object trimmed = Array.newInstance(array.getClass().getComponentType(), grown.length);
+            System.arraycopy(array, 0, trimmed, 0, grown.length);
+            try
+            {
+                grown.setter.invokeExact(grown.owner, trimmed);
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Throwable e)
+            {
+                // comme avec Method.invoke, une exception du setter est
+                // tracée
+                logger.error(e.getMessage());
+            }
+        }
+        grownArrays = null;
+    }
+
+    /**
+     * Un tableau agrandi : l'objet qui le porte, son setter et sa longueur
+     * utile.
+     * @author filippo
+     */
+    private static final class GrownArray
+    {
+        /**
+         * L'objet qui porte le tableau.
+         */
+        private final Object owner;
+        /**
+         * Le setter du tableau, de type (Object,Object)void.
+         */
+        private final MethodHandle setter;
+        /**
+         * La longueur utile.
+         */
+        private int length;
+
+        /**
+         * Constructeur.
+         * @param pOwner
+         *        L'objet qui porte le tableau.
+         * @param pSetter
+         *        Le setter du tableau.
+         * @param pLength
+         *        La longueur utile.
+         */
+        private GrownArray(Object pOwner, MethodHandle pSetter, int pLength)
+        {
+            this.owner = pOwner;
+            this.setter = pSetter;
+            this.length = pLength;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.formation.populate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.formation.exceptions.runtime.NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException;
+import com.formation.exceptions.runtime.SecurityManagerRuleForbidAccessToFieldException;
+import com.formation.factory.Factory;
+
+/**
+ * Plan de peuplement d'une classe d'ActionForm : le setter de chacun de ses
+ * attributs, composé avec la conversion de son type, rangé dans la case de
+ * son nom d'un hachage parfait minimal (voir NameIndex). Il est construit une
+ * fois par classe, à la construction du registre ; peupler un formulaire ne
+ * fait ensuite plus aucune recherche par réflexion, et un nom de paramètre
+ * inconnu est refusé en temps constant.
+ * <p>
+ * Si le processeur d'annotations a généré un binder pour la classe (voir
+ * FormBinder), c'est lui qui est appelé d'abord ; les setters ne servent plus
+ * qu'aux attributs qu'il ne sait pas peupler.
+ * </p>
+ * <p>
+ * Les noms de paramètres qui sont des chemins, tels que address.city ou
+ * lines[3].qty, et dont le premier segment est un attribut, sont suivis par
+ * des PropertyPath compilés à leur première utilisation et gardés par forme
+ * de chemin. Un chemin mal formé ou qui ne peut être suivi est refusé comme
+ * un nom inconnu ; une forme qui n'a pu être compilée est gardée aussi, pour
+ * qu'un même paramètre parasite ne la fasse pas recompiler à chaque requête.
+ * </p>
+ * @author filippo
+ */
+final class BindingPlan
+{
+    /**
+     * Nombre maximal de formes de chemin refusées gardées par classe : les
+     * noms de paramètres viennent de la requête, la liste est vidée quand elle
+     * est pleine.
+     */
+    private static final int MAX_INVALID_SHAPES = 256;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(BindingPlan.class);
+    /**
+     * La classe de l'ActionForm.
+     */
+    private final Class<?> formClass;
+    /**
+     * Les noms des attributs, seuls noms de paramètres acceptés.
+     */
+    private final NameIndex names;
+    /**
+     * Les setters, dans la case du nom de leur attribut.
+     */
+    private final PropertySetter[] setters;
+    /**
+     * Nombre de noms de paramètres refusés.
+     */
+    private final AtomicLong rejectedNames = new AtomicLong();
+    /**
+     * Le binder généré pour la classe, ou null.
+     */
+    private final FormBinder generatedBinder;
+    /**
+     * Les chemins de propriété compilés, par forme (voir PropertyPath).
+     */
+    private final ConcurrentMap<String, PropertyPath> paths = new ConcurrentHashMap<String, PropertyPath>();
+    /**
+     * Les formes de chemin qui n'ont pu être compilées.
+     */
+    private final ConcurrentMap<String, Boolean> invalidShapes = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Constructeur qui cherche les attributs déclarés par la classe et leurs
+     * setters publics.
+     * @param pFormClass
+     *        La classe de l'ActionForm.
+     */
+    BindingPlan(Class<?> pFormClass)
+    {
+        this.formClass = pFormClass;
+        Field[] fields;
+        try
+        {
+            fields = pFormClass.getDeclaredFields();
+        }
+        catch (SecurityException e)
+        {
+            throw new SecurityManagerRuleForbidAccessToFieldException("A rule set with the Security Manager forbid access to the fields of the " + pFormClass.getCanonicalName() + " actionForm." + "\n" + e.getMessage());
+        }
+        List<Field> bindable = new ArrayList<Field>(fields.length);
+        List<String> fieldNames = new ArrayList<String>(fields.length);
+        for (Field f : fields)
+        {
+            if (!f.isSynthetic())
+            {
+                bindable.add(f);
+                fieldNames.add(f.getName());
+            }
+        }
+        this.names = new NameIndex(fieldNames.toArray(new String[fieldNames.size()]));
+        this.setters = new PropertySetter[bindable.size()];
+        for (Field f : bindable)
+        {
+            String setterName = "set" + f.getName().substring(0, 1).toUpperCase() + f.getName().substring(1, f.getName().length());
+            setters[names.indexOf(f.getName(), f.getName().length())] = new PropertySetter(pFormClass, f.getName(), setterName, findSetter(pFormClass, setterName, f.getType()), f.getGenericType());
+        }
+        this.generatedBinder = loadGeneratedBinder(pFormClass);
+    }
+
+    /**
+     * Charge le binder généré pour une classe d'ActionForm.
+     * @param c
+     *        La classe de l'ActionForm.
+     * @return Une instance du binder, ou null si la classe n'en a pas.
+     */
+    private static FormBinder loadGeneratedBinder(Class<?> c)
+    {
+        if (c.getEnclosingClass() != null)
+        {
+            return null;
+        }
+        String binderName = c.getName() + FormBinder.GENERATED_SUFFIX;
+        try
+        {
+            return Factory.getInstance(Class.forName(binderName, true, c.getClassLoader()).asSubclass(FormBinder.class));
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+        catch (LinkageError | RuntimeException e)
+        {
+            logger.warn("The generated binder " + binderName + " cannot be used, the actionForm " + c.getCanonicalName() + " is populated by reflection." + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cherche le setter public d'un attribut.
+     * @param c
+     *        La classe de l'ActionForm.
+     * @param setterName
+     *        Le nom du setter.
+     * @param type
+     *        Le type de l'attribut.
+     * @return Le setter, ou null s'il n'existe pas ou n'est pas accessible.
+     */
+    private static MethodHandle findSetter(Class<?> c, String setterName, Class<?> type)
+    {
+        try
+        {
+            Method setter = c.getMethod(setterName, type);
+            return MethodHandles.publicLookup().unreflect(setter);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            return null;
+        }
+        catch (SecurityException e)
+        {
+            throw new SecurityManagerRuleForbidAccessToFieldException("A rule set with the Security Manager forbid access to the " + setterName + " method in the " + c.getCanonicalName() + " actionForm." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Affecte une valeur à l'attribut de même nom d'un ActionForm.
+     * @param actionForm
+     *        L'ActionForm, instance de la classe du plan.
+     * @param name
+     *        Le nom de l'attribut.
+     * @param value
+     *        La valeur.
+     * @param context
+     *        L'état du peuplement, pour les chemins de propriété.
+     * @return Le message de l'erreur de champ si la valeur ne peut être
+     *         convertie vers le type de l'attribut, null sinon.
+     */
+    String set(Object actionForm, String name, String value, BindingContext context)
+    {
+        if (generatedBinder != null)
+        {
+            try
+            {
+                if (generatedBinder.bind(actionForm, name, value))
+                {
+                    return null;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // comme avec le plan par réflexion, une exception du setter
+                // est tracée
+                logger.error(e.getMessage());
+                return null;
+            }
+        }
+        int end = propertyNameEnd(name);
+        int slot = names.indexOf(name, end);
+        if (slot < 0)
+        {
+            return reject(name);
+        }
+        if (end < name.length())
+        {
+            return setPath(actionForm, name, new String[] {value}, context);
+        }
+        return setters[slot].set(actionForm, value);
+    }
+
+    /**
+     * Affecte toutes les valeurs d'un paramètre à l'attribut de même nom d'un
+     * ActionForm : un attribut tableau ou collection les reçoit toutes, les
+     * autres la première.
+     * @param actionForm
+     *        L'ActionForm, instance de la classe du plan.
+     * @param name
+     *        Le nom de l'attribut.
+     * @param values
+     *        Les valeurs, dans l'ordre de la requête.
+     * @param context
+     *        L'état du peuplement, pour les chemins de propriété.
+     * @return Le message de l'erreur de champ si une valeur ne peut être
+     *         convertie, null sinon.
+     */
+    String setAll(Object actionForm, String name, String[] values, BindingContext context)
+    {
+        if (values.length == 1)
+        {
+            // le binder généré, s'il existe, traite les attributs à une
+            // seule valeur
+            return set(actionForm, name, values[0], context);
+        }
+        int end = propertyNameEnd(name);
+        int slot = names.indexOf(name, end);
+        if (slot < 0)
+        {
+            return reject(name);
+        }
+        if (end < name.length())
+        {
+            return setPath(actionForm, name, values, context);
+        }
+        return setters[slot].setAll(actionForm, values);
+    }
+
+    /**
+     * Indique si un paramètre est celui d'un attribut tableau ou collection,
+     * dont les valeurs doivent être réunies avant d'être affectées. Pour un
+     * chemin tel que order.tags, c'est le dernier segment qui décide, comme
+     * pour setAll.
+     * @param name
+     *        Le nom du paramètre.
+     * @return Vrai si le nom est celui d'un attribut, ou mène à un attribut,
+     *         qui reçoit plusieurs valeurs.
+     */
+    boolean isMultiValued(String name)
+    {
+        int end = propertyNameEnd(name);
+        int slot = names.indexOf(name, end);
+        if (slot < 0)
+        {
+            return false;
+        }
+        if (end == name.length())
+        {
+            return setters[slot].isMultiValued();
+        }
+        String shape = PropertyPath.parse(name, new int[PropertyPath.MAX_DEPTH]);
+        if (shape == null)
+        {
+            return false;
+        }
+        PropertyPath path = compile(shape);
+        return path != null && path.isMultiValued();
+    }
+
+    /**
+     * Compte un nom de paramètre qui ne correspond à aucun attribut, ou un
+     * chemin qui ne peut être suivi, et le refuse ou l'ignore selon le mode du
+     * FormFiller.
+     * @param name
+     *        Le nom du paramètre.
+     * @return null, si le FormFiller est tolérant.
+     */
+    String reject(String name)
+    {
+        rejectedNames.incrementAndGet();
+        FormFiller formFiller = FormFiller.getFormFiller();
+        formFiller.countRejectedName();
+        if (!formFiller.isLenient())
+        {
+            throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The name " + name + " provided to a form input has not matching field in the ActionForm " + formClass.getCanonicalName());
+        }
+        return null;
+    }
+
+    /**
+     * Getter du nombre de noms de paramètres refusés pour la classe.
+     * @return Le nombre de noms refusés ou ignorés.
+     */
+    long getRejectedNameCount()
+    {
+        return rejectedNames.get();
+    }
+
+    /**
+     * Lit la valeur d'une propriété ou d'un chemin de propriété.
+     * @param actionForm
+     *        L'ActionForm, instance de la classe du plan.
+     * @param name
+     *        Le nom de la propriété ou le chemin.
+     * @return La valeur, ou null si un objet du chemin est null.
+     */
+    Object read(Object actionForm, String name)
+    {
+        int[] indices = new int[PropertyPath.MAX_DEPTH];
+        return path(name, indices).get(actionForm, indices);
+    }
+
+    /**
+     * Vérifie qu'une propriété ou un chemin de propriété peut être lu et
+     * affecté.
+     * @param name
+     *        Le nom de la propriété ou le chemin.
+     */
+    void check(String name)
+    {
+        path(name, new int[PropertyPath.MAX_DEPTH]).checkReadableAndWritable();
+    }
+
+    /**
+     * La fin du nom d'attribut au début d'un nom de paramètre : tout le nom,
+     * ou le premier segment d'un chemin tel que lines[3].qty.
+     * @param name
+     *        Le nom du paramètre.
+     * @return La position du premier point ou crochet, ou la longueur du nom.
+     */
+    private static int propertyNameEnd(String name)
+    {
+        int length = name.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = name.charAt(i);
+            if (c == '.' || c == '[')
+            {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Affecte les valeurs d'un paramètre au bout d'un chemin de propriété.
+     * @param actionForm
+     *        L'ActionForm, instance de la classe du plan.
+     * @param name
+     *        Le chemin.
+     * @param values
+     *        Les valeurs.
+     * @param context
+     *        L'état du peuplement.
+     * @return Le message de l'erreur de champ si une valeur ne peut être
+     *         convertie, null sinon.
+     */
+    private String setPath(Object actionForm, String name, String[] values, BindingContext context)
+    {
+        int[] indices = new int[PropertyPath.MAX_DEPTH];
+        String shape = PropertyPath.parse(name, indices);
+        if (shape == null)
+        {
+            return reject(name);
+        }
+        PropertyPath path = compile(shape);
+        if (path == null || !path.isWritable())
+        {
+            return reject(name);
+        }
+        return path.set(actionForm, name, indices, values, context);
+    }
+
+    /**
+     * Le chemin compilé d'un nom, pour le lire ou le vérifier : un chemin
+     * invalide lève son exception.
+     * @param name
+     *        Le nom de la propriété ou le chemin.
+     * @param indices
+     *        Reçoit les indices du chemin.
+     * @return Le chemin compilé.
+     */
+    private PropertyPath path(String name, int[] indices)
+    {
+        String shape = PropertyPath.parse(name, indices);
+        if (shape == null)
+        {
+            throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The name " + name + " provided to a form input is not a valid property path for the ActionForm " + formClass.getCanonicalName());
+        }
+        PropertyPath path = compile(shape);
+        if (path == null)
+        {
+            // la forme a déjà été refusée : la compiler de nouveau lève son
+            // exception
+            path = new PropertyPath(formClass, shape);
+        }
+        return path;
+    }
+
+    /**
+     * Le chemin compilé d'une forme, compilé à sa première utilisation.
+     * @param shape
+     *        La forme du chemin.
+     * @return Le chemin compilé, ou null si la forme ne peut être suivie dans
+     *         la classe.
+     */
+    private PropertyPath compile(String shape)
+    {
+        PropertyPath path = paths.get(shape);
+        if (path != null)
+        {
+            return path;
+        }
+        if (invalidShapes.containsKey(shape))
+        {
+            return null;
+        }
+        try
+        {
+            path = new PropertyPath(formClass, shape);
+        }
+        catch (NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException e)
+        {
+            if (invalidShapes.size() >= MAX_INVALID_SHAPES)
+            {
+                invalidShapes.clear();
+            }
+            invalidShapes.put(shape, Boolean.TRUE);
+            return null;
+        }
+        PropertyPath existing = paths.putIfAbsent(shape, path);
+        if (existing != null)
+        {
+            path = existing;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,23 @@
+package com.formation.populate;
+
+/**
+ * Convertisseur d'une valeur de formulaire vers le type d'un attribut
+ * d'ActionForm, enregistré par Converters.register pour les types que le
+ * framework ne sait pas convertir lui-même.
+ * @param <T>
+ *        Le type produit.
+ * @author filippo
+ */
+public interface Converter<T>
+{
+    /**
+     * Convertit une valeur.
+     * @param value
+     *        La valeur reçue, sans espaces autour, jamais vide.
+     * @return La valeur convertie.
+     * @throws IllegalArgumentException
+     *         Si la valeur n'est pas valide : elle devient une erreur de
+     *         champ.
+     */
+    T convert(String value);
+}
@@ -0,0 +1,248 @@
+package com.formation.populate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.formation.exceptions.runtime.ValueCannotBeConvertedException;
+
+/**
+ * Registre des conversions d'une valeur de formulaire vers le type d'un
+ * attribut d'ActionForm. Chaque conversion est un MethodHandle de type
+ * (String)type, choisi une fois par attribut à la construction du plan de
+ * peuplement (voir BindingPlan) puis composé avec le setter : un int passe de
+ * Integer.parseInt au setter sans être emballé dans un Integer.
+ * <p>
+ * Sont pris en charge les types primitifs et leurs enveloppes, BigDecimal,
+ * BigInteger, les enums (par le nom de la constante), java.time.LocalDate
+ * (au format ISO aaaa-mm-jj) s'il existe, et les types enregistrés par
+ * register. Une conversion qui échoue lève une
+ * ValueCannotBeConvertedException.
+ * </p>
+ * @author filippo
+ */
+public final class Converters
+{
+    /**
+     * Nom de la classe LocalDate, cherchée à l'exécution pour que le framework
+     * reste utilisable sur un JRE qui ne l'a pas.
+     */
+    private static final String LOCAL_DATE = "java.time.LocalDate";
+    /**
+     * Les conversions du framework, par type.
+     */
+    private static final Map<Class<?>, MethodHandle> BUILT_IN = createBuiltIn();
+    /**
+     * Les conversions enregistrées par l'application hôte, par type.
+     */
+    private static final Map<Class<?>, MethodHandle> REGISTERED = new ConcurrentHashMap<Class<?>, MethodHandle>();
+    /**
+     * Enum.valueOf(Class, String).
+     */
+    private static final MethodHandle ENUM_VALUE_OF = findStatic(Enum.class, "valueOf", MethodType.methodType(Enum.class, Class.class, String.class));
+    /**
+     * Transforme l'exception d'une conversion en
+     * ValueCannotBeConvertedException.
+     */
+    private static final MethodHandle FAIL = findStatic(Converters.class, "fail", MethodType.methodType(Object.class, RuntimeException.class, String.class));
+
+    /**
+     * Constructeur privé, classe utilitaire.
+     */
+    private Converters()
+    {
+    }
+
+    /**
+     * Enregistre la conversion d'un type, qui remplace celle du framework. Les
+     * plans de peuplement choisissent leurs conversions à leur construction :
+     * une conversion doit donc être enregistrée avant la lecture de la
+     * configuration.
+     * @param type
+     *        Le type produit.
+     * @param converter
+     *        Le convertisseur.
+     * @param <T>
+     *        Le type produit.
+     */
+    public static <T> void register(Class<T> type, Converter<T> converter)
+    {
+        MethodHandle convert = findVirtual(Converter.class, "convert", MethodType.methodType(Object.class, String.class));
+        REGISTERED.put(type, convert.bindTo(converter).asType(MethodType.methodType(type, String.class)));
+    }
+
+    /**
+     * La conversion d'un type.
+     * @param type
+     *        Le type de l'attribut.
+     * @return La conversion, de type (String)type, qui lève une
+     *         ValueCannotBeConvertedException si la valeur n'est pas valide, ou
+     *         null si le type n'est pas pris en charge.
+     */
+    static MethodHandle find(Class<?> type)
+    {
+        MethodHandle converter = REGISTERED.get(type);
+        if (converter == null)
+        {
+            converter = BUILT_IN.get(type);
+        }
+        if (converter == null && type.isEnum())
+        {
+            converter = MethodHandles.insertArguments(ENUM_VALUE_OF, 0, type).asType(MethodType.methodType(type, String.class));
+        }
+        if (converter == null)
+        {
+            return null;
+        }
+        MethodHandle rethrow = FAIL.asType(MethodType.methodType(type, RuntimeException.class, String.class));
+        return MethodHandles.catchException(converter, RuntimeException.class, rethrow);
+    }
+
+    /**
+     * Lève l'exception d'une conversion qui a échoué.
+     * @param cause
+     *        L'exception de la conversion.
+     * @param value
+     *        La valeur reçue.
+     * @return Ne retourne jamais ; le type de retour permet d'utiliser la
+     *         méthode comme gestionnaire de n'importe quelle conversion.
+     */
+    @SuppressWarnings("unused")
+    private static Object fail(RuntimeException cause, String value)
+    {
+        throw new ValueCannotBeConvertedException("The value " + value + " cannot be converted.", cause);
+    }
+
+    /**
+     * Accepte les valeurs d'une case à cocher ou d'un choix oui/non.
+     * @param value
+     *        La valeur reçue.
+     * @return Vrai pour true, on, yes ou 1 ; faux pour false, off, no ou 0.
+     */
+    @SuppressWarnings("unused")
+    private static boolean parseBoolean(String value)
+    {
+        if ("true".equalsIgnoreCase(value) || "on".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value) || "1".equals(value))
+        {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value) || "0".equals(value))
+        {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+
+    /**
+     * Les conversions du framework.
+     * @return Les conversions, par type.
+     */
+    private static Map<Class<?>, MethodHandle> createBuiltIn()
+    {
+        Map<Class<?>, MethodHandle> builtIn = new HashMap<Class<?>, MethodHandle>();
+        addPrimitive(builtIn, int.class, Integer.class, findStatic(Integer.class, "parseInt", MethodType.methodType(int.class, String.class)));
+        addPrimitive(builtIn, long.class, Long.class, findStatic(Long.class, "parseLong", MethodType.methodType(long.class, String.class)));
+        addPrimitive(builtIn, double.class, Double.class, findStatic(Double.class, "parseDouble", MethodType.methodType(double.class, String.class)));
+        addPrimitive(builtIn, float.class, Float.class, findStatic(Float.class, "parseFloat", MethodType.methodType(float.class, String.class)));
+        addPrimitive(builtIn, short.class, Short.class, findStatic(Short.class, "parseShort", MethodType.methodType(short.class, String.class)));
+        addPrimitive(builtIn, byte.class, Byte.class, findStatic(Byte.class, "parseByte", MethodType.methodType(byte.class, String.class)));
+        addPrimitive(builtIn, boolean.class, Boolean.class, findStatic(Converters.class, "parseBoolean", MethodType.methodType(boolean.class, String.class)));
+        builtIn.put(BigDecimal.class, findConstructor(BigDecimal.class));
+        builtIn.put(BigInteger.class, findConstructor(BigInteger.class));
+        try
+        {
+            Class<?> localDate = Class.forName(LOCAL_DATE);
+            MethodHandle parse = MethodHandles.publicLookup().findStatic(localDate, "parse", MethodType.methodType(localDate, CharSequence.class));
+            builtIn.put(localDate, parse.asType(MethodType.methodType(localDate, String.class)));
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e)
+        {
+            // JRE antérieur à java.time : pas de conversion des dates
+        }
+        return builtIn;
+    }
+
+    /**
+     * Ajoute la conversion d'un type primitif et celle de son enveloppe.
+     * @param builtIn
+     *        Les conversions du framework.
+     * @param primitive
+     *        Le type primitif.
+     * @param wrapper
+     *        Son enveloppe.
+     * @param parse
+     *        La conversion, de type (String)primitive.
+     */
+    private static void addPrimitive(Map<Class<?>, MethodHandle> builtIn, Class<?> primitive, Class<?> wrapper, MethodHandle parse)
+    {
+        builtIn.put(primitive, parse);
+        builtIn.put(wrapper, parse.asType(MethodType.methodType(wrapper, String.class)));
+    }
+
+    /**
+     * Cherche une méthode statique du JDK ou de cette classe.
+     * @param owner
+     *        La classe.
+     * @param name
+     *        Le nom de la méthode.
+     * @param type
+     *        Son type.
+     * @return La méthode.
+     */
+    private static MethodHandle findStatic(Class<?> owner, String name, MethodType type)
+    {
+        try
+        {
+            return MethodHandles.lookup().findStatic(owner, name, type);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cherche une méthode d'instance publique.
+     * @param owner
+     *        La classe.
+     * @param name
+     *        Le nom de la méthode.
+     * @param type
+     *        Son type.
+     * @return La méthode.
+     */
+    private static MethodHandle findVirtual(Class<?> owner, String name, MethodType type)
+    {
+        try
+        {
+            return MethodHandles.publicLookup().findVirtual(owner, name, type);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cherche le constructeur (String) d'une classe du JDK.
+     * @param owner
+     *        La classe.
+     * @return Le constructeur, de type (String)owner.
+     */
+    private static MethodHandle findConstructor(Class<?> owner)
+    {
+        try
+        {
+            return MethodHandles.publicLookup().findConstructor(owner, MethodType.methodType(void.class, String.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.formation.populate;
+
+/**
+ * Stratégie de peuplement d'une classe d'ActionForm. Pour chaque classe
+ * annotée @ActionForm, le processeur d'annotations du framework génère à la
+ * compilation un binder nommé &lt;classe&gt;_EasyWebBinder, dans le même
+ * package, qui appelle directement les setters de la classe selon le nom du
+ * paramètre. Les attributs qu'il ne sait pas peupler, et les classes sans
+ * binder généré, passent par le plan construit par réflexion (voir
+ * BindingPlan).
+ * @author filippo
+ */
+public interface FormBinder
+{
+    /**
+     * Suffixe du nom des binders générés.
+     */
+    String GENERATED_SUFFIX = "_EasyWebBinder";
+
+    /**
+     * Affecte une valeur à l'attribut de même nom d'un ActionForm.
+     * @param actionForm
+     *        L'ActionForm.
+     * @param name
+     *        Le nom de l'attribut.
+     * @param value
+     *        La valeur.
+     * @return Faux si le binder ne sait pas peupler cet attribut : la valeur
+     *         est alors confiée au plan construit par réflexion.
+     */
+    boolean bind(Object actionForm, String name, String value);
+}
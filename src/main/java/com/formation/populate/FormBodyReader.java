@@ -0,0 +1,380 @@
+package com.formation.populate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.formation.exceptions.runtime.FormBodyTooLargeException;
+
+/**
+ * Lecteur en streaming d'un corps application/x-www-form-urlencoded : les
+ * paires nom=valeur sont décodées une à une depuis le flux, dans un tampon de
+ * lecture et un tampon de décodage réutilisés d'une paire à l'autre. Le corps
+ * n'est jamais gardé en entier, et aucune map des paramètres n'est construite.
+ * Les suites d'octets sans caractère spécial sont copiées d'un bloc, et le nom
+ * d'une paire qui répète celui de la précédente (grilles, cases à cocher)
+ * reprend la même String.
+ * <p>
+ * Un % qui n'est pas suivi de deux chiffres hexadécimaux est gardé tel quel.
+ * Le nombre de paires et la taille de chaque nom ou valeur sont bornés : un
+ * dépassement lève une FormBodyTooLargeException.
+ * </p>
+ * @author filippo
+ */
+final class FormBodyReader
+{
+    /**
+     * Taille du tampon de lecture.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Taille initiale du tampon de décodage.
+     */
+    private static final int INITIAL_TOKEN_SIZE = 256;
+    /**
+     * Marque de fin du flux.
+     */
+    private static final int END = -1;
+    /**
+     * Base des séquences %XX.
+     */
+    private static final int HEX_RADIX = 16;
+    /**
+     * Décalage du premier chiffre d'une séquence %XX.
+     */
+    private static final int HIGH_NIBBLE_SHIFT = 4;
+    /**
+     * Masque qui lit un octet comme non signé.
+     */
+    private static final int BYTE_MASK = 0xFF;
+    /**
+     * Le flux du corps.
+     */
+    private final InputStream in;
+    /**
+     * Le jeu de caractères des octets décodés.
+     */
+    private final Charset charset;
+    /**
+     * Nombre maximal de paires.
+     */
+    private final int maxParameters;
+    /**
+     * Nombre maximal d'octets décodés d'un nom ou d'une valeur.
+     */
+    private final int maxValueLength;
+    /**
+     * Le tampon de lecture.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /**
+     * Position de lecture dans le tampon.
+     */
+    private int position;
+    /**
+     * Nombre d'octets valides dans le tampon.
+     */
+    private int limit;
+    /**
+     * Octet lu d'avance et à relire, ou END.
+     */
+    private int pending = END;
+    /**
+     * Le tampon de décodage, agrandi jusqu'à maxValueLength.
+     */
+    private byte[] token = new byte[INITIAL_TOKEN_SIZE];
+    /**
+     * Nombre d'octets décodés dans le tampon.
+     */
+    private int tokenLength;
+    /**
+     * Nombre de paires lues.
+     */
+    private int count;
+    /**
+     * Vrai une fois la fin du flux atteinte.
+     */
+    private boolean finished;
+    /**
+     * Le nom de la paire courante.
+     */
+    private String name;
+    /**
+     * Les octets du nom de la paire courante.
+     */
+    private byte[] nameBytes = new byte[0];
+    /**
+     * La valeur de la paire courante.
+     */
+    private String value;
+
+    /**
+     * Constructeur.
+     * @param pIn
+     *        Le flux du corps.
+     * @param pCharset
+     *        Le jeu de caractères des octets décodés.
+     * @param pMaxParameters
+     *        Nombre maximal de paires.
+     * @param pMaxValueLength
+     *        Nombre maximal d'octets décodés d'un nom ou d'une valeur.
+     */
+    FormBodyReader(InputStream pIn, Charset pCharset, int pMaxParameters, int pMaxValueLength)
+    {
+        this.in = pIn;
+        this.charset = pCharset;
+        this.maxParameters = pMaxParameters;
+        this.maxValueLength = pMaxValueLength;
+    }
+
+    /**
+     * Lit la paire suivante. Les paires vides (&amp;&amp;) sont sautées, un
+     * nom sans = a pour valeur la chaîne vide.
+     * @return Vrai si une paire a été lue, faux à la fin du flux.
+     * @throws IOException
+     *         Si le flux ne peut être lu.
+     */
+    boolean next() throws IOException
+    {
+        while (!finished)
+        {
+            int delimiter = readToken(true);
+            if (tokenLength == 0 && delimiter != '=')
+            {
+                // paire vide
+                continue;
+            }
+            count++;
+            if (count > maxParameters)
+            {
+                throw new FormBodyTooLargeException("The form body has more than " + maxParameters + " parameters.");
+            }
+            if (!sameAsName())
+            {
+                name = new String(token, 0, tokenLength, charset);
+                nameBytes = Arrays.copyOf(token, tokenLength);
+            }
+            value = "";
+            if (delimiter == '=')
+            {
+                readToken(false);
+                value = new String(token, 0, tokenLength, charset);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indique si le tampon de décodage contient le nom de la paire
+     * précédente.
+     * @return Vrai si les octets sont les mêmes.
+     */
+    private boolean sameAsName()
+    {
+        if (tokenLength != nameBytes.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++)
+        {
+            if (token[i] != nameBytes[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Getter du nom de la paire courante.
+     * @return Le nom décodé.
+     */
+    String name()
+    {
+        return name;
+    }
+
+    /**
+     * Getter de la valeur de la paire courante.
+     * @return La valeur décodée.
+     */
+    String value()
+    {
+        return value;
+    }
+
+    /**
+     * Décode un nom ou une valeur dans le tampon de décodage.
+     * @param isName
+     *        Vrai pour un nom, qui s'arrête aussi au signe =.
+     * @return Le délimiteur rencontré : &amp;, = ou END.
+     * @throws IOException
+     *         Si le flux ne peut être lu.
+     */
+    private int readToken(boolean isName) throws IOException
+    {
+        tokenLength = 0;
+        while (true)
+        {
+            copyPlainBytes();
+            int b = read();
+            if (b == END)
+            {
+                finished = true;
+                return END;
+            }
+            if (b == '&' || (isName && b == '='))
+            {
+                return b;
+            }
+            if (b == '+')
+            {
+                append(' ');
+            }
+            else if (b == '%')
+            {
+                appendEscape();
+            }
+            else
+            {
+                append(b);
+            }
+        }
+    }
+
+    /**
+     * Copie d'un bloc les octets du tampon de lecture qui n'ont pas besoin
+     * d'être décodés, jusqu'au prochain caractère spécial.
+     */
+    private void copyPlainBytes()
+    {
+        if (pending != END)
+        {
+            return;
+        }
+        int end = position;
+        while (end < limit && !isSpecial(buffer[end]))
+        {
+            end++;
+        }
+        int length = end - position;
+        if (length == 0)
+        {
+            return;
+        }
+        if (tokenLength + length > maxValueLength)
+        {
+            throw new FormBodyTooLargeException("A name or value of the form body is longer than " + maxValueLength + " bytes.");
+        }
+        if (tokenLength + length > token.length)
+        {
+            token = Arrays.copyOf(token, Math.min(Math.max(token.length * 2, tokenLength + length), maxValueLength));
+        }
+        System.arraycopy(buffer, position, token, tokenLength, length);
+        tokenLength += length;
+        position = end;
+    }
+
+    /**
+     * Indique si un octet est un délimiteur ou doit être décodé.
+     * @param b
+     *        L'octet.
+     * @return Vrai pour &amp;, =, + et %.
+     */
+    private static boolean isSpecial(byte b)
+    {
+        return b == '&' || b == '=' || b == '+' || b == '%';
+    }
+
+    /**
+     * Décode une séquence %XX, ou garde le % tel quel si elle est mal formée.
+     * @throws IOException
+     *         Si le flux ne peut être lu.
+     */
+    private void appendEscape() throws IOException
+    {
+        int high = read();
+        int highDigit = hexDigit(high);
+        if (highDigit < 0)
+        {
+            append('%');
+            pending = high;
+            return;
+        }
+        int low = read();
+        int lowDigit = hexDigit(low);
+        if (lowDigit < 0)
+        {
+            append('%');
+            append(high);
+            pending = low;
+            return;
+        }
+        append((highDigit << HIGH_NIBBLE_SHIFT) | lowDigit);
+    }
+
+    /**
+     * La valeur d'un chiffre hexadécimal.
+     * @param b
+     *        L'octet lu, ou END.
+     * @return La valeur, ou -1 si l'octet n'est pas un chiffre hexadécimal.
+     */
+    private static int hexDigit(int b)
+    {
+        if (b == END)
+        {
+            return -1;
+        }
+        return Character.digit((char) b, HEX_RADIX);
+    }
+
+    /**
+     * Ajoute un octet décodé au tampon, agrandi si besoin.
+     * @param b
+     *        L'octet.
+     */
+    private void append(int b)
+    {
+        if (tokenLength == maxValueLength)
+        {
+            throw new FormBodyTooLargeException("A name or value of the form body is longer than " + maxValueLength + " bytes.");
+        }
+        if (tokenLength == token.length)
+        {
+            token = Arrays.copyOf(token, Math.min(token.length * 2, maxValueLength));
+        }
+        token[tokenLength] = (byte) b;
+        tokenLength++;
+    }
+
+    /**
+     * Lit un octet du flux, par le tampon de lecture.
+     * @return L'octet, ou END à la fin du flux.
+     * @throws IOException
+     *         Si le flux ne peut être lu.
+     */
+    private int read() throws IOException
+    {
+        if (pending != END)
+        {
+            int b = pending;
+            pending = END;
+            return b;
+        }
+        if (position == limit)
+        {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0)
+            {
+                limit = 0;
+                return END;
+            }
+        }
+        int b = buffer[position] & BYTE_MASK;
+        position++;
+        return b;
+    }
+}
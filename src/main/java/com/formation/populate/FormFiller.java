@@ -1,29 +1,81 @@
 package com.formation.populate;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.log4j.Logger;
-
-import com.formation.exceptions.runtime.NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException;
-import com.formation.exceptions.runtime.NoSetterMethodFoundForProvidedFormInputNameException;
-import com.formation.exceptions.runtime.SecurityManagerRuleForbidAccessToFieldException;
+import com.formation.routing.PathTemplate;
 
 /**
  * Classe qui va setter les atributs de l'ActionForm avec les valeurs passées
  * par parametersMap qui est une map des paramètres de la requête, issus du
- * formulaire soumis.
+ * formulaire soumis. Les setters de chaque classe d'ActionForm sont cherchés
+ * une seule fois et gardés dans un plan (voir BindingPlan), construit avec le
+ * registre. Toutes les valeurs d'un paramètre sont passées à l'attribut : un
+ * tableau, une List ou un Set les reçoit toutes, un attribut simple la
+ * première. Un nom de paramètre tel que address.city ou lines[3].qty est un
+ * chemin de propriété (voir PropertyPath). Une valeur qui ne peut être
+ * convertie vers le type de son attribut n'interrompt pas le peuplement : elle
+ * est rendue comme erreur de champ.
+ * <p>
+ * Un paramètre qui ne correspond à aucun attribut lève une
+ * NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException, sauf en
+ * mode tolérant (propriété lenientBinding) où il est ignoré : paramètres de
+ * suivi, jetons CSRF, nom du bouton de soumission... Dans les deux cas il est
+ * compté.
+ * </p>
+ * <p>
+ * Les chemins indexés d'une même requête ne peuvent ajouter ensemble plus de
+ * maxPathElements cases aux List et aux tableaux (voir BindingContext).
+ * </p>
  * @author filippo
  */
 public class FormFiller
 {
+    /**
+     * Nombre maximal de cases ajoutées par les chemins indexés d'une requête,
+     * tant que setMaxPathElements n'a pas été appelé.
+     */
+    private static final int DEFAULT_MAX_PATH_ELEMENTS = 10000;
     /**
      * Instance unique du FormFiller.
      */
     private static FormFiller formFillerInstance = new FormFiller();
+    /**
+     * Nombre maximal de cases ajoutées par les chemins indexés d'une requête.
+     */
+    private volatile int maxPathElements = DEFAULT_MAX_PATH_ELEMENTS;
+    /**
+     * Vrai si les paramètres inconnus sont ignorés plutôt que refusés.
+     */
+    private volatile boolean lenient;
+    /**
+     * Nombre de noms de paramètres refusés ou ignorés, toutes classes
+     * confondues.
+     */
+    private final AtomicLong rejectedNames = new AtomicLong();
+    /**
+     * Plan de peuplement de chaque classe d'ActionForm. Un ClassValue est
+     * attaché à la classe elle-même : il ne l'empêche pas d'être déchargée
+     * avec l'application hôte.
+     */
+    private static final ClassValue<BindingPlan> PLANS = new ClassValue<BindingPlan>()
+    {
+        @Override
+        protected BindingPlan computeValue(Class<?> type)
+        {
+            return new BindingPlan(type);
+        }
+    };
 
     /**
      * Constructeur privé pour garantir l'unicité de l'instance.
@@ -44,9 +96,117 @@ public class FormFiller
     }
 
     /**
-     * Logger.
+     * Choisit le traitement des paramètres qui ne correspondent à aucun
+     * attribut de l'ActionForm.
+     * @param pLenient
+     *        Vrai pour les ignorer, faux pour lever une exception.
+     */
+    public void setLenient(boolean pLenient)
+    {
+        this.lenient = pLenient;
+    }
+
+    /**
+     * Indique si les paramètres inconnus sont ignorés.
+     * @return Vrai en mode tolérant.
+     */
+    public boolean isLenient()
+    {
+        return lenient;
+    }
+
+    /**
+     * Borne les cases que les chemins indexés d'une requête peuvent ajouter
+     * aux List et aux tableaux.
+     * @param pMaxPathElements
+     *        Nombre maximal de cases ajoutées par requête.
+     */
+    public void setMaxPathElements(int pMaxPathElements)
+    {
+        this.maxPathElements = pMaxPathElements;
+    }
+
+    /**
+     * Getter du nombre de noms de paramètres refusés ou ignorés depuis le
+     * démarrage.
+     * @return Le nombre de noms, toutes classes d'ActionForm confondues.
+     */
+    public long getRejectedNameCount()
+    {
+        return rejectedNames.get();
+    }
+
+    /**
+     * Getter du nombre de noms de paramètres refusés ou ignorés pour une
+     * classe d'ActionForm.
+     * @param formClass
+     *        La classe de l'ActionForm.
+     * @return Le nombre de noms.
+     */
+    public long getRejectedNameCount(Class<?> formClass)
+    {
+        return PLANS.get(formClass).getRejectedNameCount();
+    }
+
+    /**
+     * Compte un nom de paramètre refusé ou ignoré.
+     */
+    void countRejectedName()
+    {
+        rejectedNames.incrementAndGet();
+    }
+
+    /**
+     * Construit dès maintenant le plan de peuplement d'une classe
+     * d'ActionForm, pour que les requêtes n'aient plus qu'à l'utiliser.
+     * @param formClass
+     *        La classe de l'ActionForm.
      */
-    private Logger logger = Logger.getLogger(this.getClass());
+    public void prepare(Class<?> formClass)
+    {
+        PLANS.get(formClass);
+    }
+
+    /**
+     * Le plan de peuplement d'une classe, pour les objets intermédiaires d'un
+     * chemin de propriété.
+     * @param type
+     *        La classe.
+     * @return Son plan.
+     */
+    static BindingPlan planOf(Class<?> type)
+    {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Lit la valeur d'une propriété d'un ActionForm, pour l'afficher. Le nom
+     * peut être un chemin tel que address.city ou lines[3].qty, compilé une
+     * fois par classe.
+     * @param actionForm
+     *        L'ActionForm.
+     * @param path
+     *        Le nom de la propriété ou le chemin.
+     * @return La valeur, ou null si elle ou un objet du chemin est null.
+     */
+    public Object readProperty(Object actionForm, String path)
+    {
+        return PLANS.get(actionForm.getClass()).read(actionForm, path);
+    }
+
+    /**
+     * Vérifie qu'une propriété ou un chemin de propriété d'une classe
+     * d'ActionForm a un getter et un setter, avant que l'ActionForm ne soit
+     * instancié.
+     * @param formClass
+     *        La classe de l'ActionForm.
+     * @param path
+     *        Le nom de la propriété ou le chemin.
+     */
+    public void checkProperty(Class<?> formClass, String path)
+    {
+        PLANS.get(formClass).check(path);
+    }
 
     /**
      * Méthode qui va setter les atributs de l'ActionForm avec les valeurs
@@ -56,95 +216,189 @@ public class FormFiller
      *        ActionForm dont on doit setter les attributs.
      * @param parametersMap
      *        Map des paramètres de la requête reçue.
+     * @return Les erreurs de champ, par nom d'attribut, dans l'ordre des
+     *         paramètres ; une map vide s'il n'y en a pas.
      */
-    public void populateBean(Object actionForm, Map<String, String[]> parametersMap)
+    public Map<String, String> populateBean(Object actionForm, Map<String, String[]> parametersMap)
     {
-        Class<?> c = actionForm.getClass();
-
-        for (Entry<String, String[]> parameterEntry : parametersMap.entrySet())
+        BindingPlan plan = PLANS.get(actionForm.getClass());
+        Map<String, String> errors = Collections.emptyMap();
+        BindingContext context = new BindingContext(maxPathElements);
+        try
         {
-            String parameterName = parameterEntry.getKey();
-            String parameterValue = parameterEntry.getValue()[0];
-
-            Field f = getFieldInClassByName(c, parameterName);
-            setFieldInActionFormToValue(actionForm, f, parameterValue);
+            for (Entry<String, String[]> parameterEntry : parametersMap.entrySet())
+            {
+                String error = plan.setAll(actionForm, parameterEntry.getKey(), parameterEntry.getValue(), context);
+                if (error != null)
+                {
+                    errors = addError(errors, parameterEntry.getKey(), error);
+                }
+            }
+        }
+        finally
+        {
+            context.finish();
         }
+        return errors;
     }
 
     /**
-     * Retourne l'attribut dont on spécifie le nom dans la classe spécifiée.
-     * @param c
-     *        Classe spécifiée.
-     * @param name
-     *        Nom de l'attribut souhaité.
-     * @return L'attribut de la classe indiquée avec le nom indiqué.
+     * Peuple l'ActionForm en lisant un corps application/x-www-form-urlencoded
+     * au fil du flux (voir FormBodyReader) : chaque paire est affectée dès
+     * qu'elle est décodée, sans construire la map des paramètres de la
+     * requête. Pour un attribut simple dont le paramètre est répété, seule la
+     * première valeur est affectée, comme avec la map des paramètres. Les
+     * valeurs d'un attribut tableau ou collection sont réunies jusqu'à la fin
+     * du flux, car son setter les reçoit toutes : elles restent en mémoire
+     * jusque-là.
+     * @param actionForm
+     *        ActionForm dont on doit setter les attributs.
+     * @param body
+     *        Le flux du corps de la requête.
+     * @param charset
+     *        Le jeu de caractères des valeurs.
+     * @param maxParameters
+     *        Nombre maximal de paramètres.
+     * @param maxValueLength
+     *        Nombre maximal d'octets d'un nom ou d'une valeur décodés.
+     * @return Les erreurs de champ, par nom de paramètre ; une map vide s'il
+     *         n'y en a pas.
+     * @throws IOException
+     *         Si le corps ne peut être lu.
      */
-    private Field getFieldInClassByName(Class<?> c, String name)
+    public Map<String, String> populateBeanFromBody(Object actionForm, InputStream body, Charset charset, int maxParameters, int maxValueLength) throws IOException
     {
-        Field f;
+        BindingPlan plan = PLANS.get(actionForm.getClass());
+        Map<String, String> errors = Collections.emptyMap();
+        Map<String, List<String>> multiValues = null;
+        Set<String> boundNames = null;
+        FormBodyReader reader = new FormBodyReader(body, charset, maxParameters, maxValueLength);
+        BindingContext context = new BindingContext(maxPathElements);
+        String previousName = null;
+        boolean multiValued = false;
         try
         {
-            f = c.getDeclaredField(name);
-        }
-        catch (NoSuchFieldException e)
-        {
-            throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The name " + name + " provided to a form input has not matching field in the ActionForm ");
+            while (reader.next())
+            {
+                String name = reader.name();
+                if (!name.equals(previousName))
+                {
+                    // un nom répété, tel que tags=a&tags=b, ne consulte le
+                    // plan qu'une fois
+                    multiValued = plan.isMultiValued(name);
+                    previousName = name;
+                }
+                if (multiValued)
+                {
+                    if (multiValues == null)
+                    {
+                        multiValues = new LinkedHashMap<String, List<String>>();
+                    }
+                    List<String> values = multiValues.get(name);
+                    if (values == null)
+                    {
+                        values = new ArrayList<String>();
+                        multiValues.put(name, values);
+                    }
+                    values.add(reader.value());
+                }
+                else
+                {
+                    if (boundNames == null)
+                    {
+                        boundNames = new HashSet<String>();
+                    }
+                    if (boundNames.add(name))
+                    {
+                        String error = plan.set(actionForm, name, reader.value(), context);
+                        if (error != null)
+                        {
+                            errors = addError(errors, name, error);
+                        }
+                    }
+                }
+            }
+            if (multiValues != null)
+            {
+                for (Entry<String, List<String>> entry : multiValues.entrySet())
+                {
+                    List<String> values = entry.getValue();
+                    String error = plan.setAll(actionForm, entry.getKey(), values.toArray(new String[values.size()]), context);
+                    if (error != null)
+                    {
+                        errors = addError(errors, entry.getKey(), error);
+                    }
+                }
+            }
         }
-        catch (SecurityException e)
+        finally
         {
-            throw new SecurityManagerRuleForbidAccessToFieldException("A rule set with the Security Manager forbid access to the " + name + " field in the " + c.getCanonicalName() + " actionForm." + "\n" + e.getMessage());
+            context.finish();
         }
-        return f;
+        return errors;
     }
 
     /**
-     * Invoke le setter de l'attribut indiqué de l'objet indiqué à la valeur
-     * indiquée.
+     * Méthode qui va setter les atributs de l'ActionForm avec les variables
+     * d'un url-pattern tel que /order/{id}/edit.do. Les valeurs sont lues
+     * directement dans l'url et passent par les mêmes setters que les
+     * paramètres de la requête.
      * @param actionForm
-     *        ActionForm contenant l'attribut à setter.
-     * @param f
-     *        Attribut à setter
-     * @param value
-     *        Valeur à attribuer à l'attribut.
+     *        ActionForm dont on doit setter les attributs.
+     * @param template
+     *        Le modèle de l'url-pattern de l'action demandée.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @return Les erreurs de champ, par nom de variable ; une map vide s'il
+     *         n'y en a pas.
      */
-    private void setFieldInActionFormToValue(Object actionForm, Field f, String value)
+    public Map<String, String> populateBeanFromPath(Object actionForm, PathTemplate template, String urlPathInfo)
     {
-        String setterName = "set" + f.getName().substring(0, 1).toUpperCase() + f.getName().substring(1, f.getName().length());
-        Class<?> c = actionForm.getClass();
-        Class<?>[] parameterTypes = new Class[]
-        {
-            f.getType()
-        };
-        Object[] parameterValues = new Object[]
-        {
-            value
-        };
-        Method setter;
-        try
-        {
-            setter = c.getMethod(setterName, parameterTypes);
-            setter.invoke(actionForm, parameterValues);
-        }
-        catch (NoSuchMethodException e)
-        {
-            throw new NoSetterMethodFoundForProvidedFormInputNameException("The ActionForm " + c.getCanonicalName() + " field " + f.getName() + " does not have a setter method matching is name. The convention for a field named myField is to call the setter method setMyField. Please check the setter method name." + "\n" + e.getMessage());
-        }
-        catch (SecurityException e)
+        Map<String, String> errors = Collections.emptyMap();
+        int[] bounds = template.match(urlPathInfo);
+        if (bounds == null)
         {
-            logger.error("A rule set with the Security Manager forbid access to the " + setterName + " method in the " + c.getCanonicalName() + " actionForm." + "\n" + e.getMessage());
+            return errors;
         }
-        catch (IllegalAccessException e)
+        BindingPlan plan = PLANS.get(actionForm.getClass());
+        BindingContext context = new BindingContext(maxPathElements);
+        try
         {
-            logger.error("The actionForm " + c.getCanonicalName() + " setter method " + setterName + " can' be accessed" + "\n" + e.getMessage());
+            for (int i = 0; i < template.getVariableCount(); i++)
+            {
+                String error = plan.set(actionForm, template.getVariableName(i), urlPathInfo.substring(bounds[2 * i], bounds[2 * i + 1]), context);
+                if (error != null)
+                {
+                    errors = addError(errors, template.getVariableName(i), error);
+                }
+            }
         }
-        catch (IllegalArgumentException e)
+        finally
         {
-            logger.error(e.getMessage());
+            context.finish();
         }
-        catch (InvocationTargetException e)
+        return errors;
+    }
+
+    /**
+     * Ajoute une erreur de champ. La map n'est créée qu'à la première erreur :
+     * un formulaire valide n'en alloue aucune.
+     * @param errors
+     *        Les erreurs déjà relevées, ou la map vide partagée.
+     * @param name
+     *        Le nom de l'attribut.
+     * @param error
+     *        Le message de l'erreur.
+     * @return La map des erreurs, complétée.
+     */
+    private static Map<String, String> addError(Map<String, String> errors, String name, String error)
+    {
+        Map<String, String> result = errors;
+        if (result.isEmpty())
         {
-            logger.error(e.getMessage());
+            result = new LinkedHashMap<String, String>();
         }
+        result.put(name, error);
+        return result;
     }
-
 }
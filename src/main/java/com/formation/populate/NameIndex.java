@@ -0,0 +1,219 @@
+package com.formation.populate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Hachage parfait minimal des noms d'attributs d'une classe d'ActionForm :
+ * chaque nom a sa propre case dans un tableau de la taille exacte de
+ * l'ensemble. Un nom de paramètre est accepté ou refusé par deux hachages de
+ * ses caractères et une comparaison, quel que soit le nombre d'attributs, et
+ * sans exception ni réflexion pour un nom inconnu.
+ * <p>
+ * La construction suit la méthode « hash and displace » : les noms sont
+ * répartis dans des groupes par un premier hachage, puis, du plus grand groupe
+ * au plus petit, on cherche pour chaque groupe la graine d'un second hachage
+ * qui envoie tous ses noms dans des cases encore libres.
+ * </p>
+ * @author filippo
+ */
+final class NameIndex
+{
+    /**
+     * Base de départ du hachage FNV-1a.
+     */
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    /**
+     * Multiplicateur du hachage FNV-1a.
+     */
+    private static final int FNV_PRIME = 0x01000193;
+    /**
+     * Multiplicateur qui disperse les graines successives.
+     */
+    private static final int SEED_SPREAD = 0x9E3779B9;
+    /**
+     * Décalage qui ramène les bits de poids fort du hash dans ses bits de
+     * poids faible.
+     */
+    private static final int HASH_SPREAD_SHIFT = 16;
+    /**
+     * Nombre de graines essayées pour un groupe avant d'abandonner.
+     */
+    private static final int MAX_SEED = 1 << 20;
+    /**
+     * Les noms, chacun dans sa case.
+     */
+    private final String[] names;
+    /**
+     * La graine de chaque groupe.
+     */
+    private final int[] seeds;
+
+    /**
+     * Constructeur qui calcule le hachage d'un ensemble de noms.
+     * @param keys
+     *        Les noms, distincts.
+     */
+    NameIndex(String[] keys)
+    {
+        int size = keys.length;
+        this.names = new String[size];
+        this.seeds = new int[size];
+        List<List<String>> buckets = new ArrayList<List<String>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            buckets.add(new ArrayList<String>());
+        }
+        for (String key : keys)
+        {
+            buckets.get(hash(key, key.length(), 0) % size).add(key);
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = i;
+        }
+        final List<List<String>> sizes = buckets;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return sizes.get(b).size() - sizes.get(a).size();
+            }
+        });
+        for (Integer bucket : order)
+        {
+            if (!buckets.get(bucket).isEmpty())
+            {
+                seeds[bucket] = place(buckets.get(bucket));
+            }
+        }
+    }
+
+    /**
+     * Cherche la graine qui place tous les noms d'un groupe dans des cases
+     * libres, et les y place.
+     * @param bucket
+     *        Les noms du groupe.
+     * @return La graine.
+     */
+    private int place(List<String> bucket)
+    {
+        int[] slots = new int[bucket.size()];
+        for (int seed = 1; seed < MAX_SEED; seed++)
+        {
+            if (fits(bucket, seed, slots))
+            {
+                for (int i = 0; i < slots.length; i++)
+                {
+                    names[slots[i]] = bucket.get(i);
+                }
+                return seed;
+            }
+        }
+        throw new IllegalStateException("No perfect hash found for the names " + bucket);
+    }
+
+    /**
+     * Indique si une graine place les noms d'un groupe dans des cases libres et
+     * distinctes.
+     * @param bucket
+     *        Les noms du groupe.
+     * @param seed
+     *        La graine essayée.
+     * @param slots
+     *        Reçoit la case de chaque nom.
+     * @return Vrai si la graine convient.
+     */
+    private boolean fits(List<String> bucket, int seed, int[] slots)
+    {
+        for (int i = 0; i < slots.length; i++)
+        {
+            String key = bucket.get(i);
+            slots[i] = hash(key, key.length(), seed) % names.length;
+            if (names[slots[i]] != null)
+            {
+                return false;
+            }
+            for (int j = 0; j < i; j++)
+            {
+                if (slots[j] == slots[i])
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * La case d'un nom, ou du début d'un nom de paramètre : pour lines[3].qty,
+     * la case de lines.
+     * @param name
+     *        Le nom de paramètre.
+     * @param length
+     *        Le nombre de caractères du nom d'attribut au début du nom de
+     *        paramètre.
+     * @return La case, ou -1 si le nom n'est pas celui d'un attribut.
+     */
+    int indexOf(String name, int length)
+    {
+        if (names.length == 0)
+        {
+            return -1;
+        }
+        int seed = seeds[hash(name, length, 0) % names.length];
+        int slot = hash(name, length, seed) % names.length;
+        String candidate = names[slot];
+        if (candidate.length() == length && name.startsWith(candidate))
+        {
+            return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Le nombre de noms.
+     * @return La taille de l'index.
+     */
+    int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * Le nom d'une case.
+     * @param slot
+     *        La case.
+     * @return Le nom.
+     */
+    String nameAt(int slot)
+    {
+        return names[slot];
+    }
+
+    /**
+     * Hachage FNV-1a du début d'une chaîne, avec une graine.
+     * @param s
+     *        La chaîne.
+     * @param length
+     *        Le nombre de caractères hachés.
+     * @param seed
+     *        La graine, 0 pour le choix du groupe.
+     * @return Le hash, positif.
+     */
+    private static int hash(String s, int length, int seed)
+    {
+        int h = FNV_OFFSET ^ (seed * SEED_SPREAD);
+        for (int i = 0; i < length; i++)
+        {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> HASH_SPREAD_SHIFT;
+        return h & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,814 @@
+package com.formation.populate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.formation.exceptions.runtime.NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException;
+import com.formation.exceptions.runtime.NoGetterMethodFoundForProvidedFormInputNameException;
+import com.formation.exceptions.runtime.NoSetterMethodFoundForProvidedFormInputNameException;
+import com.formation.exceptions.runtime.SecurityManagerRuleForbidAccessToFieldException;
+import com.formation.exceptions.runtime.ValueCannotBeConvertedException;
+import com.formation.factory.Factory;
+
+/**
+ * Chemin de propriété compilé pour une classe d'ActionForm, tel que
+ * address.city ou lines[].qty : la chaîne des getters et setters de chaque
+ * segment, cherchés une seule fois. Le chemin est compilé sans ses indices
+ * (la forme lines[].qty sert pour lines[0].qty comme pour lines[3].qty), qui
+ * sont passés à chaque lecture ou affectation.
+ * <p>
+ * Un segment indexé désigne un élément d'une List ou d'un tableau. À
+ * l'affectation, les objets intermédiaires null sont créés par la Factory,
+ * les List par une ArrayList, et les List et tableaux trop courts sont
+ * agrandis jusqu'à l'indice demandé, dans la limite des éléments qu'une
+ * requête peut créer (voir BindingContext). Le dernier segment, s'il n'est pas
+ * indexé, est peuplé par le plan de sa classe (voir BindingPlan), avec les
+ * mêmes conversions qu'un attribut de l'ActionForm.
+ * </p>
+ * @author filippo
+ */
+final class PropertyPath
+{
+    /**
+     * Nombre maximal de segments d'un chemin : les noms de paramètres viennent
+     * de la requête, un chemin sans limite sur une classe qui se référence
+     * elle-même aurait autant de formes compilées que de profondeurs.
+     */
+    static final int MAX_DEPTH = 8;
+    /**
+     * Plus grand indice accepté, pour qu'un paramètre lines[99999999].qty
+     * n'agrandisse pas une List à sa mesure.
+     */
+    static final int MAX_INDEX = 9999;
+    /**
+     * Indice d'un segment non indexé.
+     */
+    static final int NO_INDEX = -1;
+    /**
+     * Base des indices.
+     */
+    private static final int RADIX = 10;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(PropertyPath.class);
+    /**
+     * La forme du chemin, sans ses indices.
+     */
+    private final String shape;
+    /**
+     * Les segments du chemin.
+     */
+    private final Segment[] segments;
+    /**
+     * Vrai si chaque segment à traverser pour une affectation a un getter.
+     */
+    private final boolean writable;
+
+    /**
+     * Constructeur qui compile une forme de chemin pour une classe.
+     * @param rootClass
+     *        La classe de l'ActionForm.
+     * @param pShape
+     *        La forme du chemin, rendue par parse.
+     */
+    PropertyPath(Class<?> rootClass, String pShape)
+    {
+        this.shape = pShape;
+        String[] parts = pShape.split("\\.");
+        this.segments = new Segment[parts.length];
+        Class<?> owner = rootClass;
+        for (int i = 0; i < parts.length; i++)
+        {
+            boolean indexed = parts[i].endsWith("[]");
+            String name = parts[i];
+            if (indexed)
+            {
+                name = name.substring(0, name.length() - 2);
+            }
+            segments[i] = new Segment(owner, name, indexed);
+            owner = segments[i].valueClass;
+            if (i < parts.length - 1 && (owner.isPrimitive() || owner.isArray() || owner == String.class || owner == Object.class))
+            {
+                throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The path " + pShape + " provided to a form input cannot be followed after " + parts[i] + " in the ActionForm " + rootClass.getCanonicalName());
+            }
+        }
+        boolean withGetters = true;
+        for (int i = 0; i < segments.length; i++)
+        {
+            if (segments[i].getter == null && (i < segments.length - 1 || segments[i].indexed))
+            {
+                withGetters = false;
+            }
+        }
+        this.writable = withGetters;
+    }
+
+    /**
+     * Indique si le dernier segment est un attribut tableau ou collection,
+     * qui reçoit toutes les valeurs du paramètre.
+     * @return Vrai si les valeurs doivent être réunies avant d'être
+     *         affectées.
+     */
+    boolean isMultiValued()
+    {
+        Segment leaf = segments[segments.length - 1];
+        return !leaf.indexed && FormFiller.planOf(leaf.owner).isMultiValued(leaf.name);
+    }
+
+    /**
+     * Indique si le chemin peut être affecté : chaque segment à traverser a un
+     * getter. Un setter manquant n'est constaté qu'à l'affectation, quand un
+     * objet doit être créé ou un tableau agrandi.
+     * @return Vrai si set peut suivre le chemin.
+     */
+    boolean isWritable()
+    {
+        return writable;
+    }
+
+    /**
+     * Découpe un nom de paramètre en sa forme et ses indices.
+     * @param name
+     *        Le nom, tel que lines[3].qty.
+     * @param indices
+     *        Reçoit l'indice de chaque segment, ou NO_INDEX ; de longueur
+     *        MAX_DEPTH.
+     * @return La forme, telle que lines[].qty, ou null si le nom n'est pas un
+     *         chemin valide ou dépasse MAX_DEPTH segments ou MAX_INDEX.
+     */
+    static String parse(String name, int[] indices)
+    {
+        StringBuilder shape = new StringBuilder(name.length());
+        int length = name.length();
+        int depth = 0;
+        int i = 0;
+        while (i < length)
+        {
+            int start = i;
+            while (i < length && name.charAt(i) != '.' && name.charAt(i) != '[')
+            {
+                i++;
+            }
+            if (i == start || depth == MAX_DEPTH)
+            {
+                return null;
+            }
+            shape.append(name, start, i);
+            indices[depth] = NO_INDEX;
+            if (i < length && name.charAt(i) == '[')
+            {
+                i++;
+                int digits = i;
+                int index = 0;
+                while (i < length && Character.digit(name.charAt(i), RADIX) >= 0)
+                {
+                    index = index * RADIX + Character.digit(name.charAt(i), RADIX);
+                    if (index > MAX_INDEX)
+                    {
+                        return null;
+                    }
+                    i++;
+                }
+                if (i == digits || i == length || name.charAt(i) != ']')
+                {
+                    return null;
+                }
+                i++;
+                indices[depth] = index;
+                shape.append("[]");
+            }
+            depth++;
+            if (i < length)
+            {
+                if (name.charAt(i) != '.' || i == length - 1)
+                {
+                    return null;
+                }
+                shape.append('.');
+                i++;
+            }
+        }
+        return shape.toString();
+    }
+
+    /**
+     * Lit la valeur au bout du chemin.
+     * @param root
+     *        L'ActionForm.
+     * @param indices
+     *        Les indices des segments.
+     * @return La valeur, ou null si un objet intermédiaire est null ou si un
+     *         indice dépasse sa List ou son tableau.
+     */
+    Object get(Object root, int[] indices)
+    {
+        Object current = root;
+        try
+        {
+            for (int i = 0; i < segments.length && current != null; i++)
+            {
+                current = segments[i].read(current, indices[i]);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            // comme avec Method.invoke, une exception du getter est tracée
+            logger.error(e.getMessage());
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * Affecte les valeurs d'un paramètre au bout du chemin, en créant les
+     * objets intermédiaires manquants. Le chemin doit être affectable (voir
+     * isWritable). Si un objet doit être créé ou un tableau agrandi sans
+     * setter pour l'affecter, le paramètre est refusé par le plan de
+     * l'ActionForm, sans exception en mode tolérant.
+     * @param root
+     *        L'ActionForm.
+     * @param name
+     *        Le nom du paramètre.
+     * @param indices
+     *        Les indices des segments.
+     * @param values
+     *        Les valeurs du paramètre.
+     * @param context
+     *        L'état du peuplement, qui compte les éléments créés.
+     * @return Le message de l'erreur de champ si une valeur ne peut être
+     *         convertie, null sinon.
+     */
+    String set(Object root, String name, int[] indices, String[] values, BindingContext context)
+    {
+        Object current = root;
+        int last = segments.length - 1;
+        try
+        {
+            for (int i = 0; i < last; i++)
+            {
+                current = segments[i].element(current, indices[i], context);
+                if (current == null)
+                {
+                    return FormFiller.planOf(root.getClass()).reject(name);
+                }
+            }
+            Segment leaf = segments[last];
+            if (!leaf.indexed)
+            {
+                return FormFiller.planOf(current.getClass()).setAll(current, leaf.name, values, context);
+            }
+            if (leaf.elementConverter == null)
+            {
+                logger.error("The elements of the property " + leaf.name + " of the class " + leaf.owner.getCanonicalName() + " are of a type that cannot be converted from a String.");
+                return null;
+            }
+            Object element;
+            try
+            {
+                element = leaf.convert(values[0]);
+            }
+            catch (ValueCannotBeConvertedException e)
+            {
+                return PropertySetter.invalidValue(leaf.name);
+            }
+            if (element == null)
+            {
+                return null;
+            }
+            Object container = leaf.container(current, indices[last], context);
+            if (container == null)
+            {
+                return FormFiller.planOf(root.getClass()).reject(name);
+            }
+            leaf.setElementAt(container, indices[last], element);
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            // comme avec Method.invoke, une exception d'un getter ou d'un
+            // setter est tracée
+            logger.error(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Vérifie que la valeur au bout du chemin peut être lue et affectée, pour
+     * les tags qui affichent un champ de saisie.
+     */
+    void checkReadableAndWritable()
+    {
+        for (Segment segment : segments)
+        {
+            segment.checkGetter();
+        }
+        Segment leaf = segments[segments.length - 1];
+        if (!leaf.indexed)
+        {
+            leaf.checkSetter();
+        }
+    }
+
+    /**
+     * Un segment compilé : une propriété d'une classe, indexée ou non.
+     * @author filippo
+     */
+    private final class Segment
+    {
+        /**
+         * La classe qui porte la propriété.
+         */
+        private final Class<?> owner;
+        /**
+         * Le nom de la propriété.
+         */
+        private final String name;
+        /**
+         * Vrai si le segment désigne un élément de la propriété.
+         */
+        private final boolean indexed;
+        /**
+         * Le type de la propriété.
+         */
+        private final Class<?> propertyType;
+        /**
+         * Le type de la valeur du segment : celui de la propriété, ou de ses
+         * éléments si le segment est indexé.
+         */
+        private final Class<?> valueClass;
+        /**
+         * Le getter, de type (Object)Object, ou null.
+         */
+        private final MethodHandle getter;
+        /**
+         * Le setter, de type (Object,Object)void, ou null.
+         */
+        private final MethodHandle setter;
+        /**
+         * Convertit la valeur affectée à un élément, de type (String)Object,
+         * ou null si le segment n'est pas indexé ou si le type des éléments
+         * n'a pas de conversion.
+         */
+        private final MethodHandle elementConverter;
+
+        /**
+         * Constructeur qui cherche le getter et le setter publics de la
+         * propriété.
+         * @param pOwner
+         *        La classe qui porte la propriété.
+         * @param pName
+         *        Le nom de la propriété.
+         * @param pIndexed
+         *        Vrai si le segment désigne un élément de la propriété.
+         */
+        Segment(Class<?> pOwner, String pName, boolean pIndexed)
+        {
+            this.owner = pOwner;
+            this.name = pName;
+            this.indexed = pIndexed;
+            String capitalized = pName.substring(0, 1).toUpperCase() + pName.substring(1, pName.length());
+            Method getterMethod = findMethod(pOwner, "get" + capitalized, null);
+            if (getterMethod == null)
+            {
+                getterMethod = findMethod(pOwner, "is" + capitalized, null);
+            }
+            Method setterMethod = null;
+            Type genericType = null;
+            if (getterMethod != null)
+            {
+                this.propertyType = getterMethod.getReturnType();
+                genericType = getterMethod.getGenericReturnType();
+                setterMethod = findMethod(pOwner, "set" + capitalized, propertyType);
+            }
+            else
+            {
+                setterMethod = findMethod(pOwner, "set" + capitalized, Object.class);
+                if (setterMethod == null)
+                {
+                    throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The path " + shape + " provided to a form input has no property " + pName + " in the class " + pOwner.getCanonicalName());
+                }
+                this.propertyType = setterMethod.getParameterTypes()[0];
+                genericType = setterMethod.getGenericParameterTypes()[0];
+            }
+            this.getter = unreflect(getterMethod, MethodType.methodType(Object.class, Object.class));
+            this.setter = unreflect(setterMethod, MethodType.methodType(void.class, Object.class, Object.class));
+            if (!pIndexed)
+            {
+                this.valueClass = propertyType;
+                this.elementConverter = null;
+            }
+            else
+            {
+                this.valueClass = elementType(genericType);
+                this.elementConverter = elementConverter(valueClass);
+            }
+        }
+
+        /**
+         * Le type des éléments d'une propriété indexée.
+         * @param genericType
+         *        Le type générique de la propriété.
+         * @return Le type des éléments, Object pour une List brute ou
+         *         paramétrée par un joker.
+         */
+        private Class<?> elementType(Type genericType)
+        {
+            if (propertyType.isArray())
+            {
+                return propertyType.getComponentType();
+            }
+            if (!List.class.isAssignableFrom(propertyType))
+            {
+                throw new NameSuppliedInFormInputDoesNotMatchAnyActionFormFieldException("The path " + shape + " provided to a form input indexes the property " + name + " of the class " + owner.getCanonicalName() + ", which is neither a List nor an array.");
+            }
+            if (genericType instanceof ParameterizedType)
+            {
+                Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (argument instanceof Class)
+                {
+                    return (Class<?>) argument;
+                }
+            }
+            return Object.class;
+        }
+
+        /**
+         * La conversion d'une valeur affectée à un élément.
+         * @param type
+         *        Le type des éléments.
+         * @return La conversion, de type (String)Object, ou null.
+         */
+        private MethodHandle elementConverter(Class<?> type)
+        {
+            if (type == String.class || type == Object.class)
+            {
+                return MethodHandles.identity(String.class).asType(MethodType.methodType(Object.class, String.class));
+            }
+            MethodHandle converter = Converters.find(type);
+            if (converter == null)
+            {
+                return null;
+            }
+            return converter.asType(MethodType.methodType(Object.class, String.class));
+        }
+
+        /**
+         * Lit la valeur du segment.
+         * @param current
+         *        L'objet qui porte la propriété.
+         * @param index
+         *        L'indice, si le segment est indexé.
+         * @return La valeur, ou null.
+         * @throws Throwable
+         *         L'exception du getter.
+         */
+        Object read(Object current, int index) throws Throwable
+        {
+            checkGetter();
+            Object value = (Object) getter.invokeExact(current);
+            if (!indexed || value == null)
+            {
+                return value;
+            }
+            if (value instanceof List)
+            {
+                List<?> list = (List<?>) value;
+                if (index < list.size())
+                {
+                    return list.get(index);
+                }
+                return null;
+            }
+            if (index < Array.getLength(value))
+            {
+                return Array.get(value, index);
+            }
+            return null;
+        }
+
+        /**
+         * La valeur du segment, créée si elle est null, pour y descendre.
+         * @param current
+         *        L'objet qui porte la propriété.
+         * @param index
+         *        L'indice, si le segment est indexé.
+         * @param context
+         *        L'état du peuplement, qui compte les cases ajoutées.
+         * @return La valeur, ou null si elle devait être créée et que la
+         *         propriété n'a pas de setter.
+         * @throws Throwable
+         *         L'exception d'un getter ou d'un setter.
+         */
+        Object element(Object current, int index, BindingContext context) throws Throwable
+        {
+            if (!indexed)
+            {
+                Object value = (Object) getterOrFail().invokeExact(current);
+                if (value == null)
+                {
+                    if (setter == null)
+                    {
+                        return null;
+                    }
+                    value = Factory.getInstance(propertyType);
+                    setter.invokeExact(current, value);
+                }
+                return value;
+            }
+            Object container = container(current, index, context);
+            if (container == null)
+            {
+                return null;
+            }
+            Object value = elementAt(container, index);
+            if (value == null)
+            {
+                value = Factory.getInstance(valueClass);
+                setElementAt(container, index, value);
+            }
+            return value;
+        }
+
+        /**
+         * Convertit une valeur reçue vers le type des éléments du segment,
+         * qui doit avoir une conversion.
+         * @param value
+         *        La valeur reçue.
+         * @return L'élément, ou null si la valeur est vide et que les éléments
+         *         ne sont pas des String.
+         * @throws Throwable
+         *         ValueCannotBeConvertedException si la valeur n'est pas
+         *         valide.
+         */
+        Object convert(String value) throws Throwable
+        {
+            String converted = value;
+            if (valueClass != String.class && valueClass != Object.class)
+            {
+                converted = value.trim();
+                if (converted.isEmpty())
+                {
+                    return null;
+                }
+            }
+            return (Object) elementConverter.invokeExact(converted);
+        }
+
+        /**
+         * La List ou le tableau de la propriété, créé s'il est null et agrandi
+         * jusqu'à l'indice. Un tableau est agrandi au moins du double de sa
+         * taille ; sa longueur utile est gardée par le contexte.
+         * @param current
+         *        L'objet qui porte la propriété.
+         * @param index
+         *        L'indice demandé.
+         * @param context
+         *        L'état du peuplement, qui compte les cases ajoutées.
+         * @return La List ou le tableau, ou null s'il devait être créé ou
+         *         agrandi et que la propriété n'a pas de setter.
+         * @throws Throwable
+         *         L'exception d'un getter ou d'un setter.
+         */
+        Object container(Object current, int index, BindingContext context) throws Throwable
+        {
+            Object container = (Object) getterOrFail().invokeExact(current);
+            if (propertyType.isArray())
+            {
+                int length = 0;
+                int capacity = 0;
+                if (container != null)
+                {
+                    length = context.lengthOf(container);
+                    capacity = Array.getLength(container);
+                }
+                if (index >= capacity && setter == null)
+                {
+                    return null;
+                }
+                if (index >= length)
+                {
+                    context.allocate(index + 1 - length);
+                }
+                if (index >= capacity)
+                {
+                    int larger = Math.max(index + 1, Math.min(2 * capacity, MAX_INDEX + 1));
+                    Object grown = Array.newInstance(valueClass, larger);
+                    if (container != null)
+                    {
+                        System.arraycopy(container, 0, grown, 0, length);
+                    }
+                    setter.invokeExact(current, grown);
+                    context.grown(container, grown, current, setter, index + 1);
+                    container = grown;
+                }
+                else
+                {
+                    context.touch(container, index);
+                }
+                return container;
+            }
+            if (container == null)
+            {
+                if (setter == null)
+                {
+                    return null;
+                }
+                container = createList(index + 1);
+                setter.invokeExact(current, container);
+            }
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) container;
+            if (list.size() <= index)
+            {
+                context.allocate(index + 1 - list.size());
+            }
+            while (list.size() <= index)
+            {
+                list.add(null);
+            }
+            return list;
+        }
+
+        /**
+         * Crée la List d'une propriété null.
+         * @param size
+         *        Le nombre d'éléments attendus.
+         * @return Une ArrayList, ou une instance du type de la propriété s'il
+         *         est concret.
+         */
+        private Object createList(int size)
+        {
+            if (propertyType.isAssignableFrom(ArrayList.class))
+            {
+                return new ArrayList<Object>(size);
+            }
+            return Factory.getInstance(propertyType);
+        }
+
+        /**
+         * Un élément d'une List ou d'un tableau.
+         * @param container
+         *        La List ou le tableau.
+         * @param index
+         *        L'indice.
+         * @return L'élément.
+         */
+        private Object elementAt(Object container, int index)
+        {
+            if (container instanceof List)
+            {
+                return ((List<?>) container).get(index);
+            }
+            return Array.get(container, index);
+        }
+
+        /**
+         * Affecte un élément d'une List ou d'un tableau.
+         * @param container
+         *        La List ou le tableau.
+         * @param index
+         *        L'indice.
+         * @param value
+         *        L'élément.
+         */
+        @SuppressWarnings("unchecked")
+        void setElementAt(Object container, int index, Object value)
+        {
+            if (container instanceof List)
+            {
+                ((List<Object>) container).set(index, value);
+            }
+            else
+            {
+                Array.set(container, index, value);
+            }
+        }
+
+        /**
+         * Lève l'exception d'une propriété sans getter.
+         */
+        void checkGetter()
+        {
+            if (getter == null)
+            {
+                throw new NoGetterMethodFoundForProvidedFormInputNameException("The class " + owner.getCanonicalName() + " property " + name + " of the path " + shape + " does not have a getter method matching his name. The convention for a field named myField is to call the getter method getMyField. Please check the getter method name or the field name.");
+            }
+        }
+
+        /**
+         * Lève l'exception d'une propriété sans setter.
+         */
+        void checkSetter()
+        {
+            if (setter == null)
+            {
+                throw new NoSetterMethodFoundForProvidedFormInputNameException("The class " + owner.getCanonicalName() + " property " + name + " of the path " + shape + " does not have a setter method matching his name. The convention for a field named myField is to call the setter method setMyField. Please check the setter method name or the field name.");
+            }
+        }
+
+        /**
+         * Le getter, qui doit exister.
+         * @return Le getter.
+         */
+        private MethodHandle getterOrFail()
+        {
+            checkGetter();
+            return getter;
+        }
+    }
+
+    /**
+     * Cherche une méthode publique d'instance, hors celles d'Object.
+     * @param c
+     *        La classe.
+     * @param methodName
+     *        Le nom de la méthode.
+     * @param parameterType
+     *        Le type de son unique paramètre, Object pour n'importe lequel,
+     *        ou null pour une méthode sans paramètre.
+     * @return La méthode, ou null si elle n'existe pas.
+     */
+    private static Method findMethod(Class<?> c, String methodName, Class<?> parameterType)
+    {
+        try
+        {
+            for (Method m : c.getMethods())
+            {
+                // getClass n'est pas une propriété : un chemin tel que
+                // class.classLoader ne doit pas atteindre le chargeur de
+                // classes
+                if (m.getName().equals(methodName) && m.getDeclaringClass() != Object.class && !Modifier.isStatic(m.getModifiers()) && matches(m, parameterType))
+                {
+                    return m;
+                }
+            }
+            return null;
+        }
+        catch (SecurityException e)
+        {
+            throw new SecurityManagerRuleForbidAccessToFieldException("A rule set with the Security Manager forbid access to the " + methodName + " method in the " + c.getCanonicalName() + " class." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Indique si les paramètres d'une méthode correspondent à ceux cherchés.
+     * @param m
+     *        La méthode.
+     * @param parameterType
+     *        Le type de son unique paramètre, Object pour n'importe lequel,
+     *        ou null pour une méthode sans paramètre.
+     * @return Vrai si la méthode correspond.
+     */
+    private static boolean matches(Method m, Class<?> parameterType)
+    {
+        Class<?>[] parameters = m.getParameterTypes();
+        if (parameterType == null)
+        {
+            return parameters.length == 0 && m.getReturnType() != void.class;
+        }
+        return parameters.length == 1 && (parameterType == Object.class || parameters[0] == parameterType);
+    }
+
+    /**
+     * Transforme une méthode trouvée en MethodHandle.
+     * @param m
+     *        La méthode, ou null.
+     * @param type
+     *        Le type du MethodHandle.
+     * @return Le MethodHandle, ou null si la méthode est null ou inaccessible.
+     */
+    private static MethodHandle unreflect(Method m, MethodType type)
+    {
+        if (m == null)
+        {
+            return null;
+        }
+        try
+        {
+            return MethodHandles.publicLookup().unreflect(m).asType(type);
+        }
+        catch (IllegalAccessException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.formation.populate;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.apache.log4j.Logger;
+
+import com.formation.exceptions.runtime.NoSetterMethodFoundForProvidedFormInputNameException;
+import com.formation.exceptions.runtime.ValueCannotBeConvertedException;
+
+/**
+ * Setter d'un attribut d'ActionForm, cherché une fois pour toutes à la
+ * construction du plan de la classe. Un attribut sans setter n'est une erreur
+ * que si un formulaire lui envoie une valeur : l'erreur est donc gardée et
+ * levée à l'affectation.
+ * <p>
+ * Si l'attribut n'est pas une String, la conversion de son type (voir
+ * Converters) est choisie à la construction et composée avec le setter ; une
+ * valeur qui ne peut être convertie devient une erreur de champ.
+ * </p>
+ * <p>
+ * Un attribut tableau, List, Set ou Collection reçoit toutes les valeurs du
+ * paramètre (cases à cocher, sélection multiple), chacune convertie vers le
+ * type de ses éléments. Un tableau de primitifs est rempli sans passer par
+ * leurs enveloppes.
+ * </p>
+ * @author filippo
+ */
+final class PropertySetter
+{
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(PropertySetter.class);
+    /**
+     * Facteur de charge des Set créés, celui par défaut de HashMap.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * La classe de l'ActionForm.
+     */
+    private final Class<?> formClass;
+    /**
+     * Le nom de l'attribut.
+     */
+    private final String fieldName;
+    /**
+     * Le nom du setter.
+     */
+    private final String setterName;
+    /**
+     * Le setter composé avec la conversion, de type (Object,String)void, ou
+     * null s'il n'existe pas, si le type de l'attribut n'a pas de conversion
+     * ou si l'attribut reçoit plusieurs valeurs.
+     */
+    private final MethodHandle setter;
+    /**
+     * Le setter sans conversion, de type (Object,Object)void, qui affecte null
+     * pour une valeur vide ou le tableau ou la collection construit, ou null si
+     * l'attribut est une String ou d'un type primitif.
+     */
+    private final MethodHandle objectSetter;
+    /**
+     * Vrai si le setter existe.
+     */
+    private final boolean setterFound;
+    /**
+     * Vrai si l'attribut n'est pas une String : la valeur est alors débarrassée
+     * de ses espaces, et une valeur vide laisse un attribut primitif inchangé.
+     */
+    private final boolean converted;
+    /**
+     * Vrai si l'attribut est un tableau ou une collection.
+     */
+    private final boolean multiValued;
+    /**
+     * Le type des éléments d'un attribut tableau, ou null.
+     */
+    private final Class<?> componentType;
+    /**
+     * Affecte un élément converti d'un tableau, de type
+     * (Object,int,String)void, ou null si l'attribut n'est pas un tableau ou
+     * si le type de ses éléments n'a pas de conversion.
+     */
+    private final MethodHandle elementSetter;
+    /**
+     * Convertit un élément d'une collection, de type (String)Object, ou null
+     * si l'attribut n'est pas une collection prise en charge.
+     */
+    private final MethodHandle elementConverter;
+    /**
+     * Vrai si la collection à créer est un Set, faux pour une List.
+     */
+    private final boolean createsSet;
+    /**
+     * Vrai si les éléments du tableau ou de la collection ne sont pas des
+     * String : chaque valeur est alors débarrassée de ses espaces, et les
+     * valeurs vides sont ignorées.
+     */
+    private final boolean elementsConverted;
+
+    /**
+     * Constructeur.
+     * @param pFormClass
+     *        La classe de l'ActionForm.
+     * @param pFieldName
+     *        Le nom de l'attribut.
+     * @param pSetterName
+     *        Le nom du setter.
+     * @param pSetter
+     *        Le setter tel que trouvé, de type (classe, type de
+     *        l'attribut)void, ou null s'il n'existe pas.
+     * @param genericType
+     *        Le type générique de l'attribut, qui donne le type des éléments
+     *        d'une collection.
+     */
+    PropertySetter(Class<?> pFormClass, String pFieldName, String pSetterName, MethodHandle pSetter, Type genericType)
+    {
+        this.formClass = pFormClass;
+        this.fieldName = pFieldName;
+        this.setterName = pSetterName;
+        this.setterFound = pSetter != null;
+        Class<?> type = String.class;
+        if (pSetter != null)
+        {
+            type = pSetter.type().parameterType(1);
+        }
+        this.converted = type != String.class;
+        this.multiValued = type.isArray() || Collection.class.isAssignableFrom(type);
+        MethodHandle convertingSetter = null;
+        MethodHandle arraySetter = null;
+        MethodHandle collectionConverter = null;
+        Class<?> elementType = null;
+        if (type == String.class)
+        {
+            convertingSetter = pSetter;
+        }
+        else if (type.isArray())
+        {
+            elementType = type.getComponentType();
+            arraySetter = arrayElementSetter(type);
+        }
+        else if (multiValued)
+        {
+            elementType = collectionElementType(genericType);
+            collectionConverter = collectionElementConverter(type, elementType);
+        }
+        else
+        {
+            MethodHandle converter = Converters.find(type);
+            if (converter != null)
+            {
+                convertingSetter = MethodHandles.filterArguments(pSetter, 1, converter);
+            }
+        }
+        if (convertingSetter != null)
+        {
+            convertingSetter = convertingSetter.asType(MethodType.methodType(void.class, Object.class, String.class));
+        }
+        MethodHandle setterOfObject = null;
+        if (pSetter != null && type != String.class && !type.isPrimitive())
+        {
+            setterOfObject = pSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+        this.setter = convertingSetter;
+        this.objectSetter = setterOfObject;
+        this.componentType = arrayComponent(type);
+        this.elementSetter = arraySetter;
+        this.elementConverter = collectionConverter;
+        this.createsSet = multiValued && !type.isAssignableFrom(ArrayList.class);
+        this.elementsConverted = elementType != null && elementType != String.class && elementType != Object.class;
+    }
+
+    /**
+     * Le type des éléments d'un tableau.
+     * @param type
+     *        Le type de l'attribut.
+     * @return Le type des éléments, ou null si l'attribut n'est pas un
+     *         tableau.
+     */
+    private static Class<?> arrayComponent(Class<?> type)
+    {
+        if (type.isArray())
+        {
+            return type.getComponentType();
+        }
+        return null;
+    }
+
+    /**
+     * Compose l'affectation d'un élément de tableau avec la conversion de son
+     * type : un int[] est rempli par Integer.parseInt, sans Integer.
+     * @param arrayType
+     *        Le type du tableau.
+     * @return L'affectation, de type (Object,int,String)void, ou null si le
+     *         type des éléments n'a pas de conversion.
+     */
+    private static MethodHandle arrayElementSetter(Class<?> arrayType)
+    {
+        Class<?> component = arrayType.getComponentType();
+        MethodHandle elementSetter = MethodHandles.arrayElementSetter(arrayType);
+        if (component != String.class)
+        {
+            MethodHandle converter = Converters.find(component);
+            if (converter == null)
+            {
+                return null;
+            }
+            elementSetter = MethodHandles.filterArguments(elementSetter, 2, converter);
+        }
+        return elementSetter.asType(MethodType.methodType(void.class, Object.class, int.class, String.class));
+    }
+
+    /**
+     * Le type des éléments d'une collection, lu dans son type générique.
+     * @param genericType
+     *        Le type générique de l'attribut.
+     * @return Le type des éléments, Object pour une collection brute ou
+     *         paramétrée par un joker.
+     */
+    private static Class<?> collectionElementType(Type genericType)
+    {
+        if (genericType instanceof ParameterizedType)
+        {
+            Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (argument instanceof Class)
+            {
+                return (Class<?>) argument;
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * La conversion des éléments d'une collection.
+     * @param type
+     *        Le type de l'attribut.
+     * @param elementType
+     *        Le type de ses éléments.
+     * @return La conversion, de type (String)Object, ou null si le framework
+     *         ne sait pas créer la collection ou convertir ses éléments.
+     */
+    private static MethodHandle collectionElementConverter(Class<?> type, Class<?> elementType)
+    {
+        if (!type.isAssignableFrom(ArrayList.class) && !type.isAssignableFrom(LinkedHashSet.class))
+        {
+            return null;
+        }
+        if (elementType == String.class || elementType == Object.class)
+        {
+            return MethodHandles.identity(String.class).asType(MethodType.methodType(Object.class, String.class));
+        }
+        MethodHandle converter = Converters.find(elementType);
+        if (converter == null)
+        {
+            return null;
+        }
+        return converter.asType(MethodType.methodType(Object.class, String.class));
+    }
+
+    /**
+     * Indique si l'attribut reçoit toutes les valeurs de son paramètre.
+     * @return Vrai pour un tableau ou une collection.
+     */
+    boolean isMultiValued()
+    {
+        return multiValued;
+    }
+
+    /**
+     * Affecte une valeur à l'attribut d'un ActionForm.
+     * @param actionForm
+     *        L'ActionForm.
+     * @param value
+     *        La valeur.
+     * @return Le message de l'erreur de champ si la valeur ne peut être
+     *         convertie vers le type de l'attribut, null sinon.
+     */
+    String set(Object actionForm, String value)
+    {
+        if (multiValued)
+        {
+            return setAll(actionForm, new String[] {value});
+        }
+        checkSetterFound();
+        if (setter == null)
+        {
+            logUnsupportedType();
+            return null;
+        }
+        try
+        {
+            if (!converted)
+            {
+                setter.invokeExact(actionForm, value);
+            }
+            else
+            {
+                String trimmed = value.trim();
+                if (!trimmed.isEmpty())
+                {
+                    setter.invokeExact(actionForm, trimmed);
+                }
+                else if (objectSetter != null)
+                {
+                    objectSetter.invokeExact(actionForm, (Object) null);
+                }
+            }
+        }
+        catch (ValueCannotBeConvertedException e)
+        {
+            return invalidValue(fieldName);
+        }
+        catch (Throwable e)
+        {
+            // comme avec Method.invoke, une exception du setter est tracée
+            logger.error(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Affecte toutes les valeurs d'un paramètre à l'attribut d'un ActionForm.
+     * Un attribut qui ne reçoit qu'une valeur reçoit la première.
+     * @param actionForm
+     *        L'ActionForm.
+     * @param values
+     *        Les valeurs, dans l'ordre de la requête.
+     * @return Le message de l'erreur de champ si une valeur ne peut être
+     *         convertie vers le type des éléments de l'attribut, null sinon.
+     */
+    String setAll(Object actionForm, String[] values)
+    {
+        if (!multiValued)
+        {
+            return set(actionForm, values[0]);
+        }
+        checkSetterFound();
+        if (elementSetter == null && elementConverter == null)
+        {
+            logUnsupportedType();
+            return null;
+        }
+        try
+        {
+            Object all;
+            if (componentType == String.class)
+            {
+                all = values.clone();
+            }
+            else if (componentType != null)
+            {
+                all = Array.newInstance(componentType, count(values));
+                int index = 0;
+                for (String value : values)
+                {
+                    String current = value.trim();
+                    if (!current.isEmpty())
+                    {
+                        elementSetter.invokeExact(all, index, current);
+                        index++;
+                    }
+                }
+            }
+            else
+            {
+                Collection<Object> collection = createCollection(count(values));
+                for (String value : values)
+                {
+                    String current = value;
+                    if (elementsConverted)
+                    {
+                        current = value.trim();
+                    }
+                    if (!elementsConverted || !current.isEmpty())
+                    {
+                        collection.add((Object) elementConverter.invokeExact(current));
+                    }
+                }
+                all = collection;
+            }
+            objectSetter.invokeExact(actionForm, all);
+        }
+        catch (ValueCannotBeConvertedException e)
+        {
+            return invalidValue(fieldName);
+        }
+        catch (Throwable e)
+        {
+            // comme avec Method.invoke, une exception du setter est tracée
+            logger.error(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Compte les valeurs à affecter : toutes pour des éléments String, les
+     * valeurs non vides sinon.
+     * @param values
+     *        Les valeurs reçues.
+     * @return Le nombre d'éléments du tableau ou de la collection.
+     */
+    private int count(String[] values)
+    {
+        if (!elementsConverted)
+        {
+            return values.length;
+        }
+        int count = 0;
+        for (String value : values)
+        {
+            if (!value.trim().isEmpty())
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Crée la collection à affecter, dimensionnée pour ses éléments.
+     * @param size
+     *        Le nombre d'éléments.
+     * @return Une ArrayList, ou un LinkedHashSet qui garde l'ordre de la
+     *         requête.
+     */
+    private Collection<Object> createCollection(int size)
+    {
+        if (createsSet)
+        {
+            return new LinkedHashSet<Object>((int) (size / LOAD_FACTOR) + 1);
+        }
+        return new ArrayList<Object>(size);
+    }
+
+    /**
+     * Lève l'exception d'un attribut sans setter.
+     */
+    private void checkSetterFound()
+    {
+        if (!setterFound)
+        {
+            throw new NoSetterMethodFoundForProvidedFormInputNameException("The ActionForm " + formClass.getCanonicalName() + " field " + fieldName + " does not have a setter method matching is name. The convention for a field named myField is to call the setter method setMyField. Please check the setter method name.");
+        }
+    }
+
+    /**
+     * Trace un setter dont le type ne peut être obtenu à partir de String.
+     */
+    private void logUnsupportedType()
+    {
+        logger.error("The actionForm " + formClass.getCanonicalName() + " setter method " + setterName + " does not accept a value of a type that can be converted from a String.");
+    }
+
+    /**
+     * Le message d'erreur de champ d'une valeur qui ne peut être convertie. Il
+     * est affiché par les pages : il ne reprend pas la valeur reçue, choisie
+     * par le client.
+     * @param name
+     *        Le nom du champ.
+     * @return Le message.
+     */
+    static String invalidValue(String name)
+    {
+        return "La valeur n'est pas valide pour le champ " + name + ".";
+    }
+}
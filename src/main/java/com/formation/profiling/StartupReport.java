@@ -0,0 +1,432 @@
+package com.formation.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import com.formation.scanning.ScanListener;
+
+/**
+ * Rapport de la lecture de la configuration au démarrage : durée de chaque
+ * phase, statistiques de chaque package et de chaque emplacement (dossier ou
+ * jar) parcouru, nombre de classes lues et chargées, octets lus. Il n'est
+ * établi que si la propriété startupReport est activée ; il est alors tracé et
+ * publié comme MBean sous le nom com.formation.easyweb:type=StartupReport.
+ * <p>
+ * Le temps d'un emplacement est celui du calcul de son empreinte et de la
+ * lecture de ses fichiers class, cumulé sur tous les threads du parcours : la
+ * somme des emplacements peut donc dépasser la durée de la phase de scan.
+ * </p>
+ * @author filippo
+ */
+public final class StartupReport implements StartupReportMBean, ScanListener
+{
+    /**
+     * Phase de lecture et de vérification de l'instantané de la
+     * configuration.
+     */
+    public static final String PHASE_SNAPSHOT = "snapshot";
+    /**
+     * Phase de lecture en parallèle des fragments de configuration des jars.
+     */
+    public static final String PHASE_FRAGMENTS = "xml: fragments";
+    /**
+     * Phase de lecture des packages à scanner dans le fichier new-style.
+     */
+    public static final String PHASE_PACKAGES_TO_SCAN = "xml: packages to scan";
+    /**
+     * Phase de lecture de l'index des classes annotées.
+     */
+    public static final String PHASE_ANNOTATION_INDEX = "annotation index";
+    /**
+     * Phase de parcours des packages non indexés.
+     */
+    public static final String PHASE_SCAN = "scan";
+    /**
+     * Phase de chargement des classes annotées trouvées par le scanner.
+     */
+    public static final String PHASE_CLASS_LOADING = "class loading";
+    /**
+     * Phase de lecture des Actions et ActionForms du fichier old-style.
+     */
+    public static final String PHASE_ACTIONS_AND_FORMS_FILE = "xml: actions and forms";
+    /**
+     * Phase de construction de la table de routage.
+     */
+    public static final String PHASE_ROUTING = "routing";
+    /**
+     * Domaine JMX du framework.
+     */
+    private static final String DOMAIN = "com.formation.easyweb";
+    /**
+     * Nombre de nanosecondes par milliseconde.
+     */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    /**
+     * Source des classes d'un emplacement parcouru.
+     */
+    private static final String SOURCE_SCAN = "scanned";
+    /**
+     * Source des classes d'un emplacement repris du cache.
+     */
+    private static final String SOURCE_CACHE = "cached";
+    /**
+     * Source des classes d'un package lu dans l'index.
+     */
+    private static final String SOURCE_INDEX = "indexed";
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(StartupReport.class);
+    /**
+     * Durée cumulée de chaque phase en nanosecondes, dans l'ordre où elles
+     * ont eu lieu.
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+    /**
+     * Statistiques de chaque emplacement, dans l'ordre des packages.
+     */
+    private final List<LocationStatistics> locations = new ArrayList<LocationStatistics>();
+    /**
+     * Nombre de classes chargées.
+     */
+    private int classesLoaded;
+    /**
+     * Durée totale en nanosecondes.
+     */
+    private long wallNanos;
+    /**
+     * Nom sous lequel le rapport est publié, ou null.
+     */
+    private ObjectName objectName;
+
+    /**
+     * Ajoute la durée d'une phase. Une phase qui a lieu plusieurs fois est
+     * cumulée.
+     * @param phase
+     *        Le nom de la phase.
+     * @param nanos
+     *        Sa durée en nanosecondes.
+     */
+    public synchronized void addPhase(String phase, long nanos)
+    {
+        long total = nanos;
+        Long previous = phases.get(phase);
+        if (previous != null)
+        {
+            total += previous;
+        }
+        phases.put(phase, total);
+    }
+
+    @Override
+    public synchronized void locationScanned(String packageName, String location, boolean fromCache, int classesInspected, int classesMatched, long bytesRead, long nanos)
+    {
+        String source = SOURCE_SCAN;
+        if (fromCache)
+        {
+            source = SOURCE_CACHE;
+        }
+        locations.add(new LocationStatistics(packageName, location, source, classesInspected, classesMatched, bytesRead, nanos));
+    }
+
+    /**
+     * Ajoute un package lu dans l'index des classes annotées.
+     * @param packageName
+     *        Le package.
+     * @param classesMatched
+     *        Nombre de classes de l'index qui lui appartiennent.
+     * @param nanos
+     *        Temps de lecture en nanosecondes.
+     */
+    public synchronized void addIndexedPackage(String packageName, int classesMatched, long nanos)
+    {
+        locations.add(new LocationStatistics(packageName, "", SOURCE_INDEX, 0, classesMatched, 0, nanos));
+    }
+
+    /**
+     * Ajoute des classes chargées.
+     * @param count
+     *        Le nombre de classes.
+     */
+    public synchronized void addClassesLoaded(int count)
+    {
+        classesLoaded += count;
+    }
+
+    /**
+     * Setter de la durée totale.
+     * @param nanos
+     *        La durée en nanosecondes.
+     */
+    public synchronized void setWallNanos(long nanos)
+    {
+        this.wallNanos = nanos;
+    }
+
+    @Override
+    public synchronized long getWallTimeMillis()
+    {
+        return Math.round(wallNanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public synchronized int getClassesInspected()
+    {
+        int total = 0;
+        for (LocationStatistics statistics : locations)
+        {
+            total += statistics.classesInspected;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int getClassesMatched()
+    {
+        int total = 0;
+        for (LocationStatistics statistics : locations)
+        {
+            total += statistics.classesMatched;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int getClassesLoaded()
+    {
+        return classesLoaded;
+    }
+
+    @Override
+    public synchronized long getBytesRead()
+    {
+        long total = 0;
+        for (LocationStatistics statistics : locations)
+        {
+            total += statistics.bytesRead;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized String[] getPhases()
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Entry<String, Long> phase : phases.entrySet())
+        {
+            lines.add(String.format("%-24s %10.2f ms", phase.getKey(), phase.getValue() / NANOS_PER_MILLI));
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public synchronized String[] getPackages()
+    {
+        Map<String, LocationStatistics> packages = new LinkedHashMap<String, LocationStatistics>();
+        for (LocationStatistics statistics : locations)
+        {
+            LocationStatistics total = packages.get(statistics.packageName);
+            if (total == null)
+            {
+                total = new LocationStatistics(statistics.packageName, "", "", 0, 0, 0, 0);
+                packages.put(statistics.packageName, total);
+            }
+            total.add(statistics);
+        }
+        List<String> lines = new ArrayList<String>();
+        for (LocationStatistics total : packages.values())
+        {
+            lines.add(total.format());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public synchronized String[] getLocations()
+    {
+        List<String> lines = new ArrayList<String>();
+        for (LocationStatistics statistics : locations)
+        {
+            lines.add(statistics.format());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("EasyWeb startup report: %d ms, %d classes inspected, %d matched, %d loaded, %d bytes read", getWallTimeMillis(), getClassesInspected(), getClassesMatched(), classesLoaded, getBytesRead()));
+        appendSection(report, "Phases", getPhases());
+        appendSection(report, "Packages", getPackages());
+        appendSection(report, "Locations", getLocations());
+        return report.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getReport();
+    }
+
+    /**
+     * Ajoute une section au rapport.
+     * @param report
+     *        Le rapport.
+     * @param title
+     *        Le titre de la section.
+     * @param lines
+     *        Ses lignes.
+     */
+    private static void appendSection(StringBuilder report, String title, String[] lines)
+    {
+        report.append("\n").append(title).append(":");
+        for (String line : lines)
+        {
+            report.append("\n    ").append(line);
+        }
+    }
+
+    /**
+     * Publie le rapport comme MBean. Un rapport déjà publié pour la même
+     * application, par un démarrage précédent, est remplacé.
+     * @param contextPath
+     *        Le chemin de l'application hôte, qui distingue les rapports de
+     *        plusieurs applications d'un même conteneur.
+     */
+    public synchronized void register(String contextPath)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=StartupReport,context=" + ObjectName.quote(contextPath));
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        }
+        catch (JMException e)
+        {
+            logger.warn("The startup report cannot be registered as an MBean." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Retire le MBean du rapport, à l'arrêt de l'application hôte.
+     */
+    public synchronized void unregister()
+    {
+        if (objectName == null)
+        {
+            return;
+        }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (JMException e)
+        {
+            logger.warn("The startup report MBean cannot be unregistered." + "\n" + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * Statistiques d'un emplacement, ou d'un package tous emplacements
+     * confondus.
+     * @author filippo
+     */
+    private static final class LocationStatistics
+    {
+        /**
+         * Le package.
+         */
+        private final String packageName;
+        /**
+         * L'url de l'emplacement, vide pour l'index ou pour un package.
+         */
+        private final String location;
+        /**
+         * D'où viennent les classes : scanned, cached ou indexed.
+         */
+        private final String source;
+        /**
+         * Nombre de fichiers class lus.
+         */
+        private int classesInspected;
+        /**
+         * Nombre de classes annotées trouvées.
+         */
+        private int classesMatched;
+        /**
+         * Nombre d'octets lus.
+         */
+        private long bytesRead;
+        /**
+         * Temps passé en nanosecondes.
+         */
+        private long nanos;
+
+        /**
+         * Constructeur.
+         * @param pPackageName
+         *        Le package.
+         * @param pLocation
+         *        L'url de l'emplacement.
+         * @param pSource
+         *        D'où viennent les classes.
+         * @param pClassesInspected
+         *        Nombre de fichiers class lus.
+         * @param pClassesMatched
+         *        Nombre de classes annotées trouvées.
+         * @param pBytesRead
+         *        Nombre d'octets lus.
+         * @param pNanos
+         *        Temps passé en nanosecondes.
+         */
+        private LocationStatistics(String pPackageName, String pLocation, String pSource, int pClassesInspected, int pClassesMatched, long pBytesRead, long pNanos)
+        {
+            this.packageName = pPackageName;
+            this.location = pLocation;
+            this.source = pSource;
+            this.classesInspected = pClassesInspected;
+            this.classesMatched = pClassesMatched;
+            this.bytesRead = pBytesRead;
+            this.nanos = pNanos;
+        }
+
+        /**
+         * Cumule les statistiques d'un autre emplacement.
+         * @param other
+         *        L'autre emplacement.
+         */
+        private void add(LocationStatistics other)
+        {
+            classesInspected += other.classesInspected;
+            classesMatched += other.classesMatched;
+            bytesRead += other.bytesRead;
+            nanos += other.nanos;
+        }
+
+        /**
+         * Ligne du rapport.
+         * @return La ligne.
+         */
+        private String format()
+        {
+            return String.format("%-32s %-8s %6d inspected %5d matched %10d bytes %10.2f ms  %s", packageName, source, classesInspected, classesMatched, bytesRead, nanos / NANOS_PER_MILLI, location).trim();
+        }
+    }
+}
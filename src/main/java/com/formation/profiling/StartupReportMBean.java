@@ -0,0 +1,65 @@
+package com.formation.profiling;
+
+/**
+ * Interface de gestion du rapport de démarrage, lue par JMX (jconsole,
+ * VisualVM...).
+ * @author filippo
+ */
+public interface StartupReportMBean
+{
+    /**
+     * Durée totale de la lecture de la configuration.
+     * @return La durée en millisecondes.
+     */
+    long getWallTimeMillis();
+
+    /**
+     * Nombre de fichiers class lus par le scanner.
+     * @return Le nombre de fichiers.
+     */
+    int getClassesInspected();
+
+    /**
+     * Nombre de classes annotées trouvées, par le scanner, dans le cache ou
+     * dans l'index.
+     * @return Le nombre de classes.
+     */
+    int getClassesMatched();
+
+    /**
+     * Nombre de classes chargées par le ClassLoader pour lire leurs
+     * annotations.
+     * @return Le nombre de classes.
+     */
+    int getClassesLoaded();
+
+    /**
+     * Nombre d'octets lus dans les fichiers class.
+     * @return Le nombre d'octets.
+     */
+    long getBytesRead();
+
+    /**
+     * Durée de chaque phase, dans l'ordre où elles ont eu lieu.
+     * @return Une ligne par phase.
+     */
+    String[] getPhases();
+
+    /**
+     * Statistiques de chaque package à scanner, tous emplacements confondus.
+     * @return Une ligne par package.
+     */
+    String[] getPackages();
+
+    /**
+     * Statistiques de chaque emplacement (dossier ou jar) de chaque package.
+     * @return Une ligne par emplacement.
+     */
+    String[] getLocations();
+
+    /**
+     * Le rapport complet, tel qu'il est tracé.
+     * @return Le rapport.
+     */
+    String getReport();
+}
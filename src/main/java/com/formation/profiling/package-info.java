@@ -0,0 +1,4 @@
+/**
+ * Ce package contient le rapport de démarrage qui détaille, phase par phase et emplacement par emplacement, le temps passé à lire la configuration de l'application hôte. Il est tracé et publié comme MBean.
+ */
+package com.formation.profiling;
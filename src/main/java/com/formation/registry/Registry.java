@@ -0,0 +1,356 @@
+package com.formation.registry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.servlet.ServletContext;
+
+import org.apache.log4j.Logger;
+
+import com.formation.annotations.ActionScope;
+import com.formation.archetypes.Action;
+import com.formation.configreader.ConfigurationReader;
+import com.formation.factory.Factory;
+import com.formation.populate.FormFiller;
+import com.formation.profiling.StartupReport;
+import com.formation.routing.Route;
+import com.formation.routing.Router;
+
+/**
+ * Registre immuable des Actions et ActionForms de l'application hôte : la map
+ * des url-pattern et la table de routage construite à partir d'elle. Il est
+ * construit une seule fois, au premier appel de getRegistry, et publié dans
+ * le ServletContext où le contrôleur et les tags le lisent : une page de
+ * formulaire ne relit jamais la configuration.
+ * <p>
+ * Si la propriété reload est activée, un processus de fond remplace le
+ * registre publié quand la configuration change (voir RegistryReloader).
+ * Chaque requête doit donc lire le registre une seule fois et s'y tenir.
+ * </p>
+ * <p>
+ * Les plans d'instanciation des Actions et ActionForms sont construits avec le
+ * registre. Les Actions de portée application sont instanciées à la
+ * construction du registre et partagées sans verrou par toutes les requêtes ;
+ * un registre rechargé reprend les instances du précédent.
+ * </p>
+ * @author filippo
+ */
+public final class Registry
+{
+    /**
+     * Nom de l'attribut du ServletContext qui contient la référence du
+     * registre courant.
+     */
+    public static final String ATTRIBUTE_NAME = Registry.class.getName();
+    /**
+     * Verrou de la construction du registre.
+     */
+    private static final Object LOCK = new Object();
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(Registry.class);
+    /**
+     * Map des actions et de leurs actionForm associés avec pour clef
+     * l'url-pattern leur étant associée, dans l'ordre de déclaration.
+     */
+    private final Map<String, String[]> actionsAndFormsMap;
+    /**
+     * Les routes de actionsAndFormsMap, dans l'ordre de déclaration.
+     */
+    private final List<Route> routes;
+    /**
+     * Table de routage construite à partir de routes.
+     */
+    private final Router router;
+    /**
+     * Les Actions de portée application, par classe.
+     */
+    private final Map<Class<? extends Action>, Action> applicationActions;
+
+    /**
+     * Constructeur.
+     * @param pActionsAndFormsMap
+     *        Map des url-pattern et des couples Action et ActionForm associés,
+     *        copiée.
+     * @param pRoutes
+     *        Les routes de cette map, dans l'ordre de déclaration, copiées.
+     * @param pRouter
+     *        Table de routage construite à partir de ces routes.
+     */
+    public Registry(Map<String, String[]> pActionsAndFormsMap, List<Route> pRoutes, Router pRouter)
+    {
+        this(pActionsAndFormsMap, pRoutes, pRouter, Collections.<Class<? extends Action>, Action> emptyMap());
+    }
+
+    /**
+     * Constructeur qui reprend les Actions de portée application d'un
+     * registre précédent.
+     * @param pActionsAndFormsMap
+     *        Map des url-pattern et des couples Action et ActionForm associés,
+     *        copiée.
+     * @param pRoutes
+     *        Les routes de cette map, dans l'ordre de déclaration, copiées.
+     * @param pRouter
+     *        Table de routage construite à partir de ces routes.
+     * @param previousApplicationActions
+     *        Les Actions de portée application du registre précédent.
+     */
+    private Registry(Map<String, String[]> pActionsAndFormsMap, List<Route> pRoutes, Router pRouter, Map<Class<? extends Action>, Action> previousApplicationActions)
+    {
+        this.actionsAndFormsMap = Collections.unmodifiableMap(new LinkedHashMap<String, String[]>(pActionsAndFormsMap));
+        this.routes = Collections.unmodifiableList(new ArrayList<Route>(pRoutes));
+        this.router = pRouter;
+        prepareInstantiationPlans(routes);
+        this.applicationActions = createApplicationActions(routes, previousApplicationActions);
+        warnAboutRoutesWithoutForm(routes);
+    }
+
+    /**
+     * Construit les plans d'instanciation et d'injection des Actions et
+     * ActionForms des routes, et les plans de peuplement des ActionForms, pour
+     * que la Factory et le FormFiller n'aient plus qu'à les exécuter pendant
+     * les requêtes.
+     * @param pRoutes
+     *        Les routes.
+     */
+    private static void prepareInstantiationPlans(List<Route> pRoutes)
+    {
+        for (Route route : pRoutes)
+        {
+            Factory.prepare(route.getActionClass());
+            if (route.getFormClass() != null)
+            {
+                Factory.prepare(route.getFormClass());
+                FormFiller.getFormFiller().prepare(route.getFormClass());
+            }
+        }
+    }
+
+    /**
+     * Instancie les Actions de portée application des routes. Une même classe
+     * n'a qu'une instance, même si plusieurs routes y mènent.
+     * @param pRoutes
+     *        Les routes.
+     * @param previousApplicationActions
+     *        Les instances déjà créées, reprises telles quelles.
+     * @return Les instances, par classe, non modifiables.
+     */
+    private static Map<Class<? extends Action>, Action> createApplicationActions(List<Route> pRoutes, Map<Class<? extends Action>, Action> previousApplicationActions)
+    {
+        Map<Class<? extends Action>, Action> actions = new HashMap<Class<? extends Action>, Action>();
+        for (Route route : pRoutes)
+        {
+            Class<? extends Action> actionClass = route.getActionClass();
+            if (route.getActionScope() == ActionScope.APPLICATION && !actions.containsKey(actionClass))
+            {
+                Action action = previousApplicationActions.get(actionClass);
+                if (action == null)
+                {
+                    action = Factory.getInstance(actionClass);
+                }
+                actions.put(actionClass, action);
+            }
+        }
+        return Collections.unmodifiableMap(actions);
+    }
+
+    /**
+     * Signale les routes dont l'Action n'a pas d'ActionForm : elles ne
+     * peuvent être servies.
+     * @param pRoutes
+     *        Les routes.
+     */
+    private static void warnAboutRoutesWithoutForm(List<Route> pRoutes)
+    {
+        for (Route route : pRoutes)
+        {
+            if (route.getFormClass() == null)
+            {
+                logger.warn("No ActionForm is declared for the Action " + route.getActionClass().getName() + " of " + route.getUrlPattern() + ", its requests will be sent back to their referer.");
+            }
+        }
+    }
+
+    /**
+     * Renvoie le registre publié dans le ServletContext, en le construisant
+     * s'il ne l'a pas encore été. La construction n'a lieu qu'une fois même si
+     * plusieurs threads le demandent en même temps.
+     * @param servletContext
+     *        Le contexte de l'application hôte.
+     * @return Le registre.
+     */
+    public static Registry getRegistry(ServletContext servletContext)
+    {
+        RegistryHolder holder = (RegistryHolder) servletContext.getAttribute(ATTRIBUTE_NAME);
+        if (holder == null)
+        {
+            synchronized (LOCK)
+            {
+                holder = (RegistryHolder) servletContext.getAttribute(ATTRIBUTE_NAME);
+                if (holder == null)
+                {
+                    holder = createHolder(servletContext);
+                    servletContext.setAttribute(ATTRIBUTE_NAME, holder);
+                }
+            }
+        }
+        return holder.get();
+    }
+
+    /**
+     * Construit le registre initial et, si la propriété reload est activée,
+     * démarre son rechargement.
+     * @param servletContext
+     *        Le contexte de l'application hôte.
+     * @return La référence du registre.
+     */
+    private static RegistryHolder createHolder(ServletContext servletContext)
+    {
+        ConfigurationReader configurationReader = ConfigurationReader.getReader();
+        configurationReader.setWorkDirectory((File) servletContext.getAttribute(ServletContext.TEMPDIR));
+        RegistryHolder holder = new RegistryHolder(configurationReader.buildRegistry());
+        StartupReport startupReport = configurationReader.getStartupReport();
+        if (startupReport != null)
+        {
+            startupReport.register(servletContext.getContextPath());
+            holder.setStartupReport(startupReport);
+        }
+        if (configurationReader.isReloadEnabled())
+        {
+            try
+            {
+                RegistryReloader reloader = new RegistryReloader(holder, configurationReader.getWatchedDirectories());
+                reloader.start();
+                holder.setReloader(reloader);
+            }
+            catch (IOException e)
+            {
+                logger.error("The configuration cannot be watched, it will not be reloaded." + "\n" + e.getMessage());
+            }
+        }
+        return holder;
+    }
+
+    /**
+     * Arrête le rechargement du registre et retire le MBean du rapport de
+     * démarrage, à l'arrêt de l'application hôte.
+     * @param servletContext
+     *        Le contexte de l'application hôte.
+     */
+    public static void close(ServletContext servletContext)
+    {
+        synchronized (LOCK)
+        {
+            RegistryHolder holder = (RegistryHolder) servletContext.getAttribute(ATTRIBUTE_NAME);
+            if (holder == null)
+            {
+                return;
+            }
+            if (holder.getReloader() != null)
+            {
+                holder.getReloader().stop();
+                holder.setReloader(null);
+            }
+            if (holder.getStartupReport() != null)
+            {
+                holder.getStartupReport().unregister();
+                holder.setStartupReport(null);
+            }
+        }
+    }
+
+    /**
+     * Construit le registre d'une configuration relue. Les routes dont
+     * l'url-pattern, l'Action, l'ActionForm et la portée n'ont pas changé sont
+     * reprises telles quelles, seules les autres sont compilées. Les Actions de
+     * portée application déjà instanciées sont gardées.
+     * @param pActionsAndFormsMap
+     *        La configuration relue.
+     * @param configurationReader
+     *        Le lecteur de configuration, qui construit la table de routage.
+     * @return Le nouveau registre.
+     */
+    public Registry update(Map<String, String[]> pActionsAndFormsMap, ConfigurationReader configurationReader)
+    {
+        Map<String, Route> previousRoutes = new HashMap<String, Route>();
+        for (Route route : routes)
+        {
+            previousRoutes.put(route.getUrlPattern(), route);
+        }
+        List<Route> nextRoutes = new ArrayList<Route>(pActionsAndFormsMap.size());
+        for (Entry<String, String[]> e : pActionsAndFormsMap.entrySet())
+        {
+            Route previous = previousRoutes.get(e.getKey());
+            if (previous != null && Arrays.equals(previous.getCanonicalNames(), e.getValue()))
+            {
+                nextRoutes.add(previous.withDeclarationIndex(nextRoutes.size()));
+            }
+            else
+            {
+                nextRoutes.add(new Route(nextRoutes.size(), e.getKey(), e.getValue()));
+            }
+        }
+        return new Registry(pActionsAndFormsMap, nextRoutes, configurationReader.buildRouter(nextRoutes), applicationActions);
+    }
+
+    /**
+     * Cherche la route qui correspond à une url.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @return La première route déclarée dont l'url-pattern correspond, ou
+     *         null.
+     */
+    public Route resolve(String urlPathInfo)
+    {
+        return router.resolve(urlPathInfo);
+    }
+
+    /**
+     * Renvoie l'instance partagée d'une Action de portée application.
+     * @param actionClass
+     *        La classe de l'Action.
+     * @return L'instance, ou null si aucune route ne déclare cette Action de
+     *         portée application.
+     */
+    public Action getApplicationAction(Class<? extends Action> actionClass)
+    {
+        return applicationActions.get(actionClass);
+    }
+
+    /**
+     * Getter de la map des actions et forms.
+     * @return La map, non modifiable, des url-pattern et des couples Action et
+     *         ActionForm associés.
+     */
+    public Map<String, String[]> getActionsAndFormsMap()
+    {
+        return actionsAndFormsMap;
+    }
+
+    /**
+     * Getter des routes.
+     * @return Les routes, non modifiables, dans l'ordre de déclaration.
+     */
+    public List<Route> getRoutes()
+    {
+        return routes;
+    }
+
+    /**
+     * Getter de la table de routage.
+     * @return La table de routage.
+     */
+    public Router getRouter()
+    {
+        return router;
+    }
+}
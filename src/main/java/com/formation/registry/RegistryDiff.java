@@ -0,0 +1,132 @@
+package com.formation.registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Différences entre la configuration d'un registre et une configuration
+ * relue : les url-pattern ajoutés, retirés, ou dont l'Action ou l'ActionForm a
+ * changé, et si l'ordre de déclaration des url-pattern communs a changé.
+ * @author filippo
+ */
+public final class RegistryDiff
+{
+    /**
+     * Les url-pattern ajoutés.
+     */
+    private final List<String> added = new ArrayList<String>();
+    /**
+     * Les url-pattern retirés.
+     */
+    private final List<String> removed = new ArrayList<String>();
+    /**
+     * Les url-pattern dont l'Action ou l'ActionForm a changé.
+     */
+    private final List<String> changed = new ArrayList<String>();
+    /**
+     * Vrai si les url-pattern communs ne sont plus déclarés dans le même
+     * ordre, ce qui peut changer la route choisie pour une url.
+     */
+    private final boolean reordered;
+
+    /**
+     * Compare deux configurations.
+     * @param previous
+     *        La configuration du registre, dans l'ordre de déclaration.
+     * @param next
+     *        La configuration relue, dans l'ordre de déclaration.
+     */
+    public RegistryDiff(Map<String, String[]> previous, Map<String, String[]> next)
+    {
+        List<String> previousOrder = new ArrayList<String>();
+        for (Entry<String, String[]> e : previous.entrySet())
+        {
+            String[] names = next.get(e.getKey());
+            if (names == null)
+            {
+                removed.add(e.getKey());
+            }
+            else
+            {
+                previousOrder.add(e.getKey());
+                if (!Arrays.equals(names, e.getValue()))
+                {
+                    changed.add(e.getKey());
+                }
+            }
+        }
+        List<String> nextOrder = new ArrayList<String>();
+        for (String urlPattern : next.keySet())
+        {
+            if (previous.containsKey(urlPattern))
+            {
+                nextOrder.add(urlPattern);
+            }
+            else
+            {
+                added.add(urlPattern);
+            }
+        }
+        this.reordered = !previousOrder.equals(nextOrder);
+    }
+
+    /**
+     * Indique si les deux configurations sont identiques.
+     * @return Vrai si rien n'a changé.
+     */
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && !reordered;
+    }
+
+    /**
+     * Getter des url-pattern ajoutés.
+     * @return Les url-pattern ajoutés.
+     */
+    public List<String> getAdded()
+    {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Getter des url-pattern retirés.
+     * @return Les url-pattern retirés.
+     */
+    public List<String> getRemoved()
+    {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Getter des url-pattern modifiés.
+     * @return Les url-pattern dont l'Action ou l'ActionForm a changé.
+     */
+    public List<String> getChanged()
+    {
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Indique si l'ordre de déclaration a changé.
+     * @return Vrai si les url-pattern communs ne sont plus dans le même ordre.
+     */
+    public boolean isReordered()
+    {
+        return reordered;
+    }
+
+    @Override
+    public String toString()
+    {
+        String description = added.size() + " url-pattern(s) added " + added + ", " + removed.size() + " removed " + removed + ", " + changed.size() + " changed " + changed;
+        if (reordered)
+        {
+            description += ", declaration order changed";
+        }
+        return description;
+    }
+}
@@ -0,0 +1,96 @@
+package com.formation.registry;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.formation.profiling.StartupReport;
+
+/**
+ * Contenu de l'attribut du ServletContext : la référence du registre courant
+ * et, si le rechargement est activé, le processus qui la remplace quand la
+ * configuration change. Une requête lit la référence une seule fois et
+ * travaille sur ce registre jusqu'à sa fin, même si un autre est publié
+ * entre-temps.
+ * @author filippo
+ */
+final class RegistryHolder
+{
+    /**
+     * Le registre courant.
+     */
+    private final AtomicReference<Registry> current;
+    /**
+     * Le processus de rechargement, ou null.
+     */
+    private RegistryReloader reloader;
+    /**
+     * Le rapport de démarrage publié comme MBean, ou null.
+     */
+    private StartupReport startupReport;
+
+    /**
+     * Constructeur.
+     * @param registry
+     *        Le registre initial.
+     */
+    RegistryHolder(Registry registry)
+    {
+        this.current = new AtomicReference<Registry>(registry);
+    }
+
+    /**
+     * Le registre courant.
+     * @return Le registre.
+     */
+    Registry get()
+    {
+        return current.get();
+    }
+
+    /**
+     * Publie un nouveau registre en une seule écriture.
+     * @param registry
+     *        Le nouveau registre.
+     */
+    void set(Registry registry)
+    {
+        current.set(registry);
+    }
+
+    /**
+     * Getter du processus de rechargement.
+     * @return Le processus ou null si le rechargement n'est pas activé.
+     */
+    RegistryReloader getReloader()
+    {
+        return reloader;
+    }
+
+    /**
+     * Setter du processus de rechargement.
+     * @param pReloader
+     *        Le processus.
+     */
+    void setReloader(RegistryReloader pReloader)
+    {
+        this.reloader = pReloader;
+    }
+
+    /**
+     * Getter du rapport de démarrage.
+     * @return Le rapport ou null s'il n'est pas activé.
+     */
+    StartupReport getStartupReport()
+    {
+        return startupReport;
+    }
+
+    /**
+     * Setter du rapport de démarrage.
+     * @param pStartupReport
+     *        Le rapport.
+     */
+    void setStartupReport(StartupReport pStartupReport)
+    {
+        this.startupReport = pStartupReport;
+    }
+}
@@ -0,0 +1,219 @@
+package com.formation.registry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.formation.configreader.ConfigurationReader;
+
+/**
+ * Processus de fond qui surveille les fichiers de configuration et les
+ * dossiers des classes scannées. Quand ils changent, la configuration est
+ * relue puis comparée à celle du registre courant : s'il y a des différences,
+ * un nouveau registre est construit en gardant les routes inchangées et il est
+ * publié en une seule écriture. Aucune requête n'attend : celles en cours
+ * finissent avec le registre qu'elles ont lu.
+ * <p>
+ * Une classe déjà chargée n'est pas rechargée : les changements d'annotations
+ * d'une classe déjà utilisée demandent le rechargement de l'application par le
+ * conteneur.
+ * </p>
+ * @author filippo
+ */
+final class RegistryReloader implements Runnable
+{
+    /**
+     * Délai sans nouvel évènement attendu avant de relire la configuration,
+     * pour qu'une compilation ou une copie de plusieurs fichiers ne provoque
+     * qu'une lecture.
+     */
+    private static final long QUIET_PERIOD_MILLISECONDS = 500;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(RegistryReloader.class);
+    /**
+     * La référence du registre courant.
+     */
+    private final RegistryHolder holder;
+    /**
+     * Le service de surveillance des dossiers.
+     */
+    private final WatchService watchService;
+    /**
+     * Le thread du processus.
+     */
+    private final Thread thread;
+
+    /**
+     * Constructeur, qui enregistre les dossiers surveillés et leurs
+     * sous-dossiers.
+     * @param pHolder
+     *        La référence du registre courant.
+     * @param directories
+     *        Les dossiers à surveiller.
+     * @throws IOException
+     *         Si un dossier ne peut être surveillé.
+     */
+    RegistryReloader(RegistryHolder pHolder, List<File> directories) throws IOException
+    {
+        this.holder = pHolder;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (File directory : directories)
+        {
+            registerAll(directory);
+        }
+        // le thread hérite du ClassLoader de l'application hôte
+        this.thread = new Thread(this, "EasyWeb configuration reloader");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Démarre la surveillance.
+     */
+    void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Arrête la surveillance.
+     */
+    void stop()
+    {
+        thread.interrupt();
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn(e.getMessage());
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                WatchKey key = watchService.take();
+                while (key != null)
+                {
+                    handleEvents(key);
+                    key = watchService.poll(QUIET_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+                }
+                reload();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // arrêt demandé par stop
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Relit la configuration et publie un nouveau registre si elle a changé.
+     * En cas d'erreur, y compris au chargement d'une classe, le registre
+     * courant est gardé.
+     */
+    private void reload()
+    {
+        try
+        {
+            ConfigurationReader configurationReader = ConfigurationReader.getReader();
+            Map<String, String[]> actionsAndFormsMap = configurationReader.buildActionsAndFormsMap();
+            Registry current = holder.get();
+            RegistryDiff diff = new RegistryDiff(current.getActionsAndFormsMap(), actionsAndFormsMap);
+            if (diff.isEmpty())
+            {
+                logger.debug("Configuration files changed but the configuration is the same.");
+                return;
+            }
+            holder.set(current.update(actionsAndFormsMap, configurationReader));
+            logger.info("Configuration reloaded: " + diff);
+        }
+        catch (RuntimeException | LinkageError e)
+        {
+            // une LinkageError, telle l'ExceptionInInitializerError d'une
+            // Action créée par update, ne doit pas arrêter la surveillance
+            logger.error("The configuration cannot be reloaded, the previous one is kept.", e);
+        }
+    }
+
+    /**
+     * Traite les évènements d'un dossier : les nouveaux sous-dossiers sont
+     * surveillés à leur tour.
+     * @param key
+     *        La clef du dossier.
+     */
+    private void handleEvents(WatchKey key)
+    {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+            {
+                File created = directory.resolve((Path) event.context()).toFile();
+                registerQuietly(created);
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Surveille un nouveau dossier et ses sous-dossiers.
+     * @param directory
+     *        Le dossier, ou un fichier qui est alors ignoré.
+     */
+    private void registerQuietly(File directory)
+    {
+        try
+        {
+            registerAll(directory);
+        }
+        catch (IOException e)
+        {
+            logger.warn("The directory " + directory + " cannot be watched." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Surveille un dossier et ses sous-dossiers.
+     * @param directory
+     *        Le dossier, ou un fichier qui est alors ignoré.
+     * @throws IOException
+     *         Si un dossier ne peut être surveillé.
+     */
+    private void registerAll(File directory) throws IOException
+    {
+        if (!directory.isDirectory())
+        {
+            return;
+        }
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        File[] children = directory.listFiles();
+        if (children == null)
+        {
+            return;
+        }
+        for (File child : children)
+        {
+            registerAll(child);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Ce package contient le registre des Actions et ActionForms de l'application hôte, construit une seule fois et partagé par le contrôleur et les tags.
+ */
+package com.formation.registry;
@@ -0,0 +1,217 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.formation.exceptions.checked.UnsupportedRegexSyntaxException;
+
+/**
+ * Table de routage qui réunit tous les url-pattern dans un seul automate. L'url
+ * demandée est lue une seule fois, caractère par caractère, quel que soit le
+ * nombre de routes : l'automate non déterministe est déterminisé à la demande
+ * et les états déterministes rencontrés sont mémorisés. L'état atteint en fin
+ * d'url indique la première route déclarée qui correspond.
+ * <p>
+ * Les url-pattern dont la syntaxe n'est pas prise en charge par l'automate
+ * (voir RegexNfaCompiler) restent testés avec des expressions régulières
+ * précompilées, en respectant toujours l'ordre de déclaration.
+ * </p>
+ * @author filippo
+ */
+public final class AutomatonRouter implements Router
+{
+    /**
+     * Nombre d'états déterministes mémorisés par route compilée dans
+     * l'automate. Au delà les états sont recalculés à chaque requête, ce qui
+     * borne la mémoire occupée par des url-pattern pathologiques.
+     */
+    private static final int CACHED_STATES_PER_ROUTE = 32;
+    /**
+     * Nombre minimal d'états déterministes mémorisés.
+     */
+    private static final int MIN_CACHED_STATES = 1024;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(AutomatonRouter.class);
+    /**
+     * L'automate non déterministe réunissant les url-pattern pris en charge.
+     */
+    private final Nfa nfa;
+    /**
+     * Routes compilées dans l'automate, dans l'ordre de déclaration. L'indice
+     * porté par les états finaux est l'indice dans ce tableau.
+     */
+    private final Route[] automatonRoutes;
+    /**
+     * Routes non prises en charge par l'automate.
+     */
+    private final RegexRoutes regexRoutes;
+    /**
+     * États déterministes déjà rencontrés.
+     */
+    private final ConcurrentMap<DfaState, DfaState> states = new ConcurrentHashMap<DfaState, DfaState>();
+    /**
+     * Nombre maximal d'états déterministes mémorisés.
+     */
+    private final int maxCachedStates;
+    /**
+     * État initial de l'automate déterministe.
+     */
+    private final DfaState start;
+
+    /**
+     * Constructeur privé, la table se construit avec build.
+     * @param pNfa
+     *        L'automate non déterministe.
+     * @param startState
+     *        État initial de l'automate non déterministe.
+     * @param pAutomatonRoutes
+     *        Routes compilées dans l'automate.
+     * @param pRegexRoutes
+     *        Routes non prises en charge par l'automate.
+     */
+    private AutomatonRouter(Nfa pNfa, int startState, List<Route> pAutomatonRoutes, List<Route> pRegexRoutes)
+    {
+        this.nfa = pNfa;
+        this.automatonRoutes = pAutomatonRoutes.toArray(new Route[pAutomatonRoutes.size()]);
+        this.regexRoutes = new RegexRoutes(pRegexRoutes);
+        this.maxCachedStates = Math.max(MIN_CACHED_STATES, CACHED_STATES_PER_ROUTE * automatonRoutes.length);
+        int[] initialStates = nfa.closure(startState);
+        this.start = new DfaState(initialStates, acceptedRoute(initialStates));
+        states.put(start, start);
+    }
+
+    /**
+     * Construit la table de routage.
+     * @param actionsAndFormsMap
+     *        Une map qui contient en clef les url-pattern et en valeur les
+     *        couple Action et ActionForm associés, dans l'ordre de déclaration.
+     * @return La table de routage.
+     */
+    public static AutomatonRouter build(Map<String, String[]> actionsAndFormsMap)
+    {
+        return build(Route.declaredIn(actionsAndFormsMap));
+    }
+
+    /**
+     * Construit la table de routage à partir de routes déjà créées, par
+     * exemple conservées d'une table précédente.
+     * @param routes
+     *        Les routes, dans l'ordre de déclaration.
+     * @return La table de routage.
+     */
+    public static AutomatonRouter build(List<Route> routes)
+    {
+        Nfa nfa = new Nfa();
+        int startState = nfa.newState();
+        List<Route> automatonRoutes = new ArrayList<Route>();
+        List<Route> regexRoutes = new ArrayList<Route>();
+        for (Route route : routes)
+        {
+            // l'url-pattern doit rester une expression régulière valide
+            route.getPattern();
+            try
+            {
+                nfa.epsilon(startState, RegexNfaCompiler.compile(nfa, route.getRegex(), automatonRoutes.size()));
+                automatonRoutes.add(route);
+            }
+            catch (UnsupportedRegexSyntaxException ex)
+            {
+                logger.debug(ex.getMessage());
+                regexRoutes.add(route);
+            }
+        }
+        return new AutomatonRouter(nfa, startState, automatonRoutes, regexRoutes);
+    }
+
+    @Override
+    public Route resolve(String urlPathInfo)
+    {
+        return regexRoutes.firstMatchBefore(urlPathInfo, run(urlPathInfo));
+    }
+
+    /**
+     * Fait lire l'url demandée à l'automate.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @return La première route déclarée de l'automate qui correspond, ou null.
+     */
+    private Route run(String urlPathInfo)
+    {
+        DfaState state = start;
+        int i = 0;
+        while (i < urlPathInfo.length() && !state.isDead())
+        {
+            int codePoint = urlPathInfo.codePointAt(i);
+            state = step(state, codePoint);
+            i += Character.charCount(codePoint);
+        }
+        // un état vide ne reconnaît aucune route : inutile de lire la suite
+        return state.getAcceptedRoute();
+    }
+
+    /**
+     * Transition de l'automate déterministe, calculée et mémorisée si elle ne
+     * l'a pas encore été.
+     * @param state
+     *        L'état courant.
+     * @param codePoint
+     *        Le caractère lu.
+     * @return L'état suivant.
+     */
+    private DfaState step(DfaState state, int codePoint)
+    {
+        DfaState next = state.next(codePoint);
+        if (next != null)
+        {
+            return next;
+        }
+        int[] nfaStates = nfa.move(state.getNfaStates(), codePoint);
+        DfaState candidate = new DfaState(nfaStates, acceptedRoute(nfaStates));
+        DfaState interned = states.get(candidate);
+        if (interned == null && states.size() < maxCachedStates)
+        {
+            interned = states.putIfAbsent(candidate, candidate);
+            if (interned == null)
+            {
+                interned = candidate;
+            }
+        }
+        if (interned == null)
+        {
+            return candidate;
+        }
+        state.remember(codePoint, interned);
+        return interned;
+    }
+
+    /**
+     * Première route déclarée parmi celles reconnues par un ensemble d'états.
+     * @param nfaStates
+     *        Les états de l'automate non déterministe.
+     * @return La route ou null si aucun état n'est final.
+     */
+    private Route acceptedRoute(int[] nfaStates)
+    {
+        int best = Integer.MAX_VALUE;
+        for (int state : nfaStates)
+        {
+            int routeIndex = nfa.acceptedRoute(state);
+            if (routeIndex != Nfa.NONE && routeIndex < best)
+            {
+                best = routeIndex;
+            }
+        }
+        if (best == Integer.MAX_VALUE)
+        {
+            return null;
+        }
+        return automatonRoutes[best];
+    }
+}
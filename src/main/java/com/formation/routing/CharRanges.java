@@ -0,0 +1,207 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ensemble immuable de caractères (points de code Unicode) représenté par des
+ * intervalles triés et disjoints. Sert d'étiquette aux transitions de
+ * l'automate de routage.
+ * @author filippo
+ */
+final class CharRanges
+{
+    /**
+     * Plus grand point de code Unicode.
+     */
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+    /**
+     * Ordonne les intervalles par borne inférieure.
+     */
+    private static final Comparator<int[]> BY_LOWER_BOUND = new Comparator<int[]>()
+    {
+        @Override
+        public int compare(int[] a, int[] b)
+        {
+            return Integer.compare(a[0], b[0]);
+        }
+    };
+    /**
+     * Les chiffres, équivalent de \d.
+     */
+    static final CharRanges DIGITS = range('0', '9');
+    /**
+     * Les caractères de mot, équivalent de \w.
+     */
+    static final CharRanges WORD_CHARACTERS = range('a', 'z').union(range('A', 'Z')).union(DIGITS).union(of('_'));
+    /**
+     * Les espaces, équivalent de \s.
+     */
+    static final CharRanges SPACES = of(' ').union(range('\t', '\r'));
+    /**
+     * Tout caractère sauf les fins de ligne, équivalent du point.
+     */
+    static final CharRanges ANY_BUT_LINE_TERMINATORS = of('\n').union(of('\r')).union(of('\u0085')).union(range('\u2028', '\u2029')).negate();
+    /**
+     * Bornes inclusives des intervalles : lo0, hi0, lo1, hi1...
+     */
+    private final int[] bounds;
+
+    /**
+     * Constructeur privé, les ensembles se construisent avec of et range.
+     * @param pBounds
+     *        Bornes triées et disjointes des intervalles.
+     */
+    private CharRanges(int[] pBounds)
+    {
+        this.bounds = pBounds;
+    }
+
+    /**
+     * Ensemble d'un seul caractère.
+     * @param codePoint
+     *        Le caractère.
+     * @return L'ensemble.
+     */
+    static CharRanges of(int codePoint)
+    {
+        return range(codePoint, codePoint);
+    }
+
+    /**
+     * Ensemble des caractères compris entre deux bornes incluses.
+     * @param lo
+     *        Borne inférieure.
+     * @param hi
+     *        Borne supérieure.
+     * @return L'ensemble.
+     */
+    static CharRanges range(int lo, int hi)
+    {
+        return new CharRanges(new int[]
+        {
+                lo, hi
+        });
+    }
+
+    /**
+     * Indique si le caractère appartient à l'ensemble.
+     * @param codePoint
+     *        Le caractère.
+     * @return Vrai s'il appartient à l'ensemble.
+     */
+    boolean contains(int codePoint)
+    {
+        for (int i = 0; i < bounds.length && bounds[i] <= codePoint; i += 2)
+        {
+            if (codePoint <= bounds[i + 1])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renvoie le caractère unique de l'ensemble.
+     * @return Le caractère ou -1 si l'ensemble n'en contient pas exactement un.
+     */
+    int singleCodePoint()
+    {
+        if (bounds.length == 2 && bounds[0] == bounds[1])
+        {
+            return bounds[0];
+        }
+        return -1;
+    }
+
+    /**
+     * Union de deux ensembles.
+     * @param other
+     *        L'autre ensemble.
+     * @return Un nouvel ensemble contenant les caractères des deux.
+     */
+    CharRanges union(CharRanges other)
+    {
+        int[] all = Arrays.copyOf(bounds, bounds.length + other.bounds.length);
+        System.arraycopy(other.bounds, 0, all, bounds.length, other.bounds.length);
+        int[][] pairs = new int[all.length / 2][];
+        for (int i = 0; i < pairs.length; i++)
+        {
+            pairs[i] = new int[]
+            {
+                    all[2 * i], all[2 * i + 1]
+            };
+        }
+        Arrays.sort(pairs, BY_LOWER_BOUND);
+        return new CharRanges(merge(pairs));
+    }
+
+    /**
+     * Complémentaire de l'ensemble.
+     * @return Un nouvel ensemble contenant les caractères absents de celui-ci.
+     */
+    CharRanges negate()
+    {
+        List<Integer> negated = new ArrayList<Integer>();
+        int next = 0;
+        for (int i = 0; i < bounds.length; i += 2)
+        {
+            if (bounds[i] > next)
+            {
+                negated.add(next);
+                negated.add(bounds[i] - 1);
+            }
+            next = bounds[i + 1] + 1;
+        }
+        if (next <= MAX_CODE_POINT)
+        {
+            negated.add(next);
+            negated.add(MAX_CODE_POINT);
+        }
+        return new CharRanges(toArray(negated));
+    }
+
+    /**
+     * Fusionne des intervalles triés par borne inférieure.
+     * @param pairs
+     *        Les intervalles triés.
+     * @return Les bornes des intervalles fusionnés.
+     */
+    private static int[] merge(int[][] pairs)
+    {
+        List<Integer> merged = new ArrayList<Integer>();
+        for (int[] pair : pairs)
+        {
+            int last = merged.size() - 1;
+            if (last > 0 && pair[0] <= merged.get(last) + 1)
+            {
+                merged.set(last, Math.max(merged.get(last), pair[1]));
+            }
+            else
+            {
+                merged.add(pair[0]);
+                merged.add(pair[1]);
+            }
+        }
+        return toArray(merged);
+    }
+
+    /**
+     * Convertit une liste d'entiers en tableau.
+     * @param values
+     *        La liste.
+     * @return Le tableau.
+     */
+    private static int[] toArray(List<Integer> values)
+    {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,121 @@
+package com.formation.routing;
+
+import java.util.Arrays;
+
+/**
+ * État de l'automate déterministe de routage : un ensemble d'états de
+ * l'automate non déterministe. Les transitions sont calculées à la demande et
+ * mémorisées. Elles peuvent être calculées en parallèle par plusieurs requêtes
+ * sans verrou : deux calculs concurrents produisent des états égaux et l'un
+ * des deux est simplement perdu.
+ * <p>
+ * Seules les transitions des caractères ASCII sont mémorisées : les autres
+ * caractères sont choisis par le client, et les mémoriser ferait croître
+ * chaque état d'une entrée par caractère distinct reçu. Leur transition est
+ * recalculée à chaque lecture.
+ * </p>
+ * @author filippo
+ */
+final class DfaState
+{
+    /**
+     * Nombre de caractères ASCII, dont les transitions sont rangées dans un
+     * tableau.
+     */
+    private static final int ASCII = 128;
+    /**
+     * États de l'automate non déterministe, triés.
+     */
+    private final int[] nfaStates;
+    /**
+     * La route reconnue si l'url s'arrête dans cet état, ou null.
+     */
+    private final Route acceptedRoute;
+    /**
+     * Transitions mémorisées pour les caractères ASCII.
+     */
+    private final DfaState[] asciiTransitions = new DfaState[ASCII];
+
+    /**
+     * Constructeur.
+     * @param pNfaStates
+     *        États de l'automate non déterministe, triés.
+     * @param pAcceptedRoute
+     *        La route reconnue dans cet état, ou null.
+     */
+    DfaState(int[] pNfaStates, Route pAcceptedRoute)
+    {
+        this.nfaStates = pNfaStates;
+        this.acceptedRoute = pAcceptedRoute;
+    }
+
+    /**
+     * Getter des états de l'automate non déterministe.
+     * @return Les états, triés.
+     */
+    int[] getNfaStates()
+    {
+        return nfaStates;
+    }
+
+    /**
+     * Getter de la route reconnue.
+     * @return La route reconnue si l'url s'arrête dans cet état, ou null.
+     */
+    Route getAcceptedRoute()
+    {
+        return acceptedRoute;
+    }
+
+    /**
+     * Indique si plus aucune route ne peut être reconnue depuis cet état.
+     * @return Vrai si l'état est vide.
+     */
+    boolean isDead()
+    {
+        return nfaStates.length == 0;
+    }
+
+    /**
+     * Transition mémorisée.
+     * @param codePoint
+     *        Le caractère lu.
+     * @return L'état suivant ou null s'il n'a pas encore été calculé ou si
+     *         le caractère n'est pas ASCII.
+     */
+    DfaState next(int codePoint)
+    {
+        if (codePoint < ASCII)
+        {
+            return asciiTransitions[codePoint];
+        }
+        return null;
+    }
+
+    /**
+     * Mémorise une transition, si le caractère est ASCII.
+     * @param codePoint
+     *        Le caractère lu.
+     * @param target
+     *        L'état suivant.
+     */
+    void remember(int codePoint, DfaState target)
+    {
+        if (codePoint < ASCII)
+        {
+            asciiTransitions[codePoint] = target;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof DfaState && Arrays.equals(nfaStates, ((DfaState) other).nfaStates);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(nfaStates);
+    }
+}
@@ -0,0 +1,104 @@
+package com.formation.routing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groupe des routes littérales d'une même forme : même longueur et mêmes
+ * positions de points. Le point étant un joker dans une expression régulière,
+ * une url correspond à une route du groupe si et seulement si, une fois ses
+ * caractères remplacés par des points à ces positions, elle est égale à
+ * l'url-pattern. La recherche se fait ainsi par une simple table de hachage.
+ * @author filippo
+ */
+final class LiteralRouteGroup
+{
+    /**
+     * Caractère joker des expressions régulières.
+     */
+    static final char WILDCARD = '.';
+    /**
+     * Positions des jokers communes à toutes les routes du groupe.
+     */
+    private final int[] wildcardPositions;
+    /**
+     * Routes du groupe avec pour clef leur url-pattern débarrassé de ses
+     * caractères d'échappement.
+     */
+    private final Map<String, Route> routes = new HashMap<String, Route>();
+
+    /**
+     * Constructeur.
+     * @param pWildcardPositions
+     *        Positions des jokers communes à toutes les routes du groupe.
+     */
+    LiteralRouteGroup(int[] pWildcardPositions)
+    {
+        this.wildcardPositions = pWildcardPositions;
+    }
+
+    /**
+     * Indique si ce groupe réunit les routes dont les jokers sont aux
+     * positions indiquées.
+     * @param positions
+     *        Positions des jokers.
+     * @return Vrai si les positions sont celles du groupe.
+     */
+    boolean hasWildcardsAt(int[] positions)
+    {
+        return Arrays.equals(wildcardPositions, positions);
+    }
+
+    /**
+     * Ajoute une route au groupe. Si une route de même clef existe déjà c'est
+     * la première déclarée qui est conservée.
+     * @param key
+     *        L'url-pattern débarrassé de ses caractères d'échappement.
+     * @param route
+     *        La route à ajouter.
+     */
+    void add(String key, Route route)
+    {
+        if (!routes.containsKey(key))
+        {
+            routes.put(key, route);
+        }
+    }
+
+    /**
+     * Cherche la route du groupe correspondant à l'url demandée.
+     * @param urlPathInfo
+     *        L'url demandée, de la longueur des routes du groupe.
+     * @return La route trouvée ou null.
+     */
+    Route lookup(String urlPathInfo)
+    {
+        if (wildcardPositions.length == 0)
+        {
+            return routes.get(urlPathInfo);
+        }
+        char[] masked = urlPathInfo.toCharArray();
+        for (int position : wildcardPositions)
+        {
+            if (isLineTerminator(masked[position]))
+            {
+                return null;
+            }
+            masked[position] = WILDCARD;
+        }
+        return routes.get(new String(masked));
+    }
+
+    /**
+     * Le joker ne correspond pas aux fins de ligne, comme dans
+     * java.util.regex.Pattern.
+     * @param c
+     *        Le caractère à tester.
+     * @return Vrai si le caractère est une fin de ligne.
+     */
+    private static boolean isLineTerminator(char c)
+    {
+        return "\n\r\u0085\u2028\u2029".indexOf(c) >= 0;
+    }
+}
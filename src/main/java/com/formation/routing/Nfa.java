@@ -0,0 +1,198 @@
+package com.formation.routing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Automate non déterministe (construction de Thompson) réunissant les
+ * url-pattern de toutes les routes. Chaque état porte au plus une transition
+ * étiquetée par un ensemble de caractères et un nombre quelconque de
+ * transitions vides. Les états finaux portent l'indice de la route reconnue.
+ * @author filippo
+ */
+final class Nfa
+{
+    /**
+     * Valeur de acceptedRoutes pour un état non final et de transitionTargets
+     * pour un état sans transition étiquetée.
+     */
+    static final int NONE = -1;
+    /**
+     * Étiquette de la transition de chaque état, null s'il n'en a pas.
+     */
+    private final List<CharRanges> transitionLabels = new ArrayList<CharRanges>();
+    /**
+     * Cible de la transition étiquetée de chaque état.
+     */
+    private final List<Integer> transitionTargets = new ArrayList<Integer>();
+    /**
+     * Cibles des transitions vides de chaque état.
+     */
+    private final List<List<Integer>> epsilonTargets = new ArrayList<List<Integer>>();
+    /**
+     * Indice de la route reconnue par chaque état final.
+     */
+    private final List<Integer> acceptedRoutes = new ArrayList<Integer>();
+
+    /**
+     * Crée un nouvel état sans transition.
+     * @return L'indice du nouvel état.
+     */
+    int newState()
+    {
+        transitionLabels.add(null);
+        transitionTargets.add(NONE);
+        epsilonTargets.add(new ArrayList<Integer>(2));
+        acceptedRoutes.add(NONE);
+        return transitionLabels.size() - 1;
+    }
+
+    /**
+     * Nombre d'états de l'automate.
+     * @return Le nombre d'états.
+     */
+    int size()
+    {
+        return transitionLabels.size();
+    }
+
+    /**
+     * Ajoute une transition vide.
+     * @param from
+     *        État de départ.
+     * @param to
+     *        État d'arrivée.
+     */
+    void epsilon(int from, int to)
+    {
+        epsilonTargets.get(from).add(to);
+    }
+
+    /**
+     * Ajoute une transition étiquetée. Un état n'en porte qu'une seule.
+     * @param from
+     *        État de départ.
+     * @param label
+     *        Les caractères qui permettent la transition.
+     * @param to
+     *        État d'arrivée.
+     */
+    void transition(int from, CharRanges label, int to)
+    {
+        transitionLabels.set(from, label);
+        transitionTargets.set(from, to);
+    }
+
+    /**
+     * Rend un état final.
+     * @param state
+     *        L'état.
+     * @param routeIndex
+     *        L'indice de la route reconnue.
+     */
+    void accept(int state, int routeIndex)
+    {
+        acceptedRoutes.set(state, routeIndex);
+    }
+
+    /**
+     * Indice de la route reconnue par un état.
+     * @param state
+     *        L'état.
+     * @return L'indice de la route ou NONE si l'état n'est pas final.
+     */
+    int acceptedRoute(int state)
+    {
+        return acceptedRoutes.get(state);
+    }
+
+    /**
+     * Fermeture par transitions vides d'un état, réduite aux états utiles :
+     * ceux qui portent une transition étiquetée ou qui sont finaux.
+     * @param state
+     *        L'état de départ.
+     * @return Les états utiles atteints, triés.
+     */
+    int[] closure(int state)
+    {
+        List<Integer> reached = new ArrayList<Integer>();
+        closure(state, new BitSet(size()), reached);
+        return sorted(reached);
+    }
+
+    /**
+     * Ensemble des états utiles atteints depuis un ensemble d'états en lisant
+     * un caractère.
+     * @param states
+     *        Les états de départ.
+     * @param codePoint
+     *        Le caractère lu.
+     * @return Les états utiles atteints, triés.
+     */
+    int[] move(int[] states, int codePoint)
+    {
+        List<Integer> reached = new ArrayList<Integer>();
+        BitSet visited = new BitSet(size());
+        for (int state : states)
+        {
+            CharRanges label = transitionLabels.get(state);
+            if (label != null && label.contains(codePoint))
+            {
+                closure(transitionTargets.get(state), visited, reached);
+            }
+        }
+        return sorted(reached);
+    }
+
+    /**
+     * Parcours des transitions vides depuis un état.
+     * @param state
+     *        L'état de départ.
+     * @param visited
+     *        Les états déjà visités.
+     * @param reached
+     *        Reçoit les états utiles atteints.
+     */
+    private void closure(int state, BitSet visited, List<Integer> reached)
+    {
+        Deque<Integer> toVisit = new ArrayDeque<Integer>();
+        toVisit.push(state);
+        while (!toVisit.isEmpty())
+        {
+            int current = toVisit.pop();
+            if (!visited.get(current))
+            {
+                visited.set(current);
+                if (transitionLabels.get(current) != null || acceptedRoutes.get(current) != NONE)
+                {
+                    reached.add(current);
+                }
+                for (int target : epsilonTargets.get(current))
+                {
+                    toVisit.push(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convertit une liste d'états en tableau trié.
+     * @param states
+     *        La liste.
+     * @return Le tableau trié.
+     */
+    private static int[] sorted(List<Integer> states)
+    {
+        int[] array = new int[states.size()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = states.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+}
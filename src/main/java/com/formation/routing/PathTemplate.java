@@ -0,0 +1,250 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Url-pattern à variables tel que /order/{id}/edit.do. Les parties fixes sont
+ * littérales, chaque variable correspond à au moins un caractère autre que
+ * '/'. Le modèle est analysé une fois pour toutes : la table de routage
+ * utilise l'expression régulière équivalente et, une fois la route trouvée,
+ * match relève la position des variables dans l'url sans autre allocation
+ * qu'un tableau de bornes.
+ * @author filippo
+ */
+public final class PathTemplate
+{
+    /**
+     * Début d'une variable.
+     */
+    private static final char VARIABLE_START = '{';
+    /**
+     * Fin d'une variable.
+     */
+    private static final char VARIABLE_END = '}';
+    /**
+     * Séparateur de segments d'url, qu'une variable ne peut contenir.
+     */
+    private static final char SEPARATOR = '/';
+    /**
+     * Parties fixes du modèle : literals[i] précède la variable i, la dernière
+     * partie suit la dernière variable. Seules la première et la dernière
+     * peuvent être vides.
+     */
+    private final String[] literals;
+    /**
+     * Noms des variables dans l'ordre du modèle.
+     */
+    private final String[] variableNames;
+
+    /**
+     * Constructeur privé, le modèle se construit avec compile.
+     * @param pLiterals
+     *        Parties fixes du modèle.
+     * @param pVariableNames
+     *        Noms des variables.
+     */
+    private PathTemplate(String[] pLiterals, String[] pVariableNames)
+    {
+        this.literals = pLiterals;
+        this.variableNames = pVariableNames;
+    }
+
+    /**
+     * Analyse un url-pattern.
+     * @param urlPattern
+     *        L'url-pattern déclaré.
+     * @return Le modèle ou null si l'url-pattern ne contient pas de variable
+     *         et doit être traité comme une expression régulière.
+     */
+    static PathTemplate compile(String urlPattern)
+    {
+        List<String> literals = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        int from = 0;
+        int start = nextVariableStart(urlPattern, 0);
+        while (start >= 0)
+        {
+            int end = urlPattern.indexOf(VARIABLE_END, start);
+            String literal = urlPattern.substring(from, start);
+            if (literal.isEmpty() && !names.isEmpty())
+            {
+                // deux variables accolées n'ont pas de frontière définie
+                return null;
+            }
+            literals.add(literal);
+            names.add(urlPattern.substring(start + 1, end));
+            from = end + 1;
+            start = nextVariableStart(urlPattern, from);
+        }
+        if (names.isEmpty())
+        {
+            return null;
+        }
+        literals.add(urlPattern.substring(from));
+        return new PathTemplate(literals.toArray(new String[literals.size()]), names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Position de la prochaine variable {identifiant}.
+     * @param urlPattern
+     *        L'url-pattern.
+     * @param from
+     *        Position de départ de la recherche.
+     * @return La position de l'accolade ouvrante ou -1.
+     */
+    private static int nextVariableStart(String urlPattern, int from)
+    {
+        int start = urlPattern.indexOf(VARIABLE_START, from);
+        while (start >= 0 && !isVariableAt(urlPattern, start))
+        {
+            start = urlPattern.indexOf(VARIABLE_START, start + 1);
+        }
+        return start;
+    }
+
+    /**
+     * Indique si une variable {identifiant} commence à la position indiquée.
+     * @param urlPattern
+     *        L'url-pattern.
+     * @param start
+     *        Position d'une accolade ouvrante.
+     * @return Vrai si un identifiant Java suivi d'une accolade fermante suit.
+     */
+    private static boolean isVariableAt(String urlPattern, int start)
+    {
+        int end = urlPattern.indexOf(VARIABLE_END, start);
+        if (end < start + 2 || !Character.isJavaIdentifierStart(urlPattern.charAt(start + 1)))
+        {
+            return false;
+        }
+        for (int i = start + 2; i < end; i++)
+        {
+            if (!Character.isJavaIdentifierPart(urlPattern.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expression régulière équivalente au modèle, utilisée par les tables de
+     * routage.
+     * @return L'expression régulière.
+     */
+    String toRegex()
+    {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < variableNames.length; i++)
+        {
+            appendEscaped(regex, literals[i]);
+            regex.append("[^/]+");
+        }
+        appendEscaped(regex, literals[variableNames.length]);
+        return regex.toString();
+    }
+
+    /**
+     * Ajoute un texte littéral à une expression régulière en échappant ses
+     * caractères non alphanumériques.
+     * @param regex
+     *        L'expression régulière en construction.
+     * @param literal
+     *        Le texte littéral.
+     */
+    private static void appendEscaped(StringBuilder regex, String literal)
+    {
+        for (int i = 0; i < literal.length(); i++)
+        {
+            char c = literal.charAt(i);
+            if (!Character.isLetterOrDigit(c))
+            {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+    }
+
+    /**
+     * Nombre de variables du modèle.
+     * @return Le nombre de variables.
+     */
+    public int getVariableCount()
+    {
+        return variableNames.length;
+    }
+
+    /**
+     * Nom d'une variable.
+     * @param index
+     *        Indice de la variable dans le modèle.
+     * @return Son nom.
+     */
+    public String getVariableName(int index)
+    {
+        return variableNames[index];
+    }
+
+    /**
+     * Relève la position des variables dans une url. Comme l'expression
+     * régulière équivalente, chaque variable prend le plus de caractères
+     * possible.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @return Les bornes de chaque variable : début de la variable i à
+     *         l'indice 2i, fin exclue à l'indice 2i+1. Null si l'url ne
+     *         correspond pas au modèle.
+     */
+    public int[] match(String urlPathInfo)
+    {
+        int[] bounds = new int[2 * variableNames.length];
+        if (matchFrom(urlPathInfo, 0, 0, bounds))
+        {
+            return bounds;
+        }
+        return null;
+    }
+
+    /**
+     * Correspondance de la fin de l'url avec la fin du modèle.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @param pos
+     *        Position de lecture dans l'url.
+     * @param variable
+     *        Indice de la partie fixe qui doit commencer à pos, suivie de la
+     *        variable de même indice.
+     * @param bounds
+     *        Reçoit les bornes des variables.
+     * @return Vrai si la fin de l'url correspond.
+     */
+    private boolean matchFrom(String urlPathInfo, int pos, int variable, int[] bounds)
+    {
+        String literal = literals[variable];
+        if (!urlPathInfo.startsWith(literal, pos))
+        {
+            return false;
+        }
+        int start = pos + literal.length();
+        if (variable == variableNames.length)
+        {
+            return start == urlPathInfo.length();
+        }
+        int segmentEnd = urlPathInfo.indexOf(SEPARATOR, start);
+        if (segmentEnd < 0)
+        {
+            segmentEnd = urlPathInfo.length();
+        }
+        for (int end = segmentEnd; end > start; end--)
+        {
+            if (matchFrom(urlPathInfo, end, variable + 1, bounds))
+            {
+                bounds[2 * variable] = start;
+                bounds[2 * variable + 1] = end;
+                return true;
+            }
+        }
+        return false;
+    }
+}
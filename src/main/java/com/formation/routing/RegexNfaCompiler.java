@@ -0,0 +1,596 @@
+package com.formation.routing;
+
+import com.formation.exceptions.checked.UnsupportedRegexSyntaxException;
+
+/**
+ * Compile un url-pattern dans l'automate de routage. Seul le sous-ensemble des
+ * expressions régulières dont le sens ne dépend que du texte reconnu est pris
+ * en charge : caractères, point, classes de caractères, \d \w \s et leurs
+ * négations, groupes, alternatives et quantificateurs gloutons ou paresseux.
+ * Tout le reste (références arrière, assertions, drapeaux, quantificateurs
+ * possessifs...) est refusé et la route doit être testée avec java.util.regex.
+ * @author filippo
+ */
+final class RegexNfaCompiler
+{
+    /**
+     * Borne supérieure d'une répétition non bornée.
+     */
+    private static final int UNBOUNDED = -1;
+    /**
+     * Nombre maximal de copies d'un élément répété {n,m} pour ne pas faire
+     * exploser la taille de l'automate.
+     */
+    private static final int MAX_REPETITIONS = 64;
+    /**
+     * Métacaractères qui ne peuvent pas commencer un élément.
+     */
+    private static final String MISPLACED_METACHARACTERS = ")|*+?{^$";
+    /**
+     * Base de numération des bornes de répétition.
+     */
+    private static final int RADIX = 10;
+    /**
+     * L'automate qui reçoit les états.
+     */
+    private final Nfa nfa;
+    /**
+     * L'url-pattern compilé.
+     */
+    private final String regex;
+    /**
+     * Position de lecture dans l'url-pattern.
+     */
+    private int pos;
+
+    /**
+     * Constructeur.
+     * @param pNfa
+     *        L'automate qui reçoit les états.
+     * @param pRegex
+     *        L'url-pattern à compiler.
+     */
+    private RegexNfaCompiler(Nfa pNfa, String pRegex)
+    {
+        this.nfa = pNfa;
+        this.regex = pRegex;
+    }
+
+    /**
+     * Compile un url-pattern dans l'automate.
+     * @param nfa
+     *        L'automate qui reçoit les états.
+     * @param regex
+     *        L'url-pattern.
+     * @param routeIndex
+     *        Indice de la route, porté par l'état final.
+     * @return L'état initial du fragment d'automate reconnaissant l'url-pattern.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si l'url-pattern utilise une syntaxe non prise en charge.
+     */
+    static int compile(Nfa nfa, String regex, int routeIndex) throws UnsupportedRegexSyntaxException
+    {
+        RegexNfaCompiler compiler = new RegexNfaCompiler(nfa, regex);
+        if (compiler.peekIs('^'))
+        {
+            compiler.pos++;
+        }
+        int[] fragment = compiler.parseAlternation();
+        if (compiler.peekIs('$') && compiler.pos == regex.length() - 1)
+        {
+            compiler.pos++;
+        }
+        if (compiler.pos != regex.length())
+        {
+            throw compiler.unsupported();
+        }
+        nfa.accept(fragment[1], routeIndex);
+        return fragment[0];
+    }
+
+    /**
+     * Alternative : séquence ('|' séquence)*.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseAlternation() throws UnsupportedRegexSyntaxException
+    {
+        int[] fragment = parseSequence();
+        while (peekIs('|'))
+        {
+            pos++;
+            int[] other = parseSequence();
+            int start = nfa.newState();
+            int end = nfa.newState();
+            nfa.epsilon(start, fragment[0]);
+            nfa.epsilon(start, other[0]);
+            nfa.epsilon(fragment[1], end);
+            nfa.epsilon(other[1], end);
+            fragment = new int[]
+            {
+                    start, end
+            };
+        }
+        return fragment;
+    }
+
+    /**
+     * Séquence d'éléments éventuellement quantifiés.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseSequence() throws UnsupportedRegexSyntaxException
+    {
+        int start = nfa.newState();
+        int current = start;
+        while (!atSequenceEnd())
+        {
+            int[] element = parseQuantified();
+            nfa.epsilon(current, element[0]);
+            current = element[1];
+        }
+        return new int[]
+        {
+                start, current
+        };
+    }
+
+    /**
+     * Indique si la séquence en cours se termine à la position de lecture.
+     * @return Vrai en fin d'url-pattern, sur '|', ')' ou sur un '$' final.
+     */
+    private boolean atSequenceEnd()
+    {
+        return pos == regex.length() || peekIs('|') || peekIs(')') || (peekIs('$') && pos == regex.length() - 1);
+    }
+
+    /**
+     * Élément suivi d'un éventuel quantificateur.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseQuantified() throws UnsupportedRegexSyntaxException
+    {
+        int atomStart = pos;
+        int[] atom = parseAtom();
+        int atomEnd = pos;
+        int[] bounds = parseQuantifier();
+        if (bounds == null)
+        {
+            return atom;
+        }
+        if (peekIs('+'))
+        {
+            throw unsupported();
+        }
+        if (peekIs('?'))
+        {
+            pos++;
+        }
+        return repeat(atom, regex.substring(atomStart, atomEnd), bounds[0], bounds[1]);
+    }
+
+    /**
+     * Lit un quantificateur.
+     * @return Les bornes {min, max} de la répétition ou null s'il n'y a pas de
+     *         quantificateur.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseQuantifier() throws UnsupportedRegexSyntaxException
+    {
+        if (pos == regex.length())
+        {
+            return null;
+        }
+        int[] bounds = null;
+        switch (regex.charAt(pos))
+        {
+            case '*':
+                bounds = new int[]
+                {
+                        0, UNBOUNDED
+                };
+                break;
+            case '+':
+                bounds = new int[]
+                {
+                        1, UNBOUNDED
+                };
+                break;
+            case '?':
+                bounds = new int[]
+                {
+                        0, 1
+                };
+                break;
+            case '{':
+                return parseCountedQuantifier();
+            default:
+                return null;
+        }
+        pos++;
+        return bounds;
+    }
+
+    /**
+     * Lit un quantificateur {n}, {n,} ou {n,m}.
+     * @return Les bornes {min, max} de la répétition.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseCountedQuantifier() throws UnsupportedRegexSyntaxException
+    {
+        int close = regex.indexOf('}', pos);
+        if (close < 0)
+        {
+            throw unsupported();
+        }
+        String[] parts = regex.substring(pos + 1, close).split(",", 2);
+        int min = parseCount(parts[0]);
+        int max = min;
+        if (parts.length == 2)
+        {
+            max = UNBOUNDED;
+            if (!parts[1].isEmpty())
+            {
+                max = parseCount(parts[1]);
+            }
+        }
+        if (max != UNBOUNDED && max < min)
+        {
+            throw unsupported();
+        }
+        pos = close + 1;
+        return new int[]
+        {
+                min, max
+        };
+    }
+
+    /**
+     * Lit une borne de répétition.
+     * @param count
+     *        La borne écrite dans l'url-pattern.
+     * @return La borne.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la borne n'est pas un entier ou dépasse MAX_REPETITIONS.
+     */
+    private int parseCount(String count) throws UnsupportedRegexSyntaxException
+    {
+        for (int i = 0; i < count.length(); i++)
+        {
+            if (Character.digit(count.charAt(i), RADIX) < 0)
+            {
+                throw unsupported();
+            }
+        }
+        if (count.isEmpty() || count.length() > 2 || Integer.parseInt(count) > MAX_REPETITIONS)
+        {
+            throw unsupported();
+        }
+        return Integer.parseInt(count);
+    }
+
+    /**
+     * Construit la répétition d'un élément. Les copies nécessaires de l'élément
+     * sont obtenues en recompilant son texte.
+     * @param atom
+     *        Le fragment de la première copie de l'élément.
+     * @param atomText
+     *        Le texte de l'élément.
+     * @param min
+     *        Nombre minimal de répétitions.
+     * @param max
+     *        Nombre maximal de répétitions ou UNBOUNDED.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] repeat(int[] atom, String atomText, int min, int max) throws UnsupportedRegexSyntaxException
+    {
+        int start = nfa.newState();
+        int current = start;
+        int[] copy = atom;
+        // une copie n'est recompilée qu'au passage qui la câble : aucun
+        // fragment orphelin ne reste dans l'automate
+        boolean copyWired = false;
+        for (int i = 0; i < min; i++)
+        {
+            if (copyWired)
+            {
+                copy = new RegexNfaCompiler(nfa, atomText).parseAtom();
+            }
+            nfa.epsilon(current, copy[0]);
+            current = copy[1];
+            copyWired = true;
+        }
+        if (max == UNBOUNDED)
+        {
+            if (copyWired)
+            {
+                copy = new RegexNfaCompiler(nfa, atomText).parseAtom();
+            }
+            int end = nfa.newState();
+            nfa.epsilon(current, copy[0]);
+            nfa.epsilon(current, end);
+            nfa.epsilon(copy[1], copy[0]);
+            nfa.epsilon(copy[1], end);
+            current = end;
+        }
+        for (int i = min; i < max; i++)
+        {
+            if (copyWired)
+            {
+                copy = new RegexNfaCompiler(nfa, atomText).parseAtom();
+            }
+            int end = nfa.newState();
+            nfa.epsilon(current, copy[0]);
+            nfa.epsilon(current, end);
+            nfa.epsilon(copy[1], end);
+            current = end;
+            copyWired = true;
+        }
+        return new int[]
+        {
+                start, current
+        };
+    }
+
+    /**
+     * Élément simple : caractère, point, classe, échappement ou groupe.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseAtom() throws UnsupportedRegexSyntaxException
+    {
+        int c = regex.codePointAt(pos);
+        if (c == '(')
+        {
+            return parseGroup();
+        }
+        if (c == '[')
+        {
+            return single(parseClass());
+        }
+        if (c == '\\')
+        {
+            return single(parseEscape());
+        }
+        if (MISPLACED_METACHARACTERS.indexOf(c) >= 0)
+        {
+            throw unsupported();
+        }
+        pos += Character.charCount(c);
+        if (c == '.')
+        {
+            return single(CharRanges.ANY_BUT_LINE_TERMINATORS);
+        }
+        return single(CharRanges.of(c));
+    }
+
+    /**
+     * Groupe (...) ou (?:...). Les autres constructions (?...) ne sont pas
+     * prises en charge.
+     * @return Le fragment {état initial, état final}.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private int[] parseGroup() throws UnsupportedRegexSyntaxException
+    {
+        pos++;
+        if (regex.startsWith("?:", pos))
+        {
+            pos += 2;
+        }
+        else if (peekIs('?'))
+        {
+            throw unsupported();
+        }
+        int[] fragment = parseAlternation();
+        if (!peekIs(')'))
+        {
+            throw unsupported();
+        }
+        pos++;
+        return fragment;
+    }
+
+    /**
+     * Classe de caractères [...] ou [^...]. Les classes imbriquées et les
+     * intersections ne sont pas prises en charge.
+     * @return L'ensemble des caractères de la classe.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private CharRanges parseClass() throws UnsupportedRegexSyntaxException
+    {
+        pos++;
+        boolean negated = peekIs('^');
+        if (negated)
+        {
+            pos++;
+        }
+        CharRanges members = parseClassMember();
+        while (!peekIs(']'))
+        {
+            members = members.union(parseClassMember());
+        }
+        pos++;
+        if (negated)
+        {
+            return members.negate();
+        }
+        return members;
+    }
+
+    /**
+     * Membre d'une classe de caractères : caractère, échappement ou
+     * intervalle a-z.
+     * @return L'ensemble des caractères du membre.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private CharRanges parseClassMember() throws UnsupportedRegexSyntaxException
+    {
+        CharRanges low = parseClassCharacter();
+        if (peekIs('-') && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']')
+        {
+            pos++;
+            int lo = low.singleCodePoint();
+            int hi = parseClassCharacter().singleCodePoint();
+            if (lo < 0 || hi < lo)
+            {
+                throw unsupported();
+            }
+            return CharRanges.range(lo, hi);
+        }
+        return low;
+    }
+
+    /**
+     * Caractère ou échappement à l'intérieur d'une classe.
+     * @return L'ensemble des caractères désignés.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private CharRanges parseClassCharacter() throws UnsupportedRegexSyntaxException
+    {
+        if (pos == regex.length() || peekIs('[') || peekIs(']') || regex.startsWith("&&", pos))
+        {
+            throw unsupported();
+        }
+        if (peekIs('\\'))
+        {
+            return parseEscape();
+        }
+        int c = regex.codePointAt(pos);
+        pos += Character.charCount(c);
+        return CharRanges.of(c);
+    }
+
+    /**
+     * Échappement : \d \w \s et leurs négations, \t \n \r \f ou caractère non
+     * alphanumérique échappé.
+     * @return L'ensemble des caractères désignés.
+     * @throws UnsupportedRegexSyntaxException
+     *         Si la syntaxe n'est pas prise en charge.
+     */
+    private CharRanges parseEscape() throws UnsupportedRegexSyntaxException
+    {
+        pos++;
+        if (pos == regex.length())
+        {
+            throw unsupported();
+        }
+        int c = regex.codePointAt(pos);
+        pos += Character.charCount(c);
+        CharRanges predefined = predefinedClass(c);
+        if (predefined != null)
+        {
+            return predefined;
+        }
+        if (Character.isLetterOrDigit(c))
+        {
+            throw unsupported();
+        }
+        return CharRanges.of(c);
+    }
+
+    /**
+     * Classes prédéfinies et caractères de contrôle désignés par une lettre.
+     * @param letter
+     *        La lettre qui suit le caractère d'échappement.
+     * @return L'ensemble désigné ou null si la lettre n'est pas prise en
+     *         charge.
+     */
+    private static CharRanges predefinedClass(int letter)
+    {
+        CharRanges predefined;
+        switch (Character.toLowerCase(letter))
+        {
+            case 'd':
+                predefined = CharRanges.DIGITS;
+                break;
+            case 'w':
+                predefined = CharRanges.WORD_CHARACTERS;
+                break;
+            case 's':
+                predefined = CharRanges.SPACES;
+                break;
+            default:
+                return controlCharacter(letter);
+        }
+        if (Character.isUpperCase(letter))
+        {
+            return predefined.negate();
+        }
+        return predefined;
+    }
+
+    /**
+     * Caractères de contrôle désignés par une lettre.
+     * @param letter
+     *        La lettre qui suit le caractère d'échappement.
+     * @return L'ensemble désigné ou null si la lettre n'est pas prise en
+     *         charge.
+     */
+    private static CharRanges controlCharacter(int letter)
+    {
+        switch (letter)
+        {
+            case 't':
+                return CharRanges.of('\t');
+            case 'n':
+                return CharRanges.of('\n');
+            case 'r':
+                return CharRanges.of('\r');
+            case 'f':
+                return CharRanges.of('\f');
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Fragment reconnaissant un caractère d'un ensemble.
+     * @param label
+     *        L'ensemble de caractères.
+     * @return Le fragment {état initial, état final}.
+     */
+    private int[] single(CharRanges label)
+    {
+        int start = nfa.newState();
+        int end = nfa.newState();
+        nfa.transition(start, label, end);
+        return new int[]
+        {
+                start, end
+        };
+    }
+
+    /**
+     * Indique si le caractère à la position de lecture est celui indiqué.
+     * @param c
+     *        Le caractère attendu.
+     * @return Vrai si c'est le cas.
+     */
+    private boolean peekIs(char c)
+    {
+        return pos < regex.length() && regex.charAt(pos) == c;
+    }
+
+    /**
+     * Exception signalant une syntaxe non prise en charge à la position de
+     * lecture.
+     * @return L'exception à lever.
+     */
+    private UnsupportedRegexSyntaxException unsupported()
+    {
+        return new UnsupportedRegexSyntaxException("The url-pattern " + regex + " uses a regular expression construct at index " + pos + " that the routing automaton does not support.");
+    }
+}
@@ -0,0 +1,62 @@
+package com.formation.routing;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Routes dont l'url-pattern est testé avec une expression régulière
+ * précompilée, dans l'ordre de déclaration.
+ * @author filippo
+ */
+final class RegexRoutes
+{
+    /**
+     * Les routes, dans l'ordre de déclaration.
+     */
+    private final Route[] routes;
+    /**
+     * Expressions régulières précompilées des routes, au même indice.
+     */
+    private final Pattern[] patterns;
+
+    /**
+     * Constructeur.
+     * @param pRoutes
+     *        Les routes, dans l'ordre de déclaration.
+     */
+    RegexRoutes(List<Route> pRoutes)
+    {
+        this.routes = pRoutes.toArray(new Route[pRoutes.size()]);
+        this.patterns = new Pattern[routes.length];
+        for (int i = 0; i < routes.length; i++)
+        {
+            patterns[i] = routes[i].getPattern();
+        }
+    }
+
+    /**
+     * Renvoie la première route déclarée avant la route indiquée dont
+     * l'url-pattern correspond à l'url demandée, sinon la route indiquée.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @param found
+     *        La route déjà trouvée par ailleurs, ou null.
+     * @return La première route déclarée qui correspond, ou null.
+     */
+    Route firstMatchBefore(String urlPathInfo, Route found)
+    {
+        int limit = Integer.MAX_VALUE;
+        if (found != null)
+        {
+            limit = found.getDeclarationIndex();
+        }
+        for (int i = 0; i < routes.length && routes[i].getDeclarationIndex() < limit; i++)
+        {
+            if (patterns[i].matcher(urlPathInfo).matches())
+            {
+                return routes[i];
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,333 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import com.formation.annotations.ActionScope;
+import com.formation.annotations.FormScope;
+import com.formation.archetypes.Action;
+import com.formation.archetypes.ActionForm;
+import com.formation.exceptions.runtime.WrongActionCanonicalNameSpecifiedException;
+import com.formation.exceptions.runtime.WrongActionFormCanonicalNameSpecifiedException;
+import com.formation.factory.Factory;
+
+/**
+ * Entrée immuable d'une table de routage : un url-pattern et le couple Action
+ * et ActionForm qui lui est associé. Les classes de l'Action et de l'ActionForm
+ * sont chargées à la création de la route, c'est à dire à la construction du
+ * registre : une classe introuvable est signalée au démarrage et les requêtes
+ * ne passent plus par le ClassLoader.
+ * @author filippo
+ */
+public final class Route
+{
+    /**
+     * Rang de déclaration de la route dans la configuration. Quand plusieurs
+     * url-pattern correspondent à une même url c'est la route de plus petit
+     * rang qui l'emporte.
+     */
+    private final int declarationIndex;
+    /**
+     * L'url-pattern tel qu'il a été déclaré par l'utilisateur.
+     */
+    private final String urlPattern;
+    /**
+     * Les noms canoniques de l'Action et de l'ActionForm associés.
+     */
+    private final String[] canonicalNames;
+    /**
+     * La portée de l'Action.
+     */
+    private final ActionScope actionScope;
+    /**
+     * La classe de l'Action.
+     */
+    private final Class<? extends Action> actionClass;
+    /**
+     * La classe de l'ActionForm, ou null si aucun ActionForm ne porte le nom
+     * de formulaire de l'Action.
+     */
+    private final Class<? extends ActionForm> formClass;
+    /**
+     * La portée de l'ActionForm, lue une seule fois dans son annotation.
+     */
+    private final FormScope formScope;
+    /**
+     * Le modèle de l'url-pattern s'il contient des variables, sinon null.
+     */
+    private final PathTemplate template;
+    /**
+     * L'expression régulière à laquelle doit correspondre l'url : l'url-pattern
+     * lui-même ou l'expression équivalente à son modèle.
+     */
+    private final String regex;
+    /**
+     * L'expression régulière compilée, au premier besoin seulement : les
+     * routes littérales n'en ont pas l'usage.
+     */
+    private volatile Pattern pattern;
+
+    /**
+     * Constructeur. Un url-pattern contenant des variables {nom} est analysé
+     * en modèle, les autres sont des expressions régulières.
+     * @param pDeclarationIndex
+     *        Rang de déclaration de la route dans la configuration.
+     * @param pUrlPattern
+     *        L'url-pattern déclaré.
+     * @param pCanonicalNames
+     *        Les noms canoniques de l'Action et de l'ActionForm associés,
+     *        suivis du nom de la portée de l'Action ; une portée absente vaut
+     *        SESSION.
+     * @throws WrongActionCanonicalNameSpecifiedException
+     *         Si la classe de l'Action ne peut être chargée ou n'implémente
+     *         pas Action.
+     * @throws WrongActionFormCanonicalNameSpecifiedException
+     *         Si la classe de l'ActionForm ne peut être chargée ou n'hérite pas
+     *         d'ActionForm.
+     */
+    public Route(int pDeclarationIndex, String pUrlPattern, String[] pCanonicalNames)
+    {
+        this.declarationIndex = pDeclarationIndex;
+        this.urlPattern = pUrlPattern;
+        this.canonicalNames = pCanonicalNames;
+        ActionScope scope = ActionScope.SESSION;
+        Class<? extends Action> action = null;
+        Class<? extends ActionForm> form = null;
+        if (pCanonicalNames != null)
+        {
+            if (pCanonicalNames.length > 2 && pCanonicalNames[2] != null)
+            {
+                scope = ActionScope.valueOf(pCanonicalNames[2]);
+            }
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            action = loadActionClass(pCanonicalNames[0], pUrlPattern, classLoader);
+            if (pCanonicalNames[1] != null)
+            {
+                form = loadFormClass(pCanonicalNames[1], pUrlPattern, classLoader);
+            }
+        }
+        this.actionScope = scope;
+        this.actionClass = action;
+        this.formClass = form;
+        FormScope scopeOfForm = FormScope.SESSION;
+        if (form != null)
+        {
+            scopeOfForm = Factory.getScope(form);
+        }
+        this.formScope = scopeOfForm;
+        PathTemplate compiled = null;
+        String routeRegex = pUrlPattern;
+        if (pUrlPattern != null)
+        {
+            compiled = PathTemplate.compile(pUrlPattern);
+        }
+        if (compiled != null)
+        {
+            routeRegex = compiled.toRegex();
+        }
+        this.template = compiled;
+        this.regex = routeRegex;
+    }
+
+    /**
+     * Constructeur de copie qui change le rang de déclaration et garde le
+     * modèle et l'expression régulière déjà compilés.
+     * @param pDeclarationIndex
+     *        Le nouveau rang de déclaration.
+     * @param route
+     *        La route copiée.
+     */
+    private Route(int pDeclarationIndex, Route route)
+    {
+        this.declarationIndex = pDeclarationIndex;
+        this.urlPattern = route.urlPattern;
+        this.canonicalNames = route.canonicalNames;
+        this.actionScope = route.actionScope;
+        this.actionClass = route.actionClass;
+        this.formClass = route.formClass;
+        this.formScope = route.formScope;
+        this.template = route.template;
+        this.regex = route.regex;
+        this.pattern = route.pattern;
+    }
+
+    /**
+     * Charge, sans l'initialiser, la classe d'une Action.
+     * @param className
+     *        Le nom de la classe.
+     * @param pUrlPattern
+     *        L'url-pattern de la route, pour le message d'erreur.
+     * @param classLoader
+     *        Le ClassLoader de l'application hôte.
+     * @return La classe.
+     */
+    private static Class<? extends Action> loadActionClass(String className, String pUrlPattern, ClassLoader classLoader)
+    {
+        try
+        {
+            return Class.forName(className, false, classLoader).asSubclass(Action.class);
+        }
+        catch (ClassNotFoundException | LinkageError | ClassCastException e)
+        {
+            throw new WrongActionCanonicalNameSpecifiedException("The Action class full name " + className + " you specified in the configuration file for " + pUrlPattern + " is incorrect. Please check it. Or its class can't be loaded or does not implement " + Action.class.getName() + "." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Charge, sans l'initialiser, la classe d'un ActionForm.
+     * @param className
+     *        Le nom de la classe.
+     * @param pUrlPattern
+     *        L'url-pattern de la route, pour le message d'erreur.
+     * @param classLoader
+     *        Le ClassLoader de l'application hôte.
+     * @return La classe.
+     */
+    private static Class<? extends ActionForm> loadFormClass(String className, String pUrlPattern, ClassLoader classLoader)
+    {
+        try
+        {
+            return Class.forName(className, false, classLoader).asSubclass(ActionForm.class);
+        }
+        catch (ClassNotFoundException | LinkageError | ClassCastException e)
+        {
+            throw new WrongActionFormCanonicalNameSpecifiedException("Whether the ActionForm class full name " + className + " you specified in the configuration file for " + pUrlPattern + " is incorrect. Please check it. Or its class can't be loaded or does not extend " + ActionForm.class.getName() + "." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Crée les routes déclarées dans une map.
+     * @param actionsAndFormsMap
+     *        Une map qui contient en clef les url-pattern et en valeur les
+     *        couple Action et ActionForm associés, dans l'ordre de déclaration.
+     * @return Les routes, dans l'ordre de déclaration.
+     */
+    public static List<Route> declaredIn(Map<String, String[]> actionsAndFormsMap)
+    {
+        List<Route> routes = new ArrayList<Route>(actionsAndFormsMap.size());
+        for (Entry<String, String[]> e : actionsAndFormsMap.entrySet())
+        {
+            routes.add(new Route(routes.size(), e.getKey(), e.getValue()));
+        }
+        return routes;
+    }
+
+    /**
+     * Même route à un autre rang de déclaration, sans recompiler son
+     * url-pattern.
+     * @param pDeclarationIndex
+     *        Le nouveau rang de déclaration.
+     * @return Cette route si le rang est inchangé, sinon une copie.
+     */
+    public Route withDeclarationIndex(int pDeclarationIndex)
+    {
+        if (pDeclarationIndex == declarationIndex)
+        {
+            return this;
+        }
+        return new Route(pDeclarationIndex, this);
+    }
+
+    /**
+     * Getter du rang de déclaration.
+     * @return Le rang de déclaration de la route dans la configuration.
+     */
+    public int getDeclarationIndex()
+    {
+        return declarationIndex;
+    }
+
+    /**
+     * Getter de l'url-pattern.
+     * @return L'url-pattern déclaré.
+     */
+    public String getUrlPattern()
+    {
+        return urlPattern;
+    }
+
+    /**
+     * Getter des noms canoniques de l'Action et de l'ActionForm.
+     * @return Les noms canoniques de l'Action et de l'ActionForm sous forme de
+     *         String[], tels qu'ils figurent dans la map des actions et forms.
+     */
+    public String[] getCanonicalNames()
+    {
+        return canonicalNames;
+    }
+
+    /**
+     * Getter de la portée de l'Action.
+     * @return La portée de l'Action associée.
+     */
+    public ActionScope getActionScope()
+    {
+        return actionScope;
+    }
+
+    /**
+     * Getter de la classe de l'Action.
+     * @return La classe de l'Action associée.
+     */
+    public Class<? extends Action> getActionClass()
+    {
+        return actionClass;
+    }
+
+    /**
+     * Getter de la classe de l'ActionForm.
+     * @return La classe de l'ActionForm associé, ou null si aucun ActionForm
+     *         ne porte le nom de formulaire de l'Action.
+     */
+    public Class<? extends ActionForm> getFormClass()
+    {
+        return formClass;
+    }
+
+    /**
+     * Getter de la portée de l'ActionForm.
+     * @return La portée de l'ActionForm associé, SESSION s'il n'est pas
+     *         annoté ou s'il n'y a pas d'ActionForm.
+     */
+    public FormScope getFormScope()
+    {
+        return formScope;
+    }
+
+    /**
+     * Getter du modèle de l'url-pattern.
+     * @return Le modèle si l'url-pattern contient des variables, sinon null.
+     */
+    public PathTemplate getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * Getter de l'expression régulière à laquelle doit correspondre l'url.
+     * @return L'url-pattern ou, s'il contient des variables, l'expression
+     *         régulière équivalente.
+     */
+    String getRegex()
+    {
+        return regex;
+    }
+
+    /**
+     * Getter de l'expression régulière compilée, compilée au premier appel.
+     * @return L'expression régulière à laquelle doit correspondre l'url.
+     */
+    Pattern getPattern()
+    {
+        Pattern compiled = pattern;
+        if (compiled == null)
+        {
+            compiled = Pattern.compile(regex);
+            pattern = compiled;
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,154 @@
+package com.formation.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache borné placé devant une table de routage. La plupart des requêtes
+ * portant sur un petit nombre d'urls, la route trouvée pour chaque url est
+ * mémorisée, y compris l'absence de route pour que les urls inconnues ne
+ * coûtent pas une recherche complète à chaque fois. Le cache est découpé en
+ * segments verrouillés indépendamment, chacun évinçant la route la moins
+ * récemment utilisée quand il est plein.
+ * @author filippo
+ */
+public final class RouteCache implements Router
+{
+    /**
+     * Nombre de segments d'un cache de taille suffisante.
+     */
+    private static final int SEGMENTS = 16;
+    /**
+     * Décalage qui ramène les bits de poids fort du hash dans ses bits de
+     * poids faible.
+     */
+    private static final int HASH_SPREAD_SHIFT = 16;
+    /**
+     * Valeur mémorisée pour une url qui ne correspond à aucune route.
+     */
+    private static final Route NO_ROUTE = new Route(-1, null, null);
+    /**
+     * La table de routage dont les réponses sont mémorisées.
+     */
+    private final Router router;
+    /**
+     * Les segments du cache.
+     */
+    private final RouteCacheSegment[] segments;
+    /**
+     * Nombre de recherches servies par le cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Nombre de recherches transmises à la table de routage.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * Nombre de routes évincées du cache.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructeur.
+     * @param pRouter
+     *        La table de routage dont les réponses sont mémorisées.
+     * @param maxSize
+     *        Nombre maximal d'urls mémorisées, strictement positif.
+     */
+    public RouteCache(Router pRouter, int maxSize)
+    {
+        this.router = pRouter;
+        int segmentCount = Math.min(SEGMENTS, maxSize);
+        this.segments = new RouteCacheSegment[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+        {
+            // les premiers segments reçoivent le reste de la division
+            int capacity = maxSize / segmentCount;
+            if (i < maxSize % segmentCount)
+            {
+                capacity++;
+            }
+            segments[i] = new RouteCacheSegment(capacity, evictions);
+        }
+    }
+
+    @Override
+    public Route resolve(String urlPathInfo)
+    {
+        RouteCacheSegment segment = segmentFor(urlPathInfo);
+        Route route;
+        synchronized (segment)
+        {
+            route = segment.get(urlPathInfo);
+        }
+        if (route == null)
+        {
+            misses.incrementAndGet();
+            route = router.resolve(urlPathInfo);
+            if (route == null)
+            {
+                route = NO_ROUTE;
+            }
+            synchronized (segment)
+            {
+                segment.put(urlPathInfo, route);
+            }
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        if (route == NO_ROUTE)
+        {
+            return null;
+        }
+        return route;
+    }
+
+    /**
+     * Segment où est rangée une url.
+     * @param urlPathInfo
+     *        L'url.
+     * @return Le segment.
+     */
+    private RouteCacheSegment segmentFor(String urlPathInfo)
+    {
+        int hash = urlPathInfo.hashCode();
+        // mélange des bits de poids fort, les urls ne différant souvent que
+        // par leur fin
+        hash ^= hash >>> HASH_SPREAD_SHIFT;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    /**
+     * Getter du nombre de recherches servies par le cache.
+     * @return Le nombre de succès.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Getter du nombre de recherches transmises à la table de routage.
+     * @return Le nombre d'échecs.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Getter du nombre de routes évincées du cache.
+     * @return Le nombre d'évictions.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RouteCache[hits=" + hits.get() + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+    }
+}
@@ -0,0 +1,56 @@
+package com.formation.routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Segment du cache de routage : une map ordonnée par accès qui évince la
+ * route la moins récemment utilisée quand sa capacité est atteinte. Un
+ * segment n'est pas synchronisé, c'est RouteCache qui le verrouille.
+ * @author filippo
+ */
+final class RouteCacheSegment extends LinkedHashMap<String, Route>
+{
+    /**
+     * N° de version.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Facteur de charge de la map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * Nombre maximal de routes du segment.
+     */
+    private final int capacity;
+    /**
+     * Compteur d'évictions partagé par tous les segments.
+     */
+    private final AtomicLong evictions;
+
+    /**
+     * Constructeur.
+     * @param pCapacity
+     *        Nombre maximal de routes du segment.
+     * @param pEvictions
+     *        Compteur d'évictions partagé par tous les segments.
+     */
+    RouteCacheSegment(int pCapacity, AtomicLong pEvictions)
+    {
+        super((int) (pCapacity / LOAD_FACTOR) + 1, LOAD_FACTOR, true);
+        this.capacity = pCapacity;
+        this.evictions = pEvictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Route> eldest)
+    {
+        if (size() > capacity)
+        {
+            evictions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+}
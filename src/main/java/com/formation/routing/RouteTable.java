@@ -0,0 +1,209 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table de routage immuable construite une seule fois à partir de la map des
+ * actions et forms. Les url-pattern littéraux (sans autre métacaractère que le
+ * point) sont retrouvés par une recherche dans une table de hachage, seuls les
+ * url-pattern qui sont de vraies expressions régulières sont précompilés et
+ * testés un à un. Comme avec la map d'origine, lorsque plusieurs url-pattern
+ * correspondent à l'url demandée c'est le premier déclaré qui l'emporte.
+ * @author filippo
+ */
+public final class RouteTable implements Router
+{
+    /**
+     * Métacaractères qui font d'un url-pattern une vraie expression régulière.
+     * Le point n'y figure pas, il est traité par les groupes de routes
+     * littérales.
+     */
+    private static final String REGEX_METACHARACTERS = "^$|?*+()[]{}";
+    /**
+     * Caractère d'échappement des expressions régulières.
+     */
+    private static final char ESCAPE = '\\';
+    /**
+     * Routes littérales regroupées par longueur d'url-pattern.
+     */
+    private final Map<Integer, List<LiteralRouteGroup>> literalRoutesByLength;
+    /**
+     * Routes dont l'url-pattern est une vraie expression régulière.
+     */
+    private final RegexRoutes regexRoutes;
+
+    /**
+     * Constructeur privé, la table se construit avec build.
+     * @param pLiteralRoutesByLength
+     *        Routes littérales regroupées par longueur.
+     * @param pRegexRoutes
+     *        Routes expressions régulières dans l'ordre de déclaration.
+     */
+    private RouteTable(Map<Integer, List<LiteralRouteGroup>> pLiteralRoutesByLength, List<Route> pRegexRoutes)
+    {
+        this.literalRoutesByLength = pLiteralRoutesByLength;
+        this.regexRoutes = new RegexRoutes(pRegexRoutes);
+    }
+
+    /**
+     * Construit la table de routage.
+     * @param actionsAndFormsMap
+     *        Une map qui contient en clef les url-pattern et en valeur les
+     *        couple Action et ActionForm associés, dans l'ordre de déclaration.
+     * @return La table de routage.
+     */
+    public static RouteTable build(Map<String, String[]> actionsAndFormsMap)
+    {
+        return build(Route.declaredIn(actionsAndFormsMap));
+    }
+
+    /**
+     * Construit la table de routage à partir de routes déjà créées, par
+     * exemple conservées d'une table précédente.
+     * @param routes
+     *        Les routes, dans l'ordre de déclaration.
+     * @return La table de routage.
+     */
+    public static RouteTable build(List<Route> routes)
+    {
+        Map<Integer, List<LiteralRouteGroup>> literalRoutesByLength = new HashMap<Integer, List<LiteralRouteGroup>>();
+        List<Route> regexRoutes = new ArrayList<Route>();
+        for (Route route : routes)
+        {
+            if (!addLiteralRoute(literalRoutesByLength, route))
+            {
+                regexRoutes.add(route);
+            }
+        }
+        return new RouteTable(literalRoutesByLength, regexRoutes);
+    }
+
+    @Override
+    public Route resolve(String urlPathInfo)
+    {
+        return regexRoutes.firstMatchBefore(urlPathInfo, resolveLiteral(urlPathInfo));
+    }
+
+    /**
+     * Cherche parmi les routes littérales de même longueur que l'url demandée
+     * la première déclarée qui lui correspond.
+     * @param urlPathInfo
+     *        L'url demandée.
+     * @return La route littérale trouvée ou null.
+     */
+    private Route resolveLiteral(String urlPathInfo)
+    {
+        List<LiteralRouteGroup> groups = literalRoutesByLength.get(urlPathInfo.length());
+        if (groups == null)
+        {
+            return null;
+        }
+        Route best = null;
+        for (LiteralRouteGroup group : groups)
+        {
+            Route candidate = group.lookup(urlPathInfo);
+            if (candidate != null && (best == null || candidate.getDeclarationIndex() < best.getDeclarationIndex()))
+            {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Ajoute la route aux routes littérales si son url-pattern ne contient pas
+     * d'autre métacaractère que le point.
+     * @param literalRoutesByLength
+     *        Routes littérales regroupées par longueur.
+     * @param route
+     *        La route à ajouter.
+     * @return Vrai si la route était littérale et a été ajoutée.
+     */
+    private static boolean addLiteralRoute(Map<Integer, List<LiteralRouteGroup>> literalRoutesByLength, Route route)
+    {
+        StringBuilder key = new StringBuilder();
+        List<Integer> wildcards = new ArrayList<Integer>();
+        if (!unescapeLiteral(route.getRegex(), key, wildcards))
+        {
+            return false;
+        }
+        int[] positions = new int[wildcards.size()];
+        for (int i = 0; i < positions.length; i++)
+        {
+            positions[i] = wildcards.get(i);
+        }
+        List<LiteralRouteGroup> groups = literalRoutesByLength.get(key.length());
+        if (groups == null)
+        {
+            groups = new ArrayList<LiteralRouteGroup>();
+            literalRoutesByLength.put(key.length(), groups);
+        }
+        groupWithWildcardsAt(groups, positions).add(key.toString(), route);
+        return true;
+    }
+
+    /**
+     * Renvoie le groupe dont les jokers sont aux positions indiquées en le
+     * créant s'il n'existe pas encore.
+     * @param groups
+     *        Les groupes de routes littérales d'une longueur donnée.
+     * @param positions
+     *        Positions des jokers.
+     * @return Le groupe correspondant.
+     */
+    private static LiteralRouteGroup groupWithWildcardsAt(List<LiteralRouteGroup> groups, int[] positions)
+    {
+        for (LiteralRouteGroup group : groups)
+        {
+            if (group.hasWildcardsAt(positions))
+            {
+                return group;
+            }
+        }
+        LiteralRouteGroup group = new LiteralRouteGroup(positions);
+        groups.add(group);
+        return group;
+    }
+
+    /**
+     * Retire les caractères d'échappement d'un url-pattern littéral et relève
+     * la position de ses jokers.
+     * @param urlPattern
+     *        L'url-pattern à analyser.
+     * @param key
+     *        Reçoit l'url-pattern débarrassé de ses caractères d'échappement.
+     * @param wildcards
+     *        Reçoit les positions des jokers dans la clef.
+     * @return Vrai si l'url-pattern est littéral, faux si c'est une vraie
+     *         expression régulière.
+     */
+    private static boolean unescapeLiteral(String urlPattern, StringBuilder key, List<Integer> wildcards)
+    {
+        for (int i = 0; i < urlPattern.length(); i++)
+        {
+            char c = urlPattern.charAt(i);
+            if (c == ESCAPE)
+            {
+                i++;
+                if (i == urlPattern.length() || Character.isLetterOrDigit(urlPattern.charAt(i)))
+                {
+                    return false;
+                }
+                c = urlPattern.charAt(i);
+            }
+            else if (c == LiteralRouteGroup.WILDCARD)
+            {
+                wildcards.add(key.length());
+            }
+            else if (REGEX_METACHARACTERS.indexOf(c) >= 0)
+            {
+                return false;
+            }
+            key.append(c);
+        }
+        return true;
+    }
+}
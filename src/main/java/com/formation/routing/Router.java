@@ -0,0 +1,19 @@
+package com.formation.routing;
+
+/**
+ * Interface des tables de routage qui retrouvent, pour une url demandée, la
+ * route déclarée qui lui correspond.
+ * @author filippo
+ */
+public interface Router
+{
+    /**
+     * Renvoie la route dont l'url-pattern correspond à l'url demandée.
+     * Lorsque plusieurs url-pattern correspondent c'est le premier déclaré qui
+     * l'emporte.
+     * @param urlPathInfo
+     *        La terminaison d'url demandée correspodant à l'action demandée.
+     * @return La route trouvée ou null si aucune ne correspond.
+     */
+    Route resolve(String urlPathInfo);
+}
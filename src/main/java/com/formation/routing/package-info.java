@@ -0,0 +1,4 @@
+/**
+ * Ce package contient les tables de routage qui associent l'url demandée au couple Action et ActionForm déclaré par l'utilisateur.
+ */
+package com.formation.routing;
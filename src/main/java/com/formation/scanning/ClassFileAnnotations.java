@@ -0,0 +1,420 @@
+package com.formation.scanning;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Lecteur de fichier class qui indique si la classe porte l'une des
+ * annotations cherchées. Seules la table des constantes et les attributs de la
+ * classe sont lus : si aucun des descripteurs cherchés ne figure dans la table
+ * des constantes, la lecture s'arrête là.
+ * @author filippo
+ */
+final class ClassFileAnnotations
+{
+    /**
+     * Nombre magique qui ouvre tout fichier class.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+    /**
+     * Nom de l'attribut qui contient les annotations visibles à l'exécution.
+     */
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    /**
+     * Taille du tampon de lecture.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Constante Utf8.
+     */
+    private static final int CONSTANT_UTF8 = 1;
+    /**
+     * Constante Integer.
+     */
+    private static final int CONSTANT_INTEGER = 3;
+    /**
+     * Constante Float.
+     */
+    private static final int CONSTANT_FLOAT = 4;
+    /**
+     * Constante Long, qui occupe deux entrées de la table.
+     */
+    private static final int CONSTANT_LONG = 5;
+    /**
+     * Constante Double, qui occupe deux entrées de la table.
+     */
+    private static final int CONSTANT_DOUBLE = 6;
+    /**
+     * Constante Class.
+     */
+    private static final int CONSTANT_CLASS = 7;
+    /**
+     * Constante String.
+     */
+    private static final int CONSTANT_STRING = 8;
+    /**
+     * Constante Fieldref.
+     */
+    private static final int CONSTANT_FIELDREF = 9;
+    /**
+     * Constante Methodref.
+     */
+    private static final int CONSTANT_METHODREF = 10;
+    /**
+     * Constante InterfaceMethodref.
+     */
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    /**
+     * Constante NameAndType.
+     */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    /**
+     * Constante MethodHandle.
+     */
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    /**
+     * Constante MethodType.
+     */
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    /**
+     * Constante Dynamic.
+     */
+    private static final int CONSTANT_DYNAMIC = 17;
+    /**
+     * Constante InvokeDynamic.
+     */
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    /**
+     * Constante Module.
+     */
+    private static final int CONSTANT_MODULE = 19;
+    /**
+     * Constante Package.
+     */
+    private static final int CONSTANT_PACKAGE = 20;
+    /**
+     * Taille des constantes de 2 octets.
+     */
+    private static final int SHORT_CONSTANT = 2;
+    /**
+     * Taille de la constante MethodHandle.
+     */
+    private static final int METHOD_HANDLE_CONSTANT = 3;
+    /**
+     * Taille des constantes de 4 octets.
+     */
+    private static final int INT_CONSTANT = 4;
+    /**
+     * Taille des constantes de 8 octets.
+     */
+    private static final int LONG_CONSTANT = 8;
+    /**
+     * Taille de l'entête d'un champ ou d'une méthode avant ses attributs :
+     * access_flags, name_index, descriptor_index.
+     */
+    private static final int MEMBER_HEADER = 6;
+    /**
+     * Taille de minor_version et major_version.
+     */
+    private static final int VERSION_SIZE = 4;
+    /**
+     * Taille de access_flags, this_class et super_class.
+     */
+    private static final int CLASS_HEADER = 6;
+
+    /**
+     * Constructeur privé, classe utilitaire.
+     */
+    private ClassFileAnnotations()
+    {
+    }
+
+    /**
+     * Indique si une classe porte l'une des annotations cherchées.
+     * @param classFile
+     *        Le contenu du fichier class, qui n'est pas fermé.
+     * @param descriptors
+     *        Les descripteurs des annotations cherchées, par exemple
+     *        Lcom/formation/annotations/Action;
+     * @return Vrai si la classe porte l'une des annotations.
+     * @throws IOException
+     *         Si le fichier ne peut être lu ou n'est pas un fichier class.
+     */
+    static boolean isAnnotated(InputStream classFile, Set<String> descriptors) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(classFile, BUFFER_SIZE));
+        if (in.readInt() != MAGIC)
+        {
+            throw new IOException("Not a class file.");
+        }
+        skip(in, VERSION_SIZE);
+        String[] utf8 = readConstantPool(in);
+        if (!containsAny(utf8, descriptors))
+        {
+            return false;
+        }
+        skip(in, CLASS_HEADER);
+        skip(in, SHORT_CONSTANT * in.readUnsignedShort());
+        skipMembers(in);
+        skipMembers(in);
+        return hasAnnotation(in, utf8, descriptors);
+    }
+
+    /**
+     * Lit la table des constantes.
+     * @param in
+     *        Le fichier class, positionné sur constant_pool_count.
+     * @return Les constantes Utf8 rangées à leur indice, null aux autres
+     *         indices.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static String[] readConstantPool(DataInputStream in) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int i = 1;
+        while (i < count)
+        {
+            int tag = in.readUnsignedByte();
+            if (tag == CONSTANT_UTF8)
+            {
+                utf8[i] = in.readUTF();
+            }
+            else
+            {
+                skip(in, constantSize(tag));
+            }
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE)
+            {
+                i++;
+            }
+            i++;
+        }
+        return utf8;
+    }
+
+    /**
+     * Taille d'une constante autre que Utf8.
+     * @param tag
+     *        Le type de la constante.
+     * @return Le nombre d'octets qui suivent le type.
+     * @throws IOException
+     *         Si le type est inconnu.
+     */
+    private static int constantSize(int tag) throws IOException
+    {
+        switch (tag)
+        {
+            case CONSTANT_CLASS:
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                return SHORT_CONSTANT;
+            case CONSTANT_METHOD_HANDLE:
+                return METHOD_HANDLE_CONSTANT;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACE_METHODREF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                return INT_CONSTANT;
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+                return LONG_CONSTANT;
+            default:
+                throw new IOException("Unknown constant pool tag " + tag + ".");
+        }
+    }
+
+    /**
+     * Indique si la table des constantes contient l'un des descripteurs.
+     * @param utf8
+     *        Les constantes Utf8.
+     * @param descriptors
+     *        Les descripteurs cherchés.
+     * @return Vrai si l'un d'eux est présent.
+     */
+    private static boolean containsAny(String[] utf8, Set<String> descriptors)
+    {
+        for (String constant : utf8)
+        {
+            if (constant != null && descriptors.contains(constant))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passe les champs ou les méthodes de la classe.
+     * @param in
+     *        Le fichier class, positionné sur fields_count ou methods_count.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static void skipMembers(DataInputStream in) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+        {
+            skip(in, MEMBER_HEADER);
+            skipAttributes(in, in.readUnsignedShort());
+        }
+    }
+
+    /**
+     * Passe des attributs.
+     * @param in
+     *        Le fichier class, positionné sur le premier attribut.
+     * @param count
+     *        Le nombre d'attributs.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static void skipAttributes(DataInputStream in, int count) throws IOException
+    {
+        for (int i = 0; i < count; i++)
+        {
+            in.readUnsignedShort();
+            skip(in, in.readInt());
+        }
+    }
+
+    /**
+     * Cherche les annotations parmi les attributs de la classe.
+     * @param in
+     *        Le fichier class, positionné sur attributes_count.
+     * @param utf8
+     *        Les constantes Utf8.
+     * @param descriptors
+     *        Les descripteurs cherchés.
+     * @return Vrai si la classe porte l'une des annotations.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static boolean hasAnnotation(DataInputStream in, String[] utf8, Set<String> descriptors) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+        {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name))
+            {
+                return readAnnotations(in, utf8, descriptors);
+            }
+            skip(in, length);
+        }
+        return false;
+    }
+
+    /**
+     * Lit les annotations d'un attribut RuntimeVisibleAnnotations.
+     * @param in
+     *        Le fichier class, positionné sur num_annotations.
+     * @param utf8
+     *        Les constantes Utf8.
+     * @param descriptors
+     *        Les descripteurs cherchés.
+     * @return Vrai si l'une des annotations est cherchée.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static boolean readAnnotations(DataInputStream in, String[] utf8, Set<String> descriptors) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+        {
+            if (descriptors.contains(utf8[in.readUnsignedShort()]))
+            {
+                return true;
+            }
+            skipElementValuePairs(in);
+        }
+        return false;
+    }
+
+    /**
+     * Passe les paramètres d'une annotation.
+     * @param in
+     *        Le fichier class, positionné sur num_element_value_pairs.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static void skipElementValuePairs(DataInputStream in) throws IOException
+    {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+        {
+            in.readUnsignedShort();
+            skipElementValue(in);
+        }
+    }
+
+    /**
+     * Passe la valeur d'un paramètre d'annotation.
+     * @param in
+     *        Le fichier class, positionné sur la valeur.
+     * @throws IOException
+     *         Si le fichier ne peut être lu.
+     */
+    private static void skipElementValue(DataInputStream in) throws IOException
+    {
+        int tag = in.readUnsignedByte();
+        if (tag == 'e')
+        {
+            skip(in, SHORT_CONSTANT * 2);
+        }
+        else if (tag == '@')
+        {
+            in.readUnsignedShort();
+            skipElementValuePairs(in);
+        }
+        else if (tag == '[')
+        {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++)
+            {
+                skipElementValue(in);
+            }
+        }
+        else
+        {
+            // constante, chaîne ou classe : un indice dans la table
+            skip(in, SHORT_CONSTANT);
+        }
+    }
+
+    /**
+     * Passe un nombre d'octets donné.
+     * @param in
+     *        Le fichier class.
+     * @param length
+     *        Le nombre d'octets.
+     * @throws IOException
+     *         Si le fichier se termine avant.
+     */
+    private static void skip(DataInputStream in, int length) throws IOException
+    {
+        int remaining = length;
+        while (remaining > 0)
+        {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0)
+            {
+                in.readByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.formation.scanning;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Recherche dans des packages du classpath les classes qui portent certaines
+ * annotations, sans charger aucune classe : les annotations sont lues
+ * directement dans les fichiers class. Les packages peuvent se trouver dans
+ * des dossiers (WEB-INF/classes) comme dans des jars (WEB-INF/lib). Les
+ * dossiers et les jars sont parcourus en parallèle. Avec un cache, seuls les
+ * dossiers et les jars modifiés depuis le parcours précédent sont relus.
+ * @author filippo
+ */
+public final class ClasspathScanner
+{
+    /**
+     * L'extension des fichiers class.
+     */
+    static final String CLASS_FILE_EXTENSION = ".class";
+    /**
+     * Fichiers class qui ne décrivent pas une classe.
+     */
+    private static final String[] IGNORED_CLASS_FILES =
+    {
+            "package-info.class", "module-info.class"
+    };
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(ClasspathScanner.class);
+    /**
+     * Le ClassLoader dont le classpath est parcouru.
+     */
+    private final ClassLoader classLoader;
+    /**
+     * Les descripteurs des annotations cherchées.
+     */
+    private final Set<String> descriptors = new HashSet<String>();
+    /**
+     * Le cache des parcours précédents, ou null.
+     */
+    private ScanCache cache;
+    /**
+     * Reçoit les statistiques de chaque emplacement, ou null.
+     */
+    private ScanListener listener;
+
+    /**
+     * Constructeur.
+     * @param pClassLoader
+     *        Le ClassLoader dont le classpath est parcouru.
+     * @param annotations
+     *        Les annotations cherchées, qui doivent être visibles à
+     *        l'exécution.
+     */
+    public ClasspathScanner(ClassLoader pClassLoader, List<Class<? extends Annotation>> annotations)
+    {
+        this.classLoader = pClassLoader;
+        for (Class<? extends Annotation> annotation : annotations)
+        {
+            descriptors.add("L" + annotation.getName().replace('.', '/') + ";");
+        }
+    }
+
+    /**
+     * Setter du cache des parcours précédents. Sans cache tous les
+     * emplacements sont parcourus.
+     * @param pCache
+     *        Le cache, ou null.
+     */
+    public void setCache(ScanCache pCache)
+    {
+        this.cache = pCache;
+    }
+
+    /**
+     * Setter du destinataire des statistiques de chaque emplacement parcouru.
+     * @param pListener
+     *        Le destinataire, ou null.
+     */
+    public void setListener(ScanListener pListener)
+    {
+        this.listener = pListener;
+    }
+
+    /**
+     * Cherche les classes annotées dans des packages et leurs sous-packages.
+     * @param packageNames
+     *        Les noms des packages.
+     * @return Les noms binaires des classes qui portent l'une des annotations
+     *         cherchées, à charger avec le ClassLoader du scanner.
+     * @throws IOException
+     *         Si le classpath ne peut être parcouru.
+     */
+    public List<String> findAnnotatedClasses(List<String> packageNames) throws IOException
+    {
+        List<JarFile> openedJars = new ArrayList<JarFile>();
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            List<ScanRoot> roots = new ArrayList<ScanRoot>();
+            for (String packageName : packageNames)
+            {
+                Enumeration<URL> resources = classLoader.getResources(packageName.replace('.', '/'));
+                while (resources.hasMoreElements())
+                {
+                    ScanRoot root = rootFor(resources.nextElement(), packageName, openedJars);
+                    if (root != null)
+                    {
+                        root.start(cache, pool);
+                        roots.add(root);
+                    }
+                }
+            }
+            List<String> classNames = new ArrayList<String>();
+            for (ScanRoot root : roots)
+            {
+                classNames.addAll(root.join(cache, listener));
+            }
+            if (cache != null)
+            {
+                cache.save();
+            }
+            return classNames;
+        }
+        finally
+        {
+            pool.shutdown();
+            closeAll(openedJars);
+        }
+    }
+
+    /**
+     * Calcule l'empreinte de chaque emplacement de packages, sans lire aucun
+     * fichier class. Deux listes égales indiquent qu'un parcours trouverait
+     * les mêmes classes.
+     * @param packageNames
+     *        Les noms des packages.
+     * @return Pour chaque emplacement, le package, l'url et l'empreinte.
+     * @throws IOException
+     *         Si le classpath ne peut être parcouru.
+     */
+    public List<String> fingerprints(List<String> packageNames) throws IOException
+    {
+        List<JarFile> openedJars = new ArrayList<JarFile>();
+        try
+        {
+            List<String> fingerprints = new ArrayList<String>();
+            for (String packageName : packageNames)
+            {
+                Enumeration<URL> resources = classLoader.getResources(packageName.replace('.', '/'));
+                while (resources.hasMoreElements())
+                {
+                    ScanRoot root = rootFor(resources.nextElement(), packageName, openedJars);
+                    if (root != null)
+                    {
+                        fingerprints.add(root.describe());
+                    }
+                }
+            }
+            return fingerprints;
+        }
+        finally
+        {
+            closeAll(openedJars);
+        }
+    }
+
+    /**
+     * Crée l'emplacement qui correspond à une url du package.
+     * @param resource
+     *        L'url du package, dans un dossier ou un jar.
+     * @param packageName
+     *        Le nom du package.
+     * @param openedJars
+     *        Reçoit le jar ouvert, à fermer une fois le parcours terminé.
+     * @return L'emplacement ou null si le type d'url n'est pas pris en charge.
+     * @throws IOException
+     *         Si le jar ne peut être ouvert.
+     */
+    private ScanRoot rootFor(URL resource, String packageName, List<JarFile> openedJars) throws IOException
+    {
+        String location = resource.toString();
+        long start = System.nanoTime();
+        if ("file".equals(resource.getProtocol()))
+        {
+            File directory = toFile(resource);
+            String fingerprint = Fingerprints.ofDirectory(directory);
+            return new ScanRoot(packageName, location, fingerprint, System.nanoTime() - start, new DirectoryScanTask(directory, packageName, descriptors));
+        }
+        URLConnection connection = resource.openConnection();
+        if (connection instanceof JarURLConnection)
+        {
+            // le jar est fermé par le scanner et ne doit donc pas être partagé
+            connection.setUseCaches(false);
+            JarFile jarFile = ((JarURLConnection) connection).getJarFile();
+            openedJars.add(jarFile);
+            List<ZipEntry> entries = classEntries(jarFile, packageName);
+            String fingerprint = Fingerprints.ofJar(new File(jarFile.getName()), entries);
+            return new ScanRoot(packageName, location, fingerprint, System.nanoTime() - start, new JarScanTask(jarFile, entries, descriptors));
+        }
+        logger.warn("The package " + packageName + " found at " + resource + " cannot be scanned: only directories and jars are supported.");
+        return null;
+    }
+
+    /**
+     * Convertit l'url d'un dossier en fichier, en décodant les caractères
+     * échappés tels que les espaces.
+     * @param resource
+     *        L'url du dossier.
+     * @return Le dossier.
+     */
+    private static File toFile(URL resource)
+    {
+        try
+        {
+            return new File(resource.toURI());
+        }
+        catch (URISyntaxException e)
+        {
+            return new File(resource.getFile());
+        }
+    }
+
+    /**
+     * Liste les fichiers class d'un package et de ses sous-packages dans un
+     * jar.
+     * @param jarFile
+     *        Le jar.
+     * @param packageName
+     *        Le nom du package.
+     * @return Les entrées des fichiers class.
+     */
+    private static List<ZipEntry> classEntries(JarFile jarFile, String packageName)
+    {
+        String prefix = packageName.replace('.', '/') + "/";
+        List<ZipEntry> entries = new ArrayList<ZipEntry>();
+        Enumeration<JarEntry> jarEntries = jarFile.entries();
+        while (jarEntries.hasMoreElements())
+        {
+            JarEntry entry = jarEntries.nextElement();
+            String name = entry.getName();
+            if (name.startsWith(prefix) && isClassFile(name.substring(name.lastIndexOf('/') + 1)))
+            {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Indique si un fichier décrit une classe.
+     * @param fileName
+     *        Le nom du fichier, sans son chemin.
+     * @return Vrai pour un fichier class autre que package-info et
+     *         module-info.
+     */
+    static boolean isClassFile(String fileName)
+    {
+        if (!fileName.endsWith(CLASS_FILE_EXTENSION))
+        {
+            return false;
+        }
+        for (String ignored : IGNORED_CLASS_FILES)
+        {
+            if (ignored.equals(fileName))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Nom binaire d'une classe dans son package.
+     * @param fileName
+     *        Le nom du fichier class, sans son chemin.
+     * @return Le nom du fichier sans son extension.
+     */
+    static String simpleBinaryName(String fileName)
+    {
+        return fileName.substring(0, fileName.length() - CLASS_FILE_EXTENSION.length());
+    }
+
+    /**
+     * Ferme les jars ouverts par le parcours.
+     * @param openedJars
+     *        Les jars ouverts.
+     */
+    private static void closeAll(List<JarFile> openedJars)
+    {
+        for (JarFile jarFile : openedJars)
+        {
+            try
+            {
+                jarFile.close();
+            }
+            catch (IOException e)
+            {
+                logger.warn("The jar " + jarFile.getName() + " cannot be closed." + "\n" + e.getMessage());
+            }
+        }
+    }
+}
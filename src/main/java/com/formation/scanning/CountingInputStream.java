@@ -0,0 +1,59 @@
+package com.formation.scanning;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Flux qui compte les octets réellement lus dans le flux qu'il enveloppe.
+ * Les octets sautés ne sont pas comptés.
+ * @author filippo
+ */
+final class CountingInputStream extends FilterInputStream
+{
+    /**
+     * Nombre d'octets lus.
+     */
+    private long count;
+
+    /**
+     * Constructeur.
+     * @param iS
+     *        Le flux enveloppé.
+     */
+    CountingInputStream(InputStream iS)
+    {
+        super(iS);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int b = super.read();
+        if (b >= 0)
+        {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+        int n = super.read(buffer, offset, length);
+        if (n > 0)
+        {
+            count += n;
+        }
+        return n;
+    }
+
+    /**
+     * Getter du nombre d'octets lus.
+     * @return Le nombre d'octets.
+     */
+    long getCount()
+    {
+        return count;
+    }
+}
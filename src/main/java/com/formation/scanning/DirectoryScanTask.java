@@ -0,0 +1,120 @@
+package com.formation.scanning;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Recherche des classes annotées dans un dossier du classpath. Chaque
+ * sous-dossier est confié à une nouvelle tâche.
+ * @author filippo
+ */
+final class DirectoryScanTask extends RecursiveTask<ScanResult>
+{
+    /**
+     * Numéro de version pour la sérialisation.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(DirectoryScanTask.class);
+    /**
+     * Le dossier à parcourir.
+     */
+    private final File directory;
+    /**
+     * Le nom du package qui correspond au dossier.
+     */
+    private final String packageName;
+    /**
+     * Les descripteurs des annotations cherchées.
+     */
+    private final Set<String> descriptors;
+
+    /**
+     * Constructeur.
+     * @param pDirectory
+     *        Le dossier à parcourir.
+     * @param pPackageName
+     *        Le nom du package qui correspond au dossier.
+     * @param pDescriptors
+     *        Les descripteurs des annotations cherchées.
+     */
+    DirectoryScanTask(File pDirectory, String pPackageName, Set<String> pDescriptors)
+    {
+        this.directory = pDirectory;
+        this.packageName = pPackageName;
+        this.descriptors = pDescriptors;
+    }
+
+    @Override
+    protected ScanResult compute()
+    {
+        ScanResult result = new ScanResult();
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return result;
+        }
+        Arrays.sort(files);
+        List<DirectoryScanTask> subTasks = new ArrayList<DirectoryScanTask>();
+        for (File file : files)
+        {
+            if (file.isDirectory())
+            {
+                DirectoryScanTask subTask = new DirectoryScanTask(file, packageName + "." + file.getName(), descriptors);
+                subTask.fork();
+                subTasks.add(subTask);
+            }
+            else if (ClasspathScanner.isClassFile(file.getName()) && isAnnotated(file, result))
+            {
+                result.addClass(packageName + "." + ClasspathScanner.simpleBinaryName(file.getName()));
+            }
+        }
+        for (DirectoryScanTask subTask : subTasks)
+        {
+            result.addAll(subTask.join());
+        }
+        return result;
+    }
+
+    /**
+     * Lit un fichier class.
+     * @param file
+     *        Le fichier.
+     * @param result
+     *        Le résultat du parcours, qui compte le fichier lu.
+     * @return Vrai si la classe porte l'une des annotations cherchées, faux
+     *         aussi si le fichier ne peut être lu.
+     */
+    private boolean isAnnotated(File file, ScanResult result)
+    {
+        try
+        {
+            long start = System.nanoTime();
+            CountingInputStream iS = new CountingInputStream(new FileInputStream(file));
+            try
+            {
+                return ClassFileAnnotations.isAnnotated(iS, descriptors);
+            }
+            finally
+            {
+                iS.close();
+                result.addInspected(iS.getCount(), System.nanoTime() - start);
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("The class file " + file + " cannot be read, it is ignored." + "\n" + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.formation.scanning;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Empreintes des emplacements parcourus par le scanner, calculées sans lire le
+ * contenu des fichiers class : taille, date de modification et somme de
+ * contrôle des noms, tailles et dates (ou CRC pour un jar) de chaque fichier
+ * class de l'emplacement.
+ * @author filippo
+ */
+final class Fingerprints
+{
+    /**
+     * Encodage des noms de fichiers dans la somme de contrôle.
+     */
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+    /**
+     * Taille d'un long en octets.
+     */
+    private static final int LONG_SIZE = 8;
+    /**
+     * Séparateur des composantes de l'empreinte.
+     */
+    private static final String SEPARATOR = ":";
+
+    /**
+     * Constructeur privé, classe utilitaire.
+     */
+    private Fingerprints()
+    {
+    }
+
+    /**
+     * Empreinte d'un package dans un dossier, sous-packages compris.
+     * @param directory
+     *        Le dossier du package.
+     * @return L'empreinte.
+     */
+    static String ofDirectory(File directory)
+    {
+        DirectoryWalk walk = new DirectoryWalk();
+        walk.visit(directory, "");
+        return "dir" + SEPARATOR + walk.count + SEPARATOR + walk.totalSize + SEPARATOR + walk.lastModified + SEPARATOR + Long.toHexString(walk.crc.getValue());
+    }
+
+    /**
+     * Empreinte d'un package dans un jar, sous-packages compris.
+     * @param jar
+     *        Le fichier jar.
+     * @param entries
+     *        Les entrées des fichiers class du package.
+     * @return L'empreinte.
+     */
+    static String ofJar(File jar, List<ZipEntry> entries)
+    {
+        CRC32 crc = new CRC32();
+        for (ZipEntry entry : entries)
+        {
+            crc.update(entry.getName().getBytes(ENCODING));
+            update(crc, entry.getCrc());
+            update(crc, entry.getSize());
+        }
+        return "jar" + SEPARATOR + entries.size() + SEPARATOR + jar.length() + SEPARATOR + jar.lastModified() + SEPARATOR + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Ajoute un long à une somme de contrôle.
+     * @param crc
+     *        La somme de contrôle.
+     * @param value
+     *        La valeur.
+     */
+    private static void update(CRC32 crc, long value)
+    {
+        crc.update(ByteBuffer.allocate(LONG_SIZE).putLong(value).array());
+    }
+
+    /**
+     * Parcours d'un dossier qui cumule les fichiers class rencontrés.
+     * @author filippo
+     */
+    private static final class DirectoryWalk
+    {
+        /**
+         * Somme de contrôle des chemins, tailles et dates.
+         */
+        private final CRC32 crc = new CRC32();
+        /**
+         * Nombre de fichiers class.
+         */
+        private int count;
+        /**
+         * Taille cumulée des fichiers class.
+         */
+        private long totalSize;
+        /**
+         * Date de modification la plus récente.
+         */
+        private long lastModified;
+
+        /**
+         * Parcourt un dossier et ses sous-dossiers, dans l'ordre des noms.
+         * @param directory
+         *        Le dossier.
+         * @param path
+         *        Son chemin relatif au dossier du package.
+         */
+        private void visit(File directory, String path)
+        {
+            File[] files = directory.listFiles();
+            if (files == null)
+            {
+                return;
+            }
+            Arrays.sort(files);
+            for (File file : files)
+            {
+                if (file.isDirectory())
+                {
+                    visit(file, path + file.getName() + "/");
+                }
+                else if (ClasspathScanner.isClassFile(file.getName()))
+                {
+                    add(path + file.getName(), file);
+                }
+            }
+        }
+
+        /**
+         * Ajoute un fichier class.
+         * @param path
+         *        Son chemin relatif au dossier du package.
+         * @param file
+         *        Le fichier.
+         */
+        private void add(String path, File file)
+        {
+            long size = file.length();
+            long modified = file.lastModified();
+            crc.update(path.getBytes(ENCODING));
+            update(crc, size);
+            update(crc, modified);
+            count++;
+            totalSize += size;
+            lastModified = Math.max(lastModified, modified);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.formation.scanning;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Recherche des classes annotées parmi des entrées d'un jar. Les entrées sont
+ * partagées en lots lus en parallèle.
+ * @author filippo
+ */
+final class JarScanTask extends RecursiveTask<ScanResult>
+{
+    /**
+     * Numéro de version pour la sérialisation.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Nombre d'entrées au delà duquel le lot est partagé en deux.
+     */
+    private static final int BATCH_SIZE = 64;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(JarScanTask.class);
+    /**
+     * Le jar.
+     */
+    private final JarFile jarFile;
+    /**
+     * Les entrées de fichiers class du jar à lire.
+     */
+    private final List<ZipEntry> entries;
+    /**
+     * Les descripteurs des annotations cherchées.
+     */
+    private final Set<String> descriptors;
+
+    /**
+     * Constructeur.
+     * @param pJarFile
+     *        Le jar, ouvert.
+     * @param pEntries
+     *        Les entrées de fichiers class du jar à lire.
+     * @param pDescriptors
+     *        Les descripteurs des annotations cherchées.
+     */
+    JarScanTask(JarFile pJarFile, List<ZipEntry> pEntries, Set<String> pDescriptors)
+    {
+        this.jarFile = pJarFile;
+        this.entries = pEntries;
+        this.descriptors = pDescriptors;
+    }
+
+    @Override
+    protected ScanResult compute()
+    {
+        if (entries.size() > BATCH_SIZE)
+        {
+            int middle = entries.size() / 2;
+            JarScanTask second = new JarScanTask(jarFile, entries.subList(middle, entries.size()), descriptors);
+            second.fork();
+            ScanResult result = new JarScanTask(jarFile, entries.subList(0, middle), descriptors).compute();
+            result.addAll(second.join());
+            return result;
+        }
+        ScanResult result = new ScanResult();
+        for (ZipEntry entry : entries)
+        {
+            if (isAnnotated(entry, result))
+            {
+                String name = entry.getName();
+                result.addClass(name.substring(0, name.length() - ClasspathScanner.CLASS_FILE_EXTENSION.length()).replace('/', '.'));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lit un fichier class du jar.
+     * @param entry
+     *        L'entrée du fichier class.
+     * @param result
+     *        Le résultat du parcours, qui compte le fichier lu.
+     * @return Vrai si la classe porte l'une des annotations cherchées, faux
+     *         aussi si le fichier ne peut être lu.
+     */
+    private boolean isAnnotated(ZipEntry entry, ScanResult result)
+    {
+        try
+        {
+            long start = System.nanoTime();
+            CountingInputStream iS = new CountingInputStream(jarFile.getInputStream(entry));
+            try
+            {
+                return ClassFileAnnotations.isAnnotated(iS, descriptors);
+            }
+            finally
+            {
+                iS.close();
+                result.addInspected(iS.getCount(), System.nanoTime() - start);
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("The class file " + entry.getName() + " of " + jarFile.getName() + " cannot be read, it is ignored." + "\n" + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.formation.scanning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Cache sur disque des résultats du scanner. Pour chaque emplacement parcouru
+ * (un package dans un dossier ou dans un jar) il garde l'empreinte de
+ * l'emplacement et les classes annotées qui y ont été trouvées. Au démarrage
+ * suivant, un emplacement dont l'empreinte n'a pas changé n'est pas relu.
+ * <p>
+ * Le fichier n'est réécrit que si un emplacement a été relu ; il ne garde que
+ * les emplacements du dernier parcours. Un fichier illisible ou d'une autre
+ * version est ignoré.
+ * </p>
+ * @author filippo
+ */
+public final class ScanCache
+{
+    /**
+     * Version du format du fichier, à changer à chaque évolution du format ou
+     * des règles du scanner.
+     */
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Logger.
+     */
+    private static Logger logger = Logger.getLogger(ScanCache.class);
+    /**
+     * Le fichier du cache.
+     */
+    private final File file;
+    /**
+     * Entrées lues dans le fichier : clef de l'emplacement associée à son
+     * empreinte et à ses classes annotées.
+     */
+    private final Map<String, CachedRoot> previous;
+    /**
+     * Entrées du parcours en cours.
+     */
+    private final Map<String, CachedRoot> current = new LinkedHashMap<String, CachedRoot>();
+    /**
+     * Nombre d'emplacements relus lors du parcours en cours.
+     */
+    private int rescannedRoots;
+
+    /**
+     * Constructeur privé, le cache se charge avec load.
+     * @param pFile
+     *        Le fichier du cache.
+     * @param pPrevious
+     *        Les entrées lues dans le fichier.
+     */
+    private ScanCache(File pFile, Map<String, CachedRoot> pPrevious)
+    {
+        this.file = pFile;
+        this.previous = pPrevious;
+    }
+
+    /**
+     * Charge le cache.
+     * @param file
+     *        Le fichier du cache, qui peut ne pas exister.
+     * @return Le cache, vide si le fichier n'existe pas ou ne peut être lu.
+     */
+    public static ScanCache load(File file)
+    {
+        Map<String, CachedRoot> entries = new HashMap<String, CachedRoot>();
+        if (file.isFile())
+        {
+            try
+            {
+                entries = read(file);
+            }
+            catch (IOException e)
+            {
+                logger.warn("The scan cache " + file + " cannot be read, every package will be scanned." + "\n" + e.getMessage());
+            }
+        }
+        return new ScanCache(file, entries);
+    }
+
+    /**
+     * Lit le fichier du cache.
+     * @param file
+     *        Le fichier du cache.
+     * @return Les entrées lues, aucune si le fichier est d'une autre version.
+     * @throws IOException
+     *         Si le fichier ne peut être lu, ou s'il est tronqué ou corrompu.
+     */
+    private static Map<String, CachedRoot> read(File file) throws IOException
+    {
+        // chaque élément compté occupe au moins les deux octets d'une
+        // chaîne : aucun nombre ne peut dépasser la moitié du fichier
+        long maxCount = file.length() / 2;
+        Map<String, CachedRoot> entries = new HashMap<String, CachedRoot>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            if (in.readInt() != FORMAT_VERSION)
+            {
+                return entries;
+            }
+            int count = readCount(in, maxCount);
+            for (int i = 0; i < count; i++)
+            {
+                String key = in.readUTF();
+                String fingerprint = in.readUTF();
+                int classCount = readCount(in, maxCount);
+                List<String> classNames = new ArrayList<String>(classCount);
+                for (int j = 0; j < classCount; j++)
+                {
+                    classNames.add(in.readUTF());
+                }
+                entries.put(key, new CachedRoot(fingerprint, classNames));
+            }
+            return entries;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Lit un nombre d'éléments, vérifié pour qu'un fichier corrompu ne fasse
+     * pas allouer une liste démesurée.
+     * @param in
+     *        Le fichier du cache.
+     * @param maxCount
+     *        Le nombre maximal d'éléments que le fichier peut contenir.
+     * @return Le nombre d'éléments.
+     * @throws IOException
+     *         Si le nombre est négatif ou dépasse le maximum.
+     */
+    private static int readCount(DataInputStream in, long maxCount) throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount)
+        {
+            throw new IOException("Corrupt scan cache: " + count + " elements announced.");
+        }
+        return count;
+    }
+
+    /**
+     * Classes annotées d'un emplacement dont l'empreinte n'a pas changé.
+     * @param key
+     *        La clef de l'emplacement.
+     * @param fingerprint
+     *        Son empreinte actuelle.
+     * @return Les noms des classes annotées, ou null si l'emplacement doit
+     *         être relu.
+     */
+    synchronized List<String> get(String key, String fingerprint)
+    {
+        CachedRoot cached = previous.get(key);
+        if (cached == null || !cached.fingerprint.equals(fingerprint))
+        {
+            return null;
+        }
+        current.put(key, cached);
+        return cached.classNames;
+    }
+
+    /**
+     * Mémorise les classes annotées d'un emplacement relu.
+     * @param key
+     *        La clef de l'emplacement.
+     * @param fingerprint
+     *        Son empreinte.
+     * @param classNames
+     *        Les noms des classes annotées.
+     */
+    synchronized void put(String key, String fingerprint, List<String> classNames)
+    {
+        current.put(key, new CachedRoot(fingerprint, new ArrayList<String>(classNames)));
+        rescannedRoots++;
+    }
+
+    /**
+     * Écrit le cache si un emplacement a été relu ou a disparu. Le fichier est
+     * écrit à côté puis renommé pour qu'un arrêt brutal ne le laisse pas
+     * tronqué.
+     */
+    synchronized void save()
+    {
+        logger.info("Scan cache: " + (current.size() - rescannedRoots) + " location(s) reused, " + rescannedRoots + " rescanned.");
+        if (rescannedRoots == 0 && current.size() == previous.size())
+        {
+            return;
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try
+        {
+            write(temporary);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            logger.warn("The scan cache " + file + " cannot be written." + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Écrit les entrées du parcours en cours.
+     * @param destination
+     *        Le fichier à écrire.
+     * @throws IOException
+     *         Si le fichier ne peut être écrit.
+     */
+    private void write(File destination) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(destination)));
+        try
+        {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(current.size());
+            for (Entry<String, CachedRoot> entry : current.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().fingerprint);
+                out.writeInt(entry.getValue().classNames.size());
+                for (String className : entry.getValue().classNames)
+                {
+                    out.writeUTF(className);
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Entrée du cache : l'empreinte d'un emplacement et ses classes annotées.
+     * @author filippo
+     */
+    private static final class CachedRoot
+    {
+        /**
+         * L'empreinte de l'emplacement.
+         */
+        private final String fingerprint;
+        /**
+         * Les noms des classes annotées.
+         */
+        private final List<String> classNames;
+
+        /**
+         * Constructeur.
+         * @param pFingerprint
+         *        L'empreinte de l'emplacement.
+         * @param pClassNames
+         *        Les noms des classes annotées.
+         */
+        private CachedRoot(String pFingerprint, List<String> pClassNames)
+        {
+            this.fingerprint = pFingerprint;
+            this.classNames = Collections.unmodifiableList(pClassNames);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.formation.scanning;
+
+/**
+ * Reçoit les statistiques de chaque emplacement parcouru par le scanner, par
+ * exemple pour le rapport de démarrage. Les appels ont lieu dans le thread qui
+ * a lancé le parcours, dans l'ordre des packages.
+ * @author filippo
+ */
+public interface ScanListener
+{
+    /**
+     * Statistiques d'un emplacement.
+     * @param packageName
+     *        Le package cherché.
+     * @param location
+     *        L'url où il a été trouvé : un dossier ou un jar.
+     * @param fromCache
+     *        Vrai si les classes annotées viennent du cache, aucun fichier
+     *        class n'ayant alors été lu.
+     * @param classesInspected
+     *        Nombre de fichiers class lus.
+     * @param classesMatched
+     *        Nombre de classes annotées trouvées.
+     * @param bytesRead
+     *        Nombre d'octets lus dans les fichiers class.
+     * @param nanos
+     *        Temps du calcul de l'empreinte et de la lecture des fichiers
+     *        class, cumulé sur tous les threads, en nanosecondes.
+     */
+    void locationScanned(String packageName, String location, boolean fromCache, int classesInspected, int classesMatched, long bytesRead, long nanos);
+}
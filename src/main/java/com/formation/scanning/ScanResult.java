@@ -0,0 +1,103 @@
+package com.formation.scanning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Résultat d'une tâche de parcours : les classes annotées trouvées et ce qu'il
+ * a fallu lire pour les trouver.
+ * @author filippo
+ */
+final class ScanResult
+{
+    /**
+     * Les noms binaires des classes annotées, dans l'ordre du parcours.
+     */
+    private final List<String> classNames = new ArrayList<String>();
+    /**
+     * Nombre de fichiers class lus.
+     */
+    private int classesInspected;
+    /**
+     * Nombre d'octets lus dans les fichiers class.
+     */
+    private long bytesRead;
+    /**
+     * Temps passé à lire les fichiers class, cumulé sur tous les threads, en
+     * nanosecondes.
+     */
+    private long readNanos;
+
+    /**
+     * Compte un fichier class lu.
+     * @param bytes
+     *        Le nombre d'octets lus.
+     * @param nanos
+     *        Le temps de lecture en nanosecondes.
+     */
+    void addInspected(long bytes, long nanos)
+    {
+        classesInspected++;
+        bytesRead += bytes;
+        readNanos += nanos;
+    }
+
+    /**
+     * Ajoute une classe annotée.
+     * @param className
+     *        Son nom binaire.
+     */
+    void addClass(String className)
+    {
+        classNames.add(className);
+    }
+
+    /**
+     * Ajoute le résultat d'une sous-tâche, à la suite de celui-ci.
+     * @param other
+     *        Le résultat de la sous-tâche.
+     */
+    void addAll(ScanResult other)
+    {
+        classNames.addAll(other.classNames);
+        classesInspected += other.classesInspected;
+        bytesRead += other.bytesRead;
+        readNanos += other.readNanos;
+    }
+
+    /**
+     * Getter des classes annotées.
+     * @return Leurs noms binaires.
+     */
+    List<String> getClassNames()
+    {
+        return classNames;
+    }
+
+    /**
+     * Getter du nombre de fichiers class lus.
+     * @return Le nombre de fichiers.
+     */
+    int getClassesInspected()
+    {
+        return classesInspected;
+    }
+
+    /**
+     * Getter du nombre d'octets lus.
+     * @return Le nombre d'octets.
+     */
+    long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * Getter du temps de lecture cumulé.
+     * @return Le temps en nanosecondes.
+     */
+    long getReadNanos()
+    {
+        return readNanos;
+    }
+}
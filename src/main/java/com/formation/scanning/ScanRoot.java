@@ -0,0 +1,131 @@
+package com.formation.scanning;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Emplacement d'un package parcouru par le scanner : un dossier ou un jar.
+ * Ses classes annotées viennent du cache si son empreinte n'a pas changé,
+ * sinon d'une tâche de parcours.
+ * @author filippo
+ */
+final class ScanRoot
+{
+    /**
+     * Le package cherché.
+     */
+    private final String packageName;
+    /**
+     * L'url où le package a été trouvé.
+     */
+    private final String location;
+    /**
+     * Empreinte de l'emplacement.
+     */
+    private final String fingerprint;
+    /**
+     * Temps du calcul de l'empreinte en nanosecondes.
+     */
+    private final long fingerprintNanos;
+    /**
+     * Tâche qui parcourt l'emplacement.
+     */
+    private final RecursiveTask<ScanResult> task;
+    /**
+     * Les classes annotées, une fois connues.
+     */
+    private List<String> classNames;
+
+    /**
+     * Constructeur.
+     * @param pPackageName
+     *        Le package cherché.
+     * @param pLocation
+     *        L'url où le package a été trouvé.
+     * @param pFingerprint
+     *        Empreinte de l'emplacement.
+     * @param pFingerprintNanos
+     *        Temps du calcul de l'empreinte en nanosecondes.
+     * @param pTask
+     *        Tâche qui parcourt l'emplacement.
+     */
+    ScanRoot(String pPackageName, String pLocation, String pFingerprint, long pFingerprintNanos, RecursiveTask<ScanResult> pTask)
+    {
+        this.packageName = pPackageName;
+        this.location = pLocation;
+        this.fingerprint = pFingerprint;
+        this.fingerprintNanos = pFingerprintNanos;
+        this.task = pTask;
+    }
+
+    /**
+     * Clef de l'emplacement dans le cache : le package et l'url où il a été
+     * trouvé.
+     * @return La clef.
+     */
+    private String key()
+    {
+        return packageName + " " + location;
+    }
+
+    /**
+     * Description de l'emplacement : sa clef et son empreinte.
+     * @return La description.
+     */
+    String describe()
+    {
+        return key() + " " + fingerprint;
+    }
+
+    /**
+     * Prend les classes annotées dans le cache ou, à défaut, lance le
+     * parcours.
+     * @param cache
+     *        Le cache, ou null.
+     * @param pool
+     *        Le pool qui exécute les parcours.
+     */
+    void start(ScanCache cache, ForkJoinPool pool)
+    {
+        if (cache != null)
+        {
+            classNames = cache.get(key(), fingerprint);
+        }
+        if (classNames == null)
+        {
+            pool.execute(task);
+        }
+    }
+
+    /**
+     * Attend la fin du parcours s'il a été lancé et en mémorise le résultat.
+     * @param cache
+     *        Le cache, ou null.
+     * @param listener
+     *        Reçoit les statistiques de l'emplacement, ou null.
+     * @return Les noms des classes annotées.
+     */
+    List<String> join(ScanCache cache, ScanListener listener)
+    {
+        if (classNames != null)
+        {
+            if (listener != null)
+            {
+                listener.locationScanned(packageName, location, true, 0, classNames.size(), 0, fingerprintNanos);
+            }
+            return classNames;
+        }
+        ScanResult result = task.join();
+        classNames = result.getClassNames();
+        if (cache != null)
+        {
+            cache.put(key(), fingerprint, classNames);
+        }
+        if (listener != null)
+        {
+            listener.locationScanned(packageName, location, false, result.getClassesInspected(), classNames.size(), result.getBytesRead(), fingerprintNanos + result.getReadNanos());
+        }
+        return classNames;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Ce package contient le scanner du classpath qui cherche les classes annotées en lisant directement les fichiers class, dans les dossiers comme dans les jars, sans charger les classes qui ne sont pas retenues.
+ */
+package com.formation.scanning;
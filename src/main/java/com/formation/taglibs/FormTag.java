@@ -1,7 +1,6 @@
 package com.formation.taglibs;
 
 import java.io.IOException;
-import java.util.Map;
 
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
@@ -10,10 +9,9 @@ import javax.servlet.jsp.tagext.TagSupport;
 import org.apache.log4j.Logger;
 
 import com.formation.archetypes.ActionForm;
-import com.formation.configreader.ConfigurationReader;
-import com.formation.exceptions.runtime.WrongActionCanonicalNameSpecifiedException;
-import com.formation.exceptions.runtime.WrongActionFormCanonicalNameSpecifiedException;
 import com.formation.factory.Factory;
+import com.formation.registry.Registry;
+import com.formation.routing.Route;
 
 /**
  * Tag &lt;tt:form action=""&gt; équivalent à &lt;form action=""&gt;.
@@ -32,11 +30,6 @@ public class FormTag extends TagSupport
 
     // private HttpSession httpSession;
 
-    /**
-     * Map des actions et de leurs actionForm associés avec pour clef
-     * l'url-pattern leur étant associée.
-     */
-    private Map<String, String[]> actionsAndFormsMap;
     /**
      * Classe de l'ActionForm.
      */
@@ -74,44 +67,23 @@ public class FormTag extends TagSupport
         // puissent y
         // accéder
 
-        ConfigurationReader configurationReader = ConfigurationReader.getReader();
-        if (actionsAndFormsMap == null)
-        {
-            actionsAndFormsMap = configurationReader.buildActionsAndFormsMap();
-        }
-        String[] actionAndFormFullNames = configurationReader.getActionAndFormCanonicalNamesByAction(actionsAndFormsMap, "/" + action);
+        // le registre est celui du contrôleur : la configuration n'est
+        // jamais relue pendant le rendu de la page
+        Route route = Registry.getRegistry(pageContext.getServletContext()).resolve("/" + action);
 
-        if (actionAndFormFullNames != null)
+        if (route != null && route.getFormClass() != null)
         {
             // Si l'action renseignée par l'utilisateur a été trouvée dans
-            // son fichier de configuration
+            // son fichier de configuration ; ses classes Action et ActionForm
+            // ont été chargées à la construction du registre
 
-            actionClassFullName = actionAndFormFullNames[0];
-            formClassFullName = actionAndFormFullNames[1];
-
-            // on vérifie que les classes Action et ActionForm requêtées
-            // existent sans les instancier
-
-            try
-            {
-                Class.forName(actionClassFullName);
-                actionClassFound = true;
-            }
-            catch (ClassNotFoundException e)
-            {
-                throw new WrongActionCanonicalNameSpecifiedException("Whether the Action class full name " + actionClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
-            }
+            actionClassFullName = route.getActionClass().getCanonicalName();
+            formClassFullName = route.getFormClass().getCanonicalName();
+            actionClassFound = true;
 
-            try
-            {
-                formClass = Class.forName(formClassFullName);
-                formClassFound = true;
-                pageContext.getSession().setAttribute("formClass", formClass);
-            }
-            catch (ClassNotFoundException e)
-            {
-                throw new WrongActionFormCanonicalNameSpecifiedException("Whether the ActionForm class full name " + formClassFullName + " you specified in the configuration file is incorrect. Please check it. Or its class can't be loaded." + "\n" + e.getMessage());
-            }
+            formClass = route.getFormClass();
+            formClassFound = true;
+            pageContext.getSession().setAttribute("formClass", formClass);
             try
             {
                 out.print("<form method='POST' action='" + action + "'>");
@@ -1,8 +1,6 @@
 package com.formation.taglibs;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
@@ -11,11 +9,12 @@ import javax.servlet.jsp.tagext.TagSupport;
 import org.apache.log4j.Logger;
 
 import com.formation.archetypes.ActionForm;
-import com.formation.exceptions.runtime.NoGetterMethodFoundForProvidedFormInputNameException;
+import com.formation.populate.FormFiller;
 
 /**
  * Tag &lt;tt:property name=""&gt; qui va permettre d'afficher une valeur de
- * l'ActionForm en lui spécifiant son nom.
+ * l'ActionForm en lui spécifiant son nom, ou un chemin tel que address.city.
+ * Rien n'est affiché si la valeur est null.
  * @author filippo
  */
 public class PropertyTag extends TagSupport
@@ -41,23 +40,12 @@ public class PropertyTag extends TagSupport
 
         ActionForm aForm = (ActionForm) pageContext.getRequest().getAttribute("monForm");
 
-        String getterName = "get" + name.substring(0, 1).toUpperCase() + name.substring(1, name.length());
-        Class formClass = aForm.getClass();
-
-        Method getter = null;
-        try
-        {
-            getter = formClass.getMethod(getterName, new Class[] {});
-        }
-        catch (NoSuchMethodException e)
+        // le nom peut être un chemin tel que address.city ou lines[3].qty
+        Object getValue = FormFiller.getFormFiller().readProperty(aForm, name);
+        if (getValue == null)
         {
-            throw new NoGetterMethodFoundForProvidedFormInputNameException("The ActionForm " + formClass.getCanonicalName() + " field " + name + " does not have a getter method matching his name. The convention for a field named myField is to call the getter method getMyField. Please check the getter method name or the field name." + "\n" + e.getMessage());
-        }
-        catch (SecurityException e)
-        {
-            logger.error(e.getMessage());
+            return javax.servlet.jsp.tagext.Tag.SKIP_BODY;
         }
-        Object getValue = appelDuGetter(aForm, getter);
         try
         {
             out.print(getValue.toString());
@@ -79,35 +67,4 @@ public class PropertyTag extends TagSupport
         this.name = pName;
     }
 
-    /**
-     * Appel du getter passé en argument de l'actionForm indiqué.
-     * @param aForm
-     *        ActionForm dont on veut appeler le getter.
-     * @param m
-     *        Getter que l'on souhaite appeler.
-     * @return La valeur retournée par le getter.
-     */
-    private Object appelDuGetter(ActionForm aForm, Method m)
-    {
-        Object getValue = null;
-        try
-        {
-            getValue = m.invoke(aForm, new Object[] {});
-        }
-        catch (IllegalAccessException e)
-        {
-            logger.error(e.getMessage());
-        }
-        catch (IllegalArgumentException e)
-        {
-            logger.error(e.getMessage());
-        }
-        catch (InvocationTargetException e)
-        {
-            logger.error(e.getMessage());
-        }
-        return getValue;
-
-    }
-
 }
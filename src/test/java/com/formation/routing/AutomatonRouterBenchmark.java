@@ -0,0 +1,239 @@
+package com.formation.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Banc d'essai des deux tables de routage, table et automaton, sur 1 000 puis
+ * 10 000 url-pattern synthétiques qui sont tous de vraies expressions
+ * régulières. Pour chaque taille sont mesurés la construction de la table et
+ * le temps moyen d'une résolution, sur des urls réparties sur toutes les
+ * routes et sur des urls qui ne correspondent à aucune.
+ * <p>
+ * Lancement, après mvn test-compile :
+ * java -cp target/classes:target/test-classes:&lt;log4j.jar&gt;
+ * com.formation.routing.AutomatonRouterBenchmark [nombre de routes...]
+ * </p>
+ * @author filippo
+ */
+public final class AutomatonRouterBenchmark
+{
+    /**
+     * Nombres de routes mesurés par défaut.
+     */
+    private static final int[] DEFAULT_SIZES =
+    {
+        1000, 10000
+    };
+    /**
+     * Nombre d'urls différentes demandées.
+     */
+    private static final int URL_COUNT = 4096;
+    /**
+     * Nombre de tours de chauffe avant la mesure.
+     */
+    private static final int WARMUP_ROUNDS = 5;
+    /**
+     * Durée minimale d'une mesure, en nanosecondes.
+     */
+    private static final long MIN_MEASURE_NANOS = 2000000000L;
+    /**
+     * Nanosecondes par milliseconde.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+    /**
+     * Multiplicateur du générateur pseudo-aléatoire qui choisit les routes
+     * demandées.
+     */
+    private static final int SPREAD = 0x9E3779B9;
+    /**
+     * Reçoit le résultat des résolutions mesurées, pour qu'elles ne soient
+     * pas éliminées par le compilateur.
+     */
+    private static volatile int sink;
+
+    /**
+     * Constructeur privé, classe lancée par main.
+     */
+    private AutomatonRouterBenchmark()
+    {
+    }
+
+    /**
+     * Lance les mesures.
+     * @param args
+     *        Les nombres de routes, 1000 et 10000 si absents.
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes)
+        {
+            List<Route> routes = syntheticRoutes(size);
+            String[] hits = hitUrls(size);
+            String[] misses = missUrls();
+            measure("table", size, RouteTable.build(routes), hits, misses, buildMillis(routes, false));
+            measure("automaton", size, AutomatonRouter.build(routes), hits, misses, buildMillis(routes, true));
+        }
+    }
+
+    /**
+     * Crée des routes dont l'url-pattern est une expression régulière, telle
+     * que /m42/[a-z]+/[0-9]+\.do.
+     * @param size
+     *        Le nombre de routes.
+     * @return Les routes, dans l'ordre de déclaration.
+     */
+    private static List<Route> syntheticRoutes(int size)
+    {
+        List<Route> routes = new ArrayList<Route>(size);
+        for (int i = 0; i < size; i++)
+        {
+            routes.add(new Route(i, "/m" + i + "/[a-z]+/[0-9]+\\.do", null));
+        }
+        return routes;
+    }
+
+    /**
+     * Des urls qui correspondent chacune à une route prise au hasard.
+     * @param size
+     *        Le nombre de routes.
+     * @return Les urls.
+     */
+    private static String[] hitUrls(int size)
+    {
+        String[] urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++)
+        {
+            int route = ((i * SPREAD) & Integer.MAX_VALUE) % size;
+            urls[i] = "/m" + route + "/item/" + i + ".do";
+        }
+        return urls;
+    }
+
+    /**
+     * Des urls qui ne correspondent à aucune route.
+     * @return Les urls.
+     */
+    private static String[] missUrls()
+    {
+        String[] urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++)
+        {
+            urls[i] = "/unknown/item/" + i + ".do";
+        }
+        return urls;
+    }
+
+    /**
+     * Mesure la construction d'une table de routage.
+     * @param routes
+     *        Les routes.
+     * @param automaton
+     *        Vrai pour un AutomatonRouter, faux pour une RouteTable.
+     * @return La durée de la construction, en millisecondes.
+     */
+    private static long buildMillis(List<Route> routes, boolean automaton)
+    {
+        long start = System.nanoTime();
+        Router router;
+        if (automaton)
+        {
+            router = AutomatonRouter.build(routes);
+        }
+        else
+        {
+            router = RouteTable.build(routes);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (router == null)
+        {
+            throw new IllegalStateException();
+        }
+        return elapsed / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Mesure et affiche le temps moyen d'une résolution.
+     * @param mode
+     *        Le nom de la table de routage.
+     * @param size
+     *        Le nombre de routes.
+     * @param router
+     *        La table de routage.
+     * @param hits
+     *        Des urls qui correspondent à une route.
+     * @param misses
+     *        Des urls qui ne correspondent à aucune route.
+     * @param buildMillis
+     *        La durée de construction de la table.
+     */
+    private static void measure(String mode, int size, Router router, String[] hits, String[] misses, long buildMillis)
+    {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            check(router, hits);
+            check(router, misses);
+        }
+        System.out.println(mode + " routes=" + size + " build=" + buildMillis + "ms hit=" + nanosPerResolve(router, hits) + "ns/op miss=" + nanosPerResolve(router, misses) + "ns/op");
+    }
+
+    /**
+     * Temps moyen d'une résolution, mesuré sur au moins MIN_MEASURE_NANOS.
+     * @param router
+     *        La table de routage.
+     * @param urls
+     *        Les urls demandées.
+     * @return La durée moyenne, en nanosecondes.
+     */
+    private static long nanosPerResolve(Router router, String[] urls)
+    {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        int found = 0;
+        do
+        {
+            for (String url : urls)
+            {
+                if (router.resolve(url) != null)
+                {
+                    found++;
+                }
+            }
+            operations += urls.length;
+            elapsed = System.nanoTime() - start;
+        }
+        while (elapsed < MIN_MEASURE_NANOS);
+        sink = found;
+        return elapsed / operations;
+    }
+
+    /**
+     * Résout chaque url et vérifie que la route trouvée est la bonne.
+     * @param router
+     *        La table de routage.
+     * @param urls
+     *        Les urls demandées.
+     */
+    private static void check(Router router, String[] urls)
+    {
+        for (String url : urls)
+        {
+            Route route = router.resolve(url);
+            boolean expected = !url.startsWith("/unknown/");
+            if ((route != null) != expected || (route != null && !url.startsWith("/m" + route.getDeclarationIndex() + "/")))
+            {
+                throw new IllegalStateException("Wrong route for " + url + ": " + route);
+            }
+        }
+    }
+}